@@ -0,0 +1,179 @@
+package com.squidpony.globe;
+
+import squidpony.squidmath.Noise;
+
+import java.util.Arrays;
+
+/**
+ * Batch versions of the {@link Noise} wrappers used by world map generation, each filling an array of samples from
+ * parallel arrays of x, y, and z coordinates in one call instead of being called once per sample. The results are meant
+ * to match calling the matching {@link Noise} wrapper on each coordinate, but the per-sample arithmetic the wrappers do
+ * (scaling, the octave rotation in {@link Ridged3D}, the ridge and sum steps) runs as simple loops over primitive arrays
+ * with no calls in them, which HotSpot can unroll and auto-vectorize. Only the innermost noise function is still called
+ * per sample, through {@link Scalar3D}; anything that implements {@link Batch3D} directly can replace it.
+ * <br>
+ * Each wrapper keeps its own scratch arrays, which grow to fit the largest batch it has seen, so a wrapper should not
+ * be shared between threads.
+ */
+public final class BatchNoise {
+    private BatchNoise() {
+    }
+
+    /**
+     * Fills an array of 3D noise samples in one call.
+     */
+    public interface Batch3D {
+        /**
+         * Fills {@code out} from index 0 to {@code count} (exclusive) with noise at the points given by the same
+         * indices in {@code xs}, {@code ys}, and {@code zs}. None of the coordinate arrays are modified, and
+         * {@code out} must not be one of them.
+         * @param xs x coordinates; must have at least {@code count} items
+         * @param ys y coordinates; must have at least {@code count} items
+         * @param zs z coordinates; must have at least {@code count} items
+         * @param seed the seed to use for all samples
+         * @param out will be filled with noise samples, typically between -1.0 and 1.0
+         * @param count how many samples to fill
+         */
+        void fillNoise(double[] xs, double[] ys, double[] zs, long seed, double[] out, int count);
+    }
+
+    /**
+     * Wraps {@code noise} so it can be used as a {@link Batch3D}; if it already is one, it is returned as-is.
+     * @param noise any Noise3D, usually a {@link squidpony.squidmath.FastNoise}
+     * @return a Batch3D that produces the same results as {@code noise}
+     */
+    public static Batch3D wrap(Noise.Noise3D noise) {
+        if(noise instanceof Batch3D)
+            return (Batch3D) noise;
+        return new Scalar3D(noise);
+    }
+
+    private static double[] ensure(double[] array, int count) {
+        return array.length >= count ? array : new double[Math.max(count, array.length << 1)];
+    }
+
+    /**
+     * The scalar fallback; calls a {@link Noise.Noise3D} once per sample.
+     */
+    public static class Scalar3D implements Batch3D {
+        public Noise.Noise3D basis;
+
+        public Scalar3D(Noise.Noise3D basis) {
+            this.basis = basis;
+        }
+
+        @Override
+        public void fillNoise(double[] xs, double[] ys, double[] zs, long seed, double[] out, int count) {
+            final Noise.Noise3D basis = this.basis;
+            for (int i = 0; i < count; i++) {
+                out[i] = basis.getNoiseWithSeed(xs[i], ys[i], zs[i], seed);
+            }
+        }
+    }
+
+    /**
+     * Batch equivalent of {@link Noise.Scaled3D}.
+     */
+    public static class Scaled3D implements Batch3D {
+        protected double scaleX, scaleY, scaleZ;
+        protected Batch3D basis;
+        private double[] sx = new double[0], sy = new double[0], sz = new double[0];
+
+        public Scaled3D(Batch3D basis, double scale) {
+            this(basis, scale, scale, scale);
+        }
+
+        public Scaled3D(Batch3D basis, double scaleX, double scaleY, double scaleZ) {
+            this.basis = basis;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.scaleZ = scaleZ;
+        }
+
+        @Override
+        public void fillNoise(double[] xs, double[] ys, double[] zs, long seed, double[] out, int count) {
+            final double[] sx = this.sx = ensure(this.sx, count), sy = this.sy = ensure(this.sy, count),
+                    sz = this.sz = ensure(this.sz, count);
+            final double scaleX = this.scaleX, scaleY = this.scaleY, scaleZ = this.scaleZ;
+            for (int i = 0; i < count; i++) {
+                sx[i] = xs[i] * scaleX;
+                sy[i] = ys[i] * scaleY;
+                sz[i] = zs[i] * scaleZ;
+            }
+            basis.fillNoise(sx, sy, sz, seed, out, count);
+        }
+    }
+
+    /**
+     * Batch equivalent of {@link Noise.Ridged3D}. Each octave is one batch call to the basis, followed by a loop that
+     * adds the ridged octave to the total and a loop that rotates and offsets every point for the next octave.
+     */
+    public static class Ridged3D implements Batch3D {
+        protected int octaves;
+        public double frequency;
+        protected Batch3D basis;
+        private double[] px = new double[0], py = new double[0], pz = new double[0], n = new double[0];
+
+        public Ridged3D(Batch3D basis, int octaves, double frequency) {
+            this.basis = basis;
+            this.frequency = frequency;
+            setOctaves(octaves);
+        }
+
+        public void setOctaves(int octaves) {
+            this.octaves = Math.max(1, Math.min(63, octaves));
+        }
+
+        @Override
+        public void fillNoise(double[] xs, double[] ys, double[] zs, long seed, double[] out, int count) {
+            final double[] px = this.px = ensure(this.px, count), py = this.py = ensure(this.py, count),
+                    pz = this.pz = ensure(this.pz, count), n = this.n = ensure(this.n, count);
+            final double frequency = this.frequency;
+            for (int i = 0; i < count; i++) {
+                px[i] = xs[i] * frequency;
+                py[i] = ys[i] * frequency;
+                pz[i] = zs[i] * frequency;
+            }
+            Arrays.fill(out, 0, count, 0.0);
+            double exp = 2.0, correction = 0.0, x, y, z, offset;
+            for (int o = 0; o < octaves; o++) {
+                basis.fillNoise(px, py, pz, seed += 0x9E3779B97F4A7C15L, n, count);
+                correction += (exp *= 0.5);
+                for (int i = 0; i < count; i++) {
+                    out[i] += (1.0 - Math.abs(n[i])) * exp;
+                }
+                offset = o << 6;
+                for (int i = 0; i < count; i++) {
+                    x = px[i];
+                    y = py[i];
+                    z = pz[i];
+                    px[i] = x * 0.0455933781512065 + y * 1.3525830280287148 + z * -1.4748009351700182 + offset;
+                    py[i] = x * 0.499061805202994 + y * 1.4206960424763455 + z * 1.3184441863413694 + offset;
+                    pz[i] = x * 1.9360777567940484 + y * -0.3981021362528052 + z * -0.3051528925976716 + offset;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                out[i] = out[i] * 2.0 / correction - 1.0;
+            }
+        }
+    }
+
+    /**
+     * Batch equivalent of {@link Noise.Maelstrom3D}.
+     */
+    public static class Maelstrom3D implements Batch3D {
+        public Batch3D basis;
+
+        public Maelstrom3D(Batch3D basis) {
+            this.basis = basis;
+        }
+
+        @Override
+        public void fillNoise(double[] xs, double[] ys, double[] zs, long seed, double[] out, int count) {
+            basis.fillNoise(xs, ys, zs, seed, out, count);
+            for (int i = 0; i < count; i++) {
+                out[i] = Math.exp(out[i]) * 0.850918 - 1.31303495;
+            }
+        }
+    }
+}
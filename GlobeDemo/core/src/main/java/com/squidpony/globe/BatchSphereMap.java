@@ -0,0 +1,273 @@
+package com.squidpony.globe;
+
+import squidpony.squidgrid.mapping.WorldMapGenerator;
+import squidpony.squidmath.FastNoise;
+import squidpony.squidmath.Noise;
+import squidpony.squidmath.NumberTools;
+
+/**
+ * A {@link WorldMapGenerator.SphereMap} that samples its noise a row at a time using {@link BatchNoise}, instead of
+ * calling each noise field once per cell. It is meant to produce the same maps as SphereMap given the same seed, noise,
+ * and octave multiplier, so it can be used anywhere a SphereMap is; {@code SphereMapCheck} in the lwjgl3 module
+ * compares the two over several seeds and reports any difference in height, heat, moisture, or height codes.
+ * <br>
+ * The sampling itself is done by a {@link SphereRowSampler}; see its documentation for how each row is staged. Noise
+ * sampling is where most of the time goes when generating a world, and this keeps the arithmetic around it in tight
+ * loops over primitive arrays.
+ * <br>
+ * If {@link #setNoiseCaching(boolean)} is given true, the raw noise for the last seed is kept, and generating the same
+ * seed again with only a different land or heat modifier skips sampling noise entirely, only redoing the steps that
+ * depend on the modifiers (heights, height codes, and normalizing heat and moisture). This makes it practical to
+ * adjust the modifiers interactively, at the cost of three more doubles per cell.
+ */
+public class BatchSphereMap extends WorldMapGenerator.SphereMap {
+    protected final SphereRowSampler sampler;
+    protected final Noise.Noise3D noiseGenerator;
+    protected final double octaveMultiplier;
+    /**
+     * Statistics used to normalize heat and moisture, from the last time this generated with a different seed or
+     * different modifiers. The 0 values are for raw noise, and the 1 values are for heat after height and latitude
+     * have been factored in.
+     */
+    protected double minHeat0 = Double.POSITIVE_INFINITY, maxHeat0 = Double.NEGATIVE_INFINITY,
+            minHeat1 = Double.POSITIVE_INFINITY, maxHeat1 = Double.NEGATIVE_INFINITY,
+            minWet0 = Double.POSITIVE_INFINITY, maxWet0 = Double.NEGATIVE_INFINITY;
+    private final double[] rowHeights, rowHeats, rowMoistures;
+    /**
+     * Only non-null when noise caching is enabled; raw noise for the last seed and area, indexed by
+     * {@code y * width + x}.
+     */
+    protected double[] rawHeights, rawHeats, rawMoistures;
+    private boolean rawValid;
+    private int rawStateA, rawStateB, rawStartX, rawStartY, rawUsedWidth, rawUsedHeight;
+    private double rawLongitude;
+
+    /**
+     * Constructs a BatchSphereMap; the parameters are the same as the matching SphereMap constructor.
+     * @param initialSeed the seed for the GWTRNG this uses; this may also be set per-call to generate
+     * @param mapWidth the width of the map(s) to generate; cannot be changed later
+     * @param mapHeight the height of the map(s) to generate; cannot be changed later
+     * @param noiseGenerator an instance of a noise generator capable of 3D noise, usually {@link FastNoise}; if it
+     *                       implements {@link BatchNoise.Batch3D}, it will be called in batches too
+     * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
+     */
+    public BatchSphereMap(long initialSeed, int mapWidth, int mapHeight, Noise.Noise3D noiseGenerator, double octaveMultiplier) {
+        super(initialSeed, mapWidth, mapHeight, noiseGenerator, octaveMultiplier);
+        this.noiseGenerator = noiseGenerator;
+        this.octaveMultiplier = octaveMultiplier;
+        sampler = new SphereRowSampler(mapWidth, noiseGenerator, octaveMultiplier);
+        rowHeights = new double[mapWidth];
+        rowHeats = new double[mapWidth];
+        rowMoistures = new double[mapWidth];
+    }
+
+    /**
+     * Copies the BatchSphereMap {@code other} to construct a new one that is exactly the same. References will only
+     * be shared to Noise classes.
+     * @param other a BatchSphereMap to copy
+     */
+    public BatchSphereMap(BatchSphereMap other) {
+        super(other);
+        noiseGenerator = other.noiseGenerator;
+        octaveMultiplier = other.octaveMultiplier;
+        sampler = new SphereRowSampler(width, noiseGenerator, octaveMultiplier);
+        minHeat0 = other.minHeat0;
+        maxHeat0 = other.maxHeat0;
+        minHeat1 = other.minHeat1;
+        maxHeat1 = other.maxHeat1;
+        minWet0 = other.minWet0;
+        maxWet0 = other.maxWet0;
+        rowHeights = new double[width];
+        rowHeats = new double[width];
+        rowMoistures = new double[width];
+        if(other.rawHeights != null) {
+            rawHeights = other.rawHeights.clone();
+            rawHeats = other.rawHeats.clone();
+            rawMoistures = other.rawMoistures.clone();
+            rawValid = other.rawValid;
+            rawStateA = other.rawStateA;
+            rawStateB = other.rawStateB;
+            rawStartX = other.rawStartX;
+            rawStartY = other.rawStartY;
+            rawUsedWidth = other.rawUsedWidth;
+            rawUsedHeight = other.rawUsedHeight;
+            rawLongitude = other.rawLongitude;
+        }
+    }
+
+    /**
+     * Turns caching of raw noise on or off; see the class documentation. Caching is off by default.
+     * @param caching true to keep raw noise for the last seed, false to release it
+     */
+    public void setNoiseCaching(boolean caching) {
+        if(caching && rawHeights == null) {
+            rawHeights = new double[width * height];
+            rawHeats = new double[width * height];
+            rawMoistures = new double[width * height];
+        }
+        else if(!caching) {
+            rawHeights = rawHeats = rawMoistures = null;
+        }
+        rawValid = false;
+    }
+
+    /**
+     * @return true if raw noise is being cached; see {@link #setNoiseCaching(boolean)}
+     */
+    public boolean isNoiseCaching() {
+        return rawHeights != null;
+    }
+
+    @Override
+    protected void regenerate(int startX, int startY, int usedWidth, int usedHeight,
+                              double landMod, double heatMod, int stateA, int stateB)
+    {
+        boolean fresh = false;
+        if(cacheA != stateA || cacheB != stateB || landMod != landModifier || heatMod != heatModifier)
+        {
+            minHeight = Double.POSITIVE_INFINITY;
+            maxHeight = Double.NEGATIVE_INFINITY;
+            minHeat0 = Double.POSITIVE_INFINITY;
+            maxHeat0 = Double.NEGATIVE_INFINITY;
+            minHeat1 = Double.POSITIVE_INFINITY;
+            maxHeat1 = Double.NEGATIVE_INFINITY;
+            minHeat = Double.POSITIVE_INFINITY;
+            maxHeat = Double.NEGATIVE_INFINITY;
+            minWet0 = Double.POSITIVE_INFINITY;
+            maxWet0 = Double.NEGATIVE_INFINITY;
+            minWet = Double.POSITIVE_INFINITY;
+            maxWet = Double.NEGATIVE_INFINITY;
+            cacheA = stateA;
+            cacheB = stateB;
+            fresh = true;
+        }
+        rng.setState(stateA, stateB);
+        long seedA = rng.nextLong(), seedB = rng.nextLong(), seedC = rng.nextLong();
+        landModifier = (landMod <= 0) ? rng.nextDouble(0.29) + 0.91 : landMod;
+        heatModifier = (heatMod <= 0) ? rng.nextDouble(0.45) * (rng.nextDouble()-0.5) + 1.1 : heatMod;
+
+        double p, h, temp, yPos, xPos,
+                i_uw = usedWidth / (double)width,
+                i_w = 6.283185307179586 / width,
+                i_h = 2.0 / (height+2.0),
+                i_uh = usedHeight * i_h / (height+2.0);
+        xPos = startX;
+        final double[] trigTable = new double[width << 1];
+        for (int x = 0; x < width; x++, xPos += i_uw) {
+            p = xPos * i_w + centerLongitude;
+            trigTable[x<<1]   = NumberTools.sin(p);
+            trigTable[x<<1|1] = NumberTools.cos(p);
+        }
+        final double[] rowX = sampler.rowX, rowY = sampler.rowY, rowZ = sampler.rowZ,
+                rowHeights = this.rowHeights, rowHeats = this.rowHeats, rowMoistures = this.rowMoistures,
+                rawHeights = this.rawHeights, rawHeats = this.rawHeats, rawMoistures = this.rawMoistures;
+        final double landModifier = this.landModifier;
+        if(rawHeights != null && rawValid && rawStateA == stateA && rawStateB == stateB && rawStartX == startX
+                && rawStartY == startY && rawUsedWidth == usedWidth && rawUsedHeight == usedHeight
+                && rawLongitude == centerLongitude) {
+            // only the modifiers changed, so the raw noise and positions from last time can be reused
+            for (int y = 0, i = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    heightData[x][y] = rawHeights[i] + landModifier - 1.0;
+                    heatData[x][y] = rawHeats[i];
+                    moistureData[x][y] = rawMoistures[i];
+                }
+            }
+        }
+        else {
+            yPos = startY * i_h + i_uh;
+            for (int y = 0; y < height; y++, yPos += i_uh) {
+                sampler.sampleRow(trigTable, -1 + yPos, seedA, seedB, seedC, rowHeights, rowHeats, rowMoistures);
+                for (int x = 0; x < width; x++) {
+                    xPositions[x][y] = rowX[x];
+                    yPositions[x][y] = rowY[x];
+                    zPositions[x][y] = rowZ[x];
+                    heightData[x][y] = rowHeights[x] + landModifier - 1.0;
+                    heatData[x][y] = rowHeats[x];
+                    moistureData[x][y] = rowMoistures[x];
+                }
+                if(rawHeights != null) {
+                    System.arraycopy(rowHeights, 0, rawHeights, y * width, width);
+                    System.arraycopy(rowHeats, 0, rawHeats, y * width, width);
+                    System.arraycopy(rowMoistures, 0, rawMoistures, y * width, width);
+                }
+            }
+            if(rawHeights != null) {
+                rawValid = true;
+                rawStateA = stateA;
+                rawStateB = stateB;
+                rawStartX = startX;
+                rawStartY = startY;
+                rawUsedWidth = usedWidth;
+                rawUsedHeight = usedHeight;
+                rawLongitude = centerLongitude;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                h = heightData[x][y];
+                minHeightActual = Math.min(minHeightActual, h);
+                maxHeightActual = Math.max(maxHeightActual, h);
+                if(fresh) {
+                    minHeight = Math.min(minHeight, h);
+                    maxHeight = Math.max(maxHeight, h);
+
+                    minHeat0 = Math.min(minHeat0, p = heatData[x][y]);
+                    maxHeat0 = Math.max(maxHeat0, p);
+
+                    minWet0 = Math.min(minWet0, temp = moistureData[x][y]);
+                    maxWet0 = Math.max(maxWet0, temp);
+                }
+            }
+        }
+        minHeightActual = Math.min(minHeightActual, minHeight);
+        maxHeightActual = Math.max(maxHeightActual, maxHeight);
+        double heatDiff = 0.8 / (maxHeat0 - minHeat0),
+                wetDiff = 1.0 / (maxWet0 - minWet0),
+                quick;
+        double minHeat0 = Double.POSITIVE_INFINITY, maxHeat0 = Double.NEGATIVE_INFINITY,
+                minWet0 = Double.POSITIVE_INFINITY, maxWet0 = Double.NEGATIVE_INFINITY;
+        yPos = startY * i_h + i_uh;
+        int hc;
+        for (int y = 0; y < height; y++, yPos += i_uh) {
+            quick = SphereRowSampler.latitudeFactor(yPos);
+            for (int x = 0; x < width; x++) {
+                h = heightData[x][y];
+                heightCodeData[x][y] = (hc = codeHeight(h));
+                heatData[x][y] = (h = SphereRowSampler.adjustHeat(hc, h, heatData[x][y], this.minHeat0, heatDiff, quick));
+                if (fresh) {
+                    minHeat0 = Math.min(minHeat0, h);
+                    maxHeat0 = Math.max(maxHeat0, h);
+                }
+            }
+        }
+        if(fresh)
+        {
+            this.minHeat1 = minHeat0;
+            this.maxHeat1 = maxHeat0;
+        }
+        heatDiff = heatModifier / (this.maxHeat1 - this.minHeat1);
+        minHeat0 = Double.POSITIVE_INFINITY;
+        maxHeat0 = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                heatData[x][y] = (h = ((heatData[x][y] - this.minHeat1) * heatDiff));
+                moistureData[x][y] = (temp = (moistureData[x][y] - this.minWet0) * wetDiff);
+                if (fresh) {
+                    minHeat0 = Math.min(minHeat0, h);
+                    maxHeat0 = Math.max(maxHeat0, h);
+                    minWet0 = Math.min(minWet0, temp);
+                    maxWet0 = Math.max(maxWet0, temp);
+                }
+            }
+        }
+        if(fresh)
+        {
+            minHeat = minHeat0;
+            maxHeat = maxHeat0;
+            minWet = minWet0;
+            maxWet = maxWet0;
+        }
+        landData.refill(heightCodeData, 4, 999);
+    }
+}
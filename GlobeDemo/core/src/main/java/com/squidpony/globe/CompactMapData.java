@@ -0,0 +1,251 @@
+package com.squidpony.globe;
+
+import squidpony.squidgrid.mapping.WorldMapGenerator;
+
+/**
+ * Flat, reduced-precision storage for the height, heat, and moisture fields of a {@link WorldMapGenerator}, plus its
+ * height codes. Each field is one 1D array indexed by {@code y * width + x} instead of a {@code double[width][height]},
+ * which avoids one array header and pointer per column and halves (or, when quantized, quarters) the bytes per cell.
+ * Height codes are stored as bytes, with the 1000 code for "off the map" stored as -1.
+ * <br>
+ * If {@link #quantized} is true, each field is stored as 16-bit fixed-point between the minimum and maximum values seen
+ * by {@link #store(WorldMapGenerator)} (or given to {@link #begin(double, double, double, double, double, double)});
+ * this loses some precision that is almost never visible after biome mapping.
+ * If false, each field is stored as a float.
+ * <br>
+ * Values are always read back as doubles through the getters, so code that reads from this doesn't need to know which
+ * representation is in use.
+ */
+public class CompactMapData {
+    public final int width, height;
+    public final boolean quantized;
+    protected final float[] heights, heats, moistures;
+    protected final short[] heightBits, heatBits, moistureBits;
+    protected final byte[] heightCodes;
+    public double minHeight, maxHeight, minHeat, maxHeat, minWet, maxWet;
+    private double heightScale, heatScale, wetScale;
+
+    /**
+     * Allocates compact storage for a map with the given dimensions.
+     * @param width the width of the map this will store
+     * @param height the height of the map this will store
+     * @param quantized if true, stores 16-bit fixed-point values; if false, stores floats
+     */
+    public CompactMapData(int width, int height, boolean quantized) {
+        this.width = width;
+        this.height = height;
+        this.quantized = quantized;
+        final int size = width * height;
+        if(quantized) {
+            heights = heats = moistures = null;
+            heightBits = new short[size];
+            heatBits = new short[size];
+            moistureBits = new short[size];
+        }
+        else {
+            heights = new float[size];
+            heats = new float[size];
+            moistures = new float[size];
+            heightBits = heatBits = moistureBits = null;
+        }
+        heightCodes = new byte[size];
+    }
+
+    /**
+     * Copies the CompactMapData {@code other} to construct a new one that is exactly the same.
+     * @param other a CompactMapData to copy
+     */
+    public CompactMapData(CompactMapData other) {
+        width = other.width;
+        height = other.height;
+        quantized = other.quantized;
+        heights = other.heights == null ? null : other.heights.clone();
+        heats = other.heats == null ? null : other.heats.clone();
+        moistures = other.moistures == null ? null : other.moistures.clone();
+        heightBits = other.heightBits == null ? null : other.heightBits.clone();
+        heatBits = other.heatBits == null ? null : other.heatBits.clone();
+        moistureBits = other.moistureBits == null ? null : other.moistureBits.clone();
+        heightCodes = other.heightCodes.clone();
+        minHeight = other.minHeight;
+        maxHeight = other.maxHeight;
+        minHeat = other.minHeat;
+        maxHeat = other.maxHeat;
+        minWet = other.minWet;
+        maxWet = other.maxWet;
+        heightScale = other.heightScale;
+        heatScale = other.heatScale;
+        wetScale = other.wetScale;
+    }
+
+    /**
+     * Copies the height, heat, moisture, and height code data from {@code world}, which must have the same width and
+     * height as this. After this returns, {@code world} is no longer needed to read those fields.
+     * @param world a WorldMapGenerator that has already generated a map with the same dimensions as this
+     * @return this, for chaining
+     */
+    public CompactMapData store(WorldMapGenerator world) {
+        if(world.width != width || world.height != height)
+            throw new IllegalArgumentException("WorldMapGenerator must be " + width + "x" + height);
+        final double[][] heightData = world.heightData, heatData = world.heatData, moistureData = world.moistureData;
+        final int[][] heightCodeData = world.heightCodeData;
+        minHeight = minHeat = minWet = Double.POSITIVE_INFINITY;
+        maxHeight = maxHeat = maxWet = Double.NEGATIVE_INFINITY;
+        if(quantized) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    minHeight = Math.min(minHeight, heightData[x][y]);
+                    maxHeight = Math.max(maxHeight, heightData[x][y]);
+                    minHeat = Math.min(minHeat, heatData[x][y]);
+                    maxHeat = Math.max(maxHeat, heatData[x][y]);
+                    minWet = Math.min(minWet, moistureData[x][y]);
+                    maxWet = Math.max(maxWet, moistureData[x][y]);
+                }
+            }
+            heightScale = (maxHeight - minHeight) / 65535.0;
+            heatScale = (maxHeat - minHeat) / 65535.0;
+            wetScale = (maxWet - minWet) / 65535.0;
+            final double iHeight = heightScale == 0.0 ? 0.0 : 1.0 / heightScale,
+                    iHeat = heatScale == 0.0 ? 0.0 : 1.0 / heatScale,
+                    iWet = wetScale == 0.0 ? 0.0 : 1.0 / wetScale;
+            for (int y = 0, i = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    heightBits[i] = (short) ((heightData[x][y] - minHeight) * iHeight + 0.5);
+                    heatBits[i] = (short) ((heatData[x][y] - minHeat) * iHeat + 0.5);
+                    moistureBits[i] = (short) ((moistureData[x][y] - minWet) * iWet + 0.5);
+                    heightCodes[i] = encodeCode(heightCodeData[x][y]);
+                }
+            }
+        }
+        else {
+            double h, t, m;
+            for (int y = 0, i = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    heights[i] = (float) (h = heightData[x][y]);
+                    heats[i] = (float) (t = heatData[x][y]);
+                    moistures[i] = (float) (m = moistureData[x][y]);
+                    heightCodes[i] = encodeCode(heightCodeData[x][y]);
+                    minHeight = Math.min(minHeight, h);
+                    maxHeight = Math.max(maxHeight, h);
+                    minHeat = Math.min(minHeat, t);
+                    maxHeat = Math.max(maxHeat, t);
+                    minWet = Math.min(minWet, m);
+                    maxWet = Math.max(maxWet, m);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Prepares to copy a map that is never in memory all at once, one band of rows at a time with
+     * {@link #storeRows(WorldMapGenerator, int)}. The ranges of each field can't be measured before every row has been
+     * seen, so they are given here, usually from a smaller map with the same seed, such as the coarse map a
+     * {@link SphereBandMap} uses. If {@link #quantized} is true, values outside these ranges are clamped to them; if
+     * false, the ranges are widened to fit whatever is stored.
+     * @return this, for chaining
+     */
+    public CompactMapData begin(double minHeight, double maxHeight, double minHeat, double maxHeat,
+                                double minWet, double maxWet) {
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+        this.minHeat = minHeat;
+        this.maxHeat = maxHeat;
+        this.minWet = minWet;
+        this.maxWet = maxWet;
+        heightScale = (maxHeight - minHeight) / 65535.0;
+        heatScale = (maxHeat - minHeat) / 65535.0;
+        wetScale = (maxWet - minWet) / 65535.0;
+        return this;
+    }
+
+    /**
+     * Copies the height, heat, moisture, and height code data from {@code band}, which holds rows of the map this
+     * stores starting at {@code startRow}, and must have the same width as this. Rows of the band past the end of this
+     * map are ignored. {@link #begin(double, double, double, double, double, double)} must be called before the first
+     * band of a map.
+     * @param band a WorldMapGenerator that has already generated some rows of a map with the same width as this
+     * @param startRow the row of this map that row 0 of {@code band} corresponds to
+     * @return this, for chaining
+     */
+    public CompactMapData storeRows(WorldMapGenerator band, int startRow) {
+        if(band.width != width)
+            throw new IllegalArgumentException("WorldMapGenerator must be " + width + " wide");
+        final double[][] heightData = band.heightData, heatData = band.heatData, moistureData = band.moistureData;
+        final int[][] heightCodeData = band.heightCodeData;
+        final int rows = Math.min(band.height, height - startRow);
+        if(quantized) {
+            final double iHeight = heightScale == 0.0 ? 0.0 : 1.0 / heightScale,
+                    iHeat = heatScale == 0.0 ? 0.0 : 1.0 / heatScale,
+                    iWet = wetScale == 0.0 ? 0.0 : 1.0 / wetScale;
+            for (int y = 0, i = startRow * width; y < rows; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    heightBits[i] = quantize(heightData[x][y], minHeight, iHeight);
+                    heatBits[i] = quantize(heatData[x][y], minHeat, iHeat);
+                    moistureBits[i] = quantize(moistureData[x][y], minWet, iWet);
+                    heightCodes[i] = encodeCode(heightCodeData[x][y]);
+                }
+            }
+        }
+        else {
+            double h, t, m;
+            for (int y = 0, i = startRow * width; y < rows; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    heights[i] = (float) (h = heightData[x][y]);
+                    heats[i] = (float) (t = heatData[x][y]);
+                    moistures[i] = (float) (m = moistureData[x][y]);
+                    heightCodes[i] = encodeCode(heightCodeData[x][y]);
+                    minHeight = Math.min(minHeight, h);
+                    maxHeight = Math.max(maxHeight, h);
+                    minHeat = Math.min(minHeat, t);
+                    maxHeat = Math.max(maxHeat, t);
+                    minWet = Math.min(minWet, m);
+                    maxWet = Math.max(maxWet, m);
+                }
+            }
+        }
+        return this;
+    }
+
+    private static short quantize(double value, double min, double inverseScale) {
+        return (short) Math.max(0.0, Math.min(65535.0, (value - min) * inverseScale + 0.5));
+    }
+
+    private static byte encodeCode(int code) {
+        return code >= 1000 ? -1 : (byte) code;
+    }
+
+    public double getHeight(int x, int y) {
+        final int i = y * width + x;
+        return quantized ? minHeight + (heightBits[i] & 0xFFFF) * heightScale : heights[i];
+    }
+
+    public double getHeat(int x, int y) {
+        final int i = y * width + x;
+        return quantized ? minHeat + (heatBits[i] & 0xFFFF) * heatScale : heats[i];
+    }
+
+    public double getMoisture(int x, int y) {
+        final int i = y * width + x;
+        return quantized ? minWet + (moistureBits[i] & 0xFFFF) * wetScale : moistures[i];
+    }
+
+    /**
+     * Gets the height code at the given position, using the same codes as {@link WorldMapGenerator#codeHeight(double)},
+     * including 1000 for cells that are not on the map.
+     * @param x the x position
+     * @param y the y position
+     * @return a height code, from 0 to 8 or 1000
+     */
+    public int getHeightCode(int x, int y) {
+        final byte c = heightCodes[y * width + x];
+        return c < 0 ? 1000 : c;
+    }
+
+    /**
+     * Gets the approximate number of bytes used by the arrays in this object.
+     * @return the approximate memory usage in bytes
+     */
+    public long memoryUsage() {
+        return (long) width * height * (quantized ? 7 : 13);
+    }
+}
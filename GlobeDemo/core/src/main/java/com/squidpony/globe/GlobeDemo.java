@@ -18,7 +18,17 @@ import squidpony.squidmath.*;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class GlobeDemo extends ApplicationAdapter {
-    public GlobeDemo(){}
+    public GlobeDemo(){
+        this(false);
+    }
+
+    /**
+     * @param compact if true, the world keeps its internal map in quantized compact storage; see
+     *                {@link RotatingSpaceMap#RotatingSpaceMap(long, int, int, Noise.Noise3D, double, boolean, boolean)}
+     */
+    public GlobeDemo(boolean compact){
+        this.compact = compact;
+    }
 
     //private static final int width = 314 * 3, height = 300;
     //private static final int width = 1024, height = 512;
@@ -30,6 +40,7 @@ public class GlobeDemo extends ApplicationAdapter {
     //private static final int width = 700, height = 700;
 //    private static final int width = 512, height = 512;
 
+    private final boolean compact;
     private RotatingSpaceMap world;
 
 
@@ -69,7 +80,7 @@ public class GlobeDemo extends ApplicationAdapter {
         //world = new WorldMapGenerator.EllipticalHammerMap(seed, width, height, ClassicNoise.instance, 0.75);
         //world = new WorldMapGenerator.MimicMap(seed, WhirlingNoise.instance, 0.8);
 //        world = new WorldMapGenerator.SpaceViewMap(seed, width, height, ClassicNoise.instance, 0.7);
-        world = new RotatingSpaceMap(seed, width, height, 0.7);
+        world = new RotatingSpaceMap(seed, width, height, WorldMapGenerator.DEFAULT_NOISE, 0.7, compact, compact);
         //world = new WorldMapGenerator.RoundSideMap(seed, width, height, ClassicNoise.instance, 0.8);
         //world = new WorldMapGenerator.HyperellipticalMap(seed, width, height, ClassicNoise.instance, 0.7, 0.1, 3.25);
 
@@ -101,6 +112,22 @@ public class GlobeDemo extends ApplicationAdapter {
                     case 'p':
                         spinning = !spinning;
                         break;
+                    case ',':
+                    case '<':
+                        adjustModifiers(-0.05, 0.0);
+                        break;
+                    case '.':
+                    case '>':
+                        adjustModifiers(0.05, 0.0);
+                        break;
+                    case '[':
+                    case '{':
+                        adjustModifiers(0.0, -0.05);
+                        break;
+                    case ']':
+                    case '}':
+                        adjustModifiers(0.0, 0.05);
+                        break;
                     case 'Q':
                     case 'q':
                     case SquidInput.ESCAPE: {
@@ -177,6 +204,21 @@ public class GlobeDemo extends ApplicationAdapter {
         wmv.show();
         ttg = System.currentTimeMillis() - startTime;
     }
+    /**
+     * Regenerates the current world with its land and/or heat modifiers changed by the given amounts. The raw noise for
+     * the current seed is cached, so this only redoes the steps that depend on the modifiers, and is fast enough to
+     * press the keys repeatedly and watch the oceans and ice caps change in real time.
+     * @param landChange how much to add to the land modifier; positive means more land
+     * @param heatChange how much to add to the heat modifier; positive means hotter
+     */
+    public void adjustModifiers(double landChange, double heatChange)
+    {
+        long startTime = System.currentTimeMillis();
+        wmv.generate(world.seedA, world.seedB, Math.max(0.05, world.landModifier + landChange),
+                Math.max(0.05, world.heatModifier + heatChange));
+        wmv.show();
+        ttg = System.currentTimeMillis() - startTime;
+    }
     public void rotate()
     {
         long startTime = System.currentTimeMillis();
@@ -18,10 +18,24 @@ import java.util.Arrays;
  * {@link #generate()} in those classes, since it doesn't remake the map data at a slightly different rotation and
  * instead keeps a single map in use the whole time, using sections of it. This uses an
  * <a href="https://en.wikipedia.org/wiki/Orthographic_projection_in_cartography">Orthographic projection</a> with
- * the latitude always at the equator; the internal map is stored as a {@link SphereMap}, which uses a
+ * the latitude always at the equator; the internal map is stored as a {@link BatchSphereMap}, which uses a
  * <a href="https://en.wikipedia.org/wiki/Cylindrical_equal-area_projection#Discussion">cylindrical equal-area
  * projection</a>, specifically the Smyth equal-surface projection.
  * <br>
+ * <br>
+ * The full-size internal map at double width can take a lot of memory at larger sizes. The constructor that takes a
+ * {@code compact} parameter can opt in to storing the internal map as a {@link CompactMapData} (optionally 16-bit
+ * quantized) in {@link #storedData}. The internal map is generated a band of rows at a time by a {@link SphereBandMap}
+ * and copied into the compact store, so it never exists at full precision; because the band map gets its heat and
+ * moisture ranges from a smaller map, the compact internal map can differ very slightly from the default one.
+ * {@link #xPositions}, {@link #yPositions}, and {@link #zPositions} are filled in either mode, but {@link #storedMap}
+ * is null in compact mode, so reading it directly is deprecated; {@link #getStoredHeight(int, int)} and its siblings
+ * read the internal map in either mode.
+ * <br>
+ * Generating the same seed again with a different land or heat modifier doesn't sample any noise in the default mode,
+ * since the internal map caches its raw noise (see {@link BatchSphereMap#setNoiseCaching(boolean)}); in compact mode,
+ * the whole internal map has to be generated again.
+ * <br>
  * <a href="https://i.imgur.com/WNa5nQ1.gifv">Example view of a planet rotating</a>.
  * <a href="https://i.imgur.com/NV5IMd6.gifv">Another example</a>.
  */
@@ -31,7 +45,27 @@ public class RotatingSpaceMap extends WorldMapGenerator {
             yPositions,
             zPositions;
     protected final int[] edges;
-    public final SphereMap storedMap;
+    /**
+     * The internal map at double width; null in compact mode.
+     * @deprecated use {@link #getStoredHeight(int, int)} and its siblings, which also work in compact mode
+     */
+    @Deprecated
+    public BatchSphereMap storedMap;
+    /**
+     * Only non-null in compact mode; holds the internal map between generations.
+     */
+    public final CompactMapData storedData;
+    /**
+     * Only non-null in compact mode; generates the internal map a band of {@link #BAND_HEIGHT} rows at a time.
+     */
+    protected final SphereBandMap bands;
+    /**
+     * How many rows of the internal map are generated at a time in compact mode.
+     */
+    public static final int BAND_HEIGHT = 16;
+    protected final Noise.Noise3D noiseGenerator;
+    protected final double octaveMultiplier;
+    private double requestedLandMod = Double.NaN, requestedHeatMod = Double.NaN;
     /**
      * Constructs a concrete WorldMapGenerator for a map that can be used to view a spherical world from space,
      * showing only one hemisphere at a time.
@@ -131,12 +165,45 @@ public class RotatingSpaceMap extends WorldMapGenerator {
      * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
      */
     public RotatingSpaceMap(long initialSeed, int mapWidth, int mapHeight, Noise.Noise3D noiseGenerator, double octaveMultiplier) {
+        this(initialSeed, mapWidth, mapHeight, noiseGenerator, octaveMultiplier, false, false);
+    }
+
+    /**
+     * Constructs a concrete WorldMapGenerator for a map that can be used to view a spherical world from space,
+     * showing only one hemisphere at a time, optionally using compact storage. This is otherwise the same as
+     * {@link #RotatingSpaceMap(long, int, int, Noise.Noise3D, double)}. If {@code compact} is true, the internal map at
+     * double width is only kept as a {@link CompactMapData} between calls to generate; this uses less than half the
+     * memory the default mode does, or less still if {@code quantized} is also true. The internal map is generated {@link #BAND_HEIGHT} rows at a time, so it is never
+     * held at full precision, even while generating.
+     * @param initialSeed the seed for the GWTRNG this uses; this may also be set per-call to generate
+     * @param mapWidth the width of the map(s) to generate; cannot be changed later
+     * @param mapHeight the height of the map(s) to generate; cannot be changed later
+     * @param noiseGenerator an instance of a noise generator capable of 3D noise, usually {@link FastNoise}
+     * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
+     * @param compact if true, stores the internal map compactly, as described above
+     * @param quantized if true and compact is true, stores height, heat, and moisture as 16-bit fixed-point values
+     */
+    public RotatingSpaceMap(long initialSeed, int mapWidth, int mapHeight, Noise.Noise3D noiseGenerator,
+                            double octaveMultiplier, boolean compact, boolean quantized) {
         super(initialSeed, mapWidth, mapHeight);
+        this.noiseGenerator = noiseGenerator;
+        this.octaveMultiplier = octaveMultiplier;
+        edges = new int[height << 1];
         xPositions = new double[mapWidth][mapHeight];
         yPositions = new double[mapWidth][mapHeight];
         zPositions = new double[mapWidth][mapHeight];
-        edges = new int[height << 1];
-        storedMap = new SphereMap(initialSeed, mapWidth << 1, mapHeight, noiseGenerator, octaveMultiplier);
+        if(compact) {
+            storedMap = null;
+            storedData = new CompactMapData(mapWidth << 1, mapHeight, quantized);
+            bands = new SphereBandMap(initialSeed, mapWidth << 1, mapHeight, BAND_HEIGHT, noiseGenerator,
+                    octaveMultiplier, 8);
+        }
+        else {
+            storedMap = new BatchSphereMap(initialSeed, mapWidth << 1, mapHeight, noiseGenerator, octaveMultiplier);
+            storedMap.setNoiseCaching(true);
+            storedData = null;
+            bands = null;
+        }
     }
 
     /**
@@ -147,11 +214,85 @@ public class RotatingSpaceMap extends WorldMapGenerator {
     public RotatingSpaceMap(com.squidpony.globe.RotatingSpaceMap other)
     {
         super(other);
+        noiseGenerator = other.noiseGenerator;
+        octaveMultiplier = other.octaveMultiplier;
+        requestedLandMod = other.requestedLandMod;
+        requestedHeatMod = other.requestedHeatMod;
+        edges = Arrays.copyOf(other.edges, other.edges.length);
         xPositions = ArrayTools.copy(other.xPositions);
         yPositions = ArrayTools.copy(other.yPositions);
         zPositions = ArrayTools.copy(other.zPositions);
-        edges = Arrays.copyOf(other.edges, other.edges.length);
-        storedMap = new SphereMap(other.storedMap);
+        if(other.storedData != null) {
+            storedMap = null;
+            storedData = new CompactMapData(other.storedData);
+            bands = new SphereBandMap(other.seedA, width << 1, height, BAND_HEIGHT, noiseGenerator,
+                    octaveMultiplier, 8);
+        }
+        else {
+            storedMap = new BatchSphereMap(other.storedMap);
+            storedData = null;
+            bands = null;
+        }
+    }
+
+    /**
+     * Returns true if this was constructed to use compact storage.
+     * @return true if the internal map is a {@link CompactMapData}
+     */
+    public boolean isCompact() {
+        return storedData != null;
+    }
+
+    public double getXPosition(int x, int y) {
+        return xPositions[x][y];
+    }
+
+    public double getYPosition(int x, int y) {
+        return yPositions[x][y];
+    }
+
+    public double getZPosition(int x, int y) {
+        return zPositions[x][y];
+    }
+
+    /**
+     * Gets the height of the internal map, which is twice as wide as this map, in either storage mode.
+     * @param x the x position in the internal map, from 0 to {@code width * 2 - 1}
+     * @param y the y position in the internal map
+     * @return the height at that position
+     */
+    public double getStoredHeight(int x, int y) {
+        return storedData == null ? storedMap.heightData[x][y] : storedData.getHeight(x, y);
+    }
+
+    /**
+     * Gets the heat of the internal map, which is twice as wide as this map, in either storage mode.
+     * @param x the x position in the internal map, from 0 to {@code width * 2 - 1}
+     * @param y the y position in the internal map
+     * @return the heat at that position
+     */
+    public double getStoredHeat(int x, int y) {
+        return storedData == null ? storedMap.heatData[x][y] : storedData.getHeat(x, y);
+    }
+
+    /**
+     * Gets the moisture of the internal map, which is twice as wide as this map, in either storage mode.
+     * @param x the x position in the internal map, from 0 to {@code width * 2 - 1}
+     * @param y the y position in the internal map
+     * @return the moisture at that position
+     */
+    public double getStoredMoisture(int x, int y) {
+        return storedData == null ? storedMap.moistureData[x][y] : storedData.getMoisture(x, y);
+    }
+
+    /**
+     * Gets the height code of the internal map, which is twice as wide as this map, in either storage mode.
+     * @param x the x position in the internal map, from 0 to {@code width * 2 - 1}
+     * @param y the y position in the internal map
+     * @return the height code at that position, from 0 to 8 or 1000
+     */
+    public int getStoredHeightCode(int x, int y) {
+        return storedData == null ? storedMap.heightCodeData[x][y] : storedData.getHeightCode(x, y);
     }
 
 
@@ -180,6 +321,8 @@ public class RotatingSpaceMap extends WorldMapGenerator {
                 i_pi = 1.0 / Math.PI,
                 rx = width * 0.5, irx = i_uw / rx,
                 ry = height * 0.5, iry = i_uh / ry;
+        final boolean compact = storedData != null;
+        final int storedWidth = width << 1;
 
         yPos = startY - ry;
         iyPos = yPos / ry;
@@ -237,25 +380,32 @@ public class RotatingSpaceMap extends WorldMapGenerator {
 //                    ax = (int)((qc * NumberTools.sin(lon * 0.5) * z + 1.0) * width);
 //                    ay = (int)((qs * z + 1.0) * height * 0.5);
 
-                if(ax >= storedMap.width || ax < 0 || ay >= storedMap.height || ay < 0)
+                if(ax >= storedWidth || ax < 0 || ay >= height || ay < 0)
                 {
                     heightCodeData[x][y] = 1000;
                     continue;
                 }
-                if(storedMap.heightCodeData[ax][ay] >= 1000) // for the seam we get when looping around
-                {
-                    ay = storedMap.wrapY(ax, ay);
-                    ax = storedMap.wrapX(ax, ay);
-                }
-
                 xPositions[x][y] = pc * qc;
                 yPositions[x][y] = ps * qc;
                 zPositions[x][y] = qs;
 
-                heightData[x][y] = h = storedMap.heightData[ax][ay];
+                if(compact) {
+                    heightData[x][y] = h = storedData.getHeight(ax, ay);
+                    heatData[x][y] = storedData.getHeat(ax, ay);
+                    moistureData[x][y] = storedData.getMoisture(ax, ay);
+                }
+                else {
+                    if (storedMap.heightCodeData[ax][ay] >= 1000) // for the seam we get when looping around
+                    {
+                        ay = storedMap.wrapY(ax, ay);
+                        ax = storedMap.wrapX(ax, ay);
+                    }
+
+                    heightData[x][y] = h = storedMap.heightData[ax][ay];
+                    heatData[x][y] = storedMap.heatData[ax][ay];
+                    moistureData[x][y] = storedMap.moistureData[ax][ay];
+                }
                 heightCodeData[x][y] = codeHeight(h);
-                heatData[x][y] = storedMap.heatData[ax][ay];
-                moistureData[x][y] = storedMap.moistureData[ax][ay];
 
                 minHeightActual = Math.min(minHeightActual, h);
                 maxHeightActual = Math.max(maxHeightActual, h);
@@ -269,21 +419,44 @@ public class RotatingSpaceMap extends WorldMapGenerator {
     protected void regenerate(int startX, int startY, int usedWidth, int usedHeight,
                               double landMod, double heatMod, int stateA, int stateB)
     {
-        if(cacheA != stateA || cacheB != stateB)// || landMod != storedMap.landModifier || coolMod != storedMap.coolingModifier)
+        if(cacheA != stateA || cacheB != stateB || landMod != requestedLandMod || heatMod != requestedHeatMod)
         {
-            
-            storedMap.generate(landMod, heatMod, (long) stateB << 32 | (stateA & 0xFFFFFFFFL));
+            // if only the modifiers changed, storedMap reuses its cached noise and only redoes the cheap steps;
+            // in compact mode, each band is copied into storedData as soon as it is generated
+            final long state = (long) stateB << 32 | (stateA & 0xFFFFFFFFL);
+            final WorldMapGenerator sm;
+            if(storedData == null) {
+                storedMap.generate(landMod, heatMod, state);
+                sm = storedMap;
+            }
+            else {
+                for (int start = 0; start < height; start += BAND_HEIGHT) {
+                    bands.generateBand(start, landMod, heatMod, state);
+                    // the ranges come from the band map's coarse map, so they are known before the first band
+                    if(start == 0)
+                        storedData.begin(bands.minHeight, bands.maxHeight, bands.minHeat, bands.maxHeat,
+                                bands.minWet, bands.maxWet);
+                    storedData.storeRows(bands, start);
+                }
+                sm = bands;
+            }
             minHeightActual = Double.POSITIVE_INFINITY;
             maxHeightActual = Double.NEGATIVE_INFINITY;
 
-            minHeight = storedMap.minHeight;
-            maxHeight = storedMap.maxHeight;
+            minHeight = sm.minHeight;
+            maxHeight = sm.maxHeight;
+
+            minHeat = sm.minHeat;
+            maxHeat = sm.maxHeat;
+
+            minWet = sm.minWet;
+            maxWet = sm.maxWet;
 
-            minHeat = storedMap.minHeat;
-            maxHeat = storedMap.maxHeat;
+            landModifier = sm.landModifier;
+            heatModifier = sm.heatModifier;
 
-            minWet = storedMap.minWet;
-            maxWet = storedMap.maxWet;
+            requestedLandMod = landMod;
+            requestedHeatMod = heatMod;
 
             cacheA = stateA;
             cacheB = stateB;
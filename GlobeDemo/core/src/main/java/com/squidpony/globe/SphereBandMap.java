@@ -0,0 +1,137 @@
+package com.squidpony.globe;
+
+import squidpony.squidgrid.mapping.WorldMapGenerator;
+import squidpony.squidmath.FastNoise;
+import squidpony.squidmath.Noise;
+import squidpony.squidmath.NumberTools;
+
+/**
+ * Generates a map like a {@link BatchSphereMap} makes one horizontal band of rows at a time, for maps that are too
+ * large to keep in memory, such as a 16384x8192 world being exported to image tiles. This is a WorldMapGenerator with
+ * the full width of that map but only the height of one band, so biome mappers and views that work with any
+ * WorldMapGenerator work on one band at a time; call {@link #generateBand(int, double, double, long)} to move to a different band.
+ * <br>
+ * SphereMap normalizes heat and moisture using their ranges over the whole map, which can't be known from one band.
+ * Instead, a BatchSphereMap with the same seed and noise but a much smaller size is generated first, and its ranges are
+ * used for every band; because every map samples the same noise on the same sphere, a coarse map sees nearly the same
+ * ranges as a full-size one. Values in a band may go slightly outside the ranges the coarse map saw.
+ */
+public class SphereBandMap extends WorldMapGenerator {
+    /**
+     * The height of the full map this generates bands of.
+     */
+    public final int fullHeight;
+    /**
+     * The row of the full map that row 0 of this band corresponds to.
+     */
+    public int bandStart;
+    protected final SphereRowSampler sampler;
+    protected final BatchSphereMap coarse;
+    private final double[] trigTable, rowHeights, rowHeats, rowMoistures;
+    private long coarseState;
+    private double coarseLandMod = Double.NaN, coarseHeatMod = Double.NaN;
+
+    /**
+     * Constructs a SphereBandMap for a full map with the given size, generating bands with the given height.
+     * @param initialSeed the seed for the GWTRNG this uses; this may also be set per-call to generate
+     * @param mapWidth the width of the full map, and of each band
+     * @param mapHeight the height of the full map
+     * @param bandHeight how many rows are in each band
+     * @param noiseGenerator an instance of a noise generator capable of 3D noise, usually {@link FastNoise}
+     * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
+     * @param coarseDivisor how much smaller the coarse map used for statistics should be in each dimension, such as 16
+     */
+    public SphereBandMap(long initialSeed, int mapWidth, int mapHeight, int bandHeight, Noise.Noise3D noiseGenerator,
+                         double octaveMultiplier, int coarseDivisor) {
+        super(initialSeed, mapWidth, bandHeight);
+        fullHeight = mapHeight;
+        sampler = new SphereRowSampler(mapWidth, noiseGenerator, octaveMultiplier);
+        coarse = new BatchSphereMap(initialSeed, Math.max(2, mapWidth / coarseDivisor),
+                Math.max(2, mapHeight / coarseDivisor), noiseGenerator, octaveMultiplier);
+        trigTable = new double[mapWidth << 1];
+        rowHeights = new double[mapWidth];
+        rowHeats = new double[mapWidth];
+        rowMoistures = new double[mapWidth];
+    }
+
+    /**
+     * Generates the band of the full map starting at row {@code start}. The coarse map used for heat and moisture
+     * ranges is only regenerated when the seed or modifiers change, so moving between bands of the same world only
+     * samples the rows in each band.
+     * @param start the first row of the full map to generate; rows past the end of the full map are left empty
+     * @param landMod 1.0 is Earth-like, less than 1 is more-water, more than 1 is more-land; a random value will be
+     *                used if this is negative
+     * @param heatMod 1.125 is Earth-like, less than 1 is cooler, more than 1 is hotter; a random value will be used if
+     *                this is negative
+     * @param state the state to use for all the RNGs involved, as a long
+     */
+    public void generateBand(int start, double landMod, double heatMod, long state) {
+        if(state != coarseState || landMod != coarseLandMod || heatMod != coarseHeatMod) {
+            coarse.generate(landMod, heatMod, state);
+            coarseState = state;
+            coarseLandMod = landMod;
+            coarseHeatMod = heatMod;
+        }
+        bandStart = start;
+        // the band is always regenerated, even if the seed and modifiers are the same as the last band
+        cacheA = ~coarse.cacheA;
+        generate(landMod, heatMod, state);
+        minHeight = coarse.minHeight;
+        maxHeight = coarse.maxHeight;
+        minHeat = coarse.minHeat;
+        maxHeat = coarse.maxHeat;
+        minWet = coarse.minWet;
+        maxWet = coarse.maxWet;
+    }
+
+    @Override
+    protected void regenerate(int startX, int startY, int usedWidth, int usedHeight,
+                              double landMod, double heatMod, int stateA, int stateB) {
+        cacheA = stateA;
+        cacheB = stateB;
+        rng.setState(stateA, stateB);
+        long seedA = rng.nextLong(), seedB = rng.nextLong(), seedC = rng.nextLong();
+        landModifier = (landMod <= 0) ? rng.nextDouble(0.29) + 0.91 : landMod;
+        heatModifier = (heatMod <= 0) ? rng.nextDouble(0.45) * (rng.nextDouble()-0.5) + 1.1 : heatMod;
+
+        final double i_w = 6.283185307179586 / width,
+                i_h = 2.0 / (fullHeight+2.0),
+                i_uh = fullHeight * i_h / (fullHeight+2.0);
+        double p;
+        for (int x = 0; x < width; x++) {
+            p = x * i_w + centerLongitude;
+            trigTable[x<<1]   = NumberTools.sin(p);
+            trigTable[x<<1|1] = NumberTools.cos(p);
+        }
+        final double heatDiff0 = 0.8 / (coarse.maxHeat0 - coarse.minHeat0),
+                heatDiff1 = heatModifier / (coarse.maxHeat1 - coarse.minHeat1),
+                wetDiff = 1.0 / (coarse.maxWet0 - coarse.minWet0),
+                minHeat0 = coarse.minHeat0, minHeat1 = coarse.minHeat1, minWet0 = coarse.minWet0;
+        final double[] rowHeights = this.rowHeights, rowHeats = this.rowHeats, rowMoistures = this.rowMoistures;
+        double h, yPos, quick;
+        int hc;
+        minHeightActual = Double.POSITIVE_INFINITY;
+        maxHeightActual = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < height; y++) {
+            if(bandStart + y >= fullHeight) {
+                for (int x = 0; x < width; x++) {
+                    heightCodeData[x][y] = 1000;
+                }
+                continue;
+            }
+            yPos = (bandStart + y + 1) * i_uh;
+            sampler.sampleRow(trigTable, -1 + yPos, seedA, seedB, seedC, rowHeights, rowHeats, rowMoistures);
+            quick = SphereRowSampler.latitudeFactor(yPos);
+            for (int x = 0; x < width; x++) {
+                heightData[x][y] = (h = rowHeights[x] + landModifier - 1.0);
+                heightCodeData[x][y] = (hc = codeHeight(h));
+                heatData[x][y] = (SphereRowSampler.adjustHeat(hc, h, rowHeats[x], minHeat0, heatDiff0, quick)
+                        - minHeat1) * heatDiff1;
+                moistureData[x][y] = (rowMoistures[x] - minWet0) * wetDiff;
+                minHeightActual = Math.min(minHeightActual, h);
+                maxHeightActual = Math.max(maxHeightActual, h);
+            }
+        }
+        landData.refill(heightCodeData, 4, 999);
+    }
+}
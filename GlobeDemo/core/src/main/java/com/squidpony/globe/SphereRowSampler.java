@@ -0,0 +1,143 @@
+package com.squidpony.globe;
+
+import squidpony.squidmath.FastNoise;
+import squidpony.squidmath.Noise;
+import squidpony.squidmath.NumberTools;
+
+/**
+ * Samples the raw height, heat, and moisture noise that {@link squidpony.squidgrid.mapping.WorldMapGenerator.SphereMap}
+ * uses, one row of a map at a time, using {@link BatchNoise}. The noise fields are set up to follow SphereMap's, and
+ * {@code SphereMapCheck} in the lwjgl3 module checks the resulting maps against SphereMap's. "Raw" here means before any normalization that needs
+ * statistics from the whole map, so a row only depends on its latitude, the longitudes of its columns, and the seeds.
+ * This is shared by {@link BatchSphereMap}, which generates a whole map, and {@link SphereBandMap}, which generates
+ * horizontal bands of a map too large to keep in memory at once.
+ * <br>
+ * Each row is sampled in stages: first the row's points on the sphere are computed, then each noise field is filled
+ * for the whole row in one call, with the small steps that combine fields (offsetting the terrain by the ridged noise,
+ * warping heat and moisture) done as separate loops between those calls. The points of the most recently sampled row
+ * can be read from {@link #rowX}, {@link #rowY}, and {@link #rowZ}.
+ */
+public class SphereRowSampler {
+    private static final double terrainFreq = 1.45, terrainRidgedFreq = 2.6, heatFreq = 2.1, moistureFreq = 2.125,
+            otherFreq = 3.375;
+    public final int width;
+    public final double[] rowX, rowY, rowZ;
+    protected final BatchNoise.Batch3D terrain, terrainLayered, heat, moisture, otherRidged;
+    private final double[] warped, samples;
+
+    /**
+     * Creates a SphereRowSampler for rows of the given width.
+     * @param width how many columns are in each row
+     * @param noiseGenerator an instance of a noise generator capable of 3D noise, usually {@link FastNoise}; if it
+     *                       implements {@link BatchNoise.Batch3D}, it will be called in batches too
+     * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
+     */
+    public SphereRowSampler(int width, Noise.Noise3D noiseGenerator, double octaveMultiplier) {
+        this.width = width;
+        final BatchNoise.Batch3D basis = BatchNoise.wrap(noiseGenerator);
+        terrain = new BatchNoise.Maelstrom3D(new BatchNoise.Ridged3D(basis, (int) (0.5 + octaveMultiplier * 10), terrainFreq));
+        terrainLayered = new BatchNoise.Scaled3D(basis, terrainRidgedFreq * 0.325);
+        heat = new BatchNoise.Scaled3D(basis, heatFreq);
+        moisture = new BatchNoise.Scaled3D(basis, moistureFreq);
+        otherRidged = new BatchNoise.Maelstrom3D(new BatchNoise.Ridged3D(basis, (int) (0.5 + octaveMultiplier * 6), otherFreq));
+        rowX = new double[width];
+        rowY = new double[width];
+        rowZ = new double[width];
+        warped = new double[width];
+        samples = new double[width];
+    }
+
+    /**
+     * Fills the raw height, heat, and moisture for one row. None of these depend on the land or heat modifiers; as in
+     * SphereMap, the height of a cell is its raw height plus {@code landModifier - 1.0}, and heat and moisture still
+     * need to be normalized using statistics for the whole map.
+     * @param trigTable the sine and cosine of each column's longitude, interleaved, so sine for column x is at
+     *                  {@code x << 1} and cosine is at {@code x << 1 | 1}
+     * @param qs the sine of this row's latitude, from -1.0 to 1.0
+     * @param seedA the first seed, as SphereMap derives it from its state
+     * @param seedB the second seed, as SphereMap derives it from its state
+     * @param seedC the third seed, as SphereMap derives it from its state
+     * @param heights will be filled with raw heights, without the land modifier; must have at least {@link #width} items
+     * @param heats will be filled with raw heat; must have at least {@link #width} items
+     * @param moistures will be filled with raw moisture; must have at least {@link #width} items
+     */
+    public void sampleRow(double[] trigTable, double qs, long seedA, long seedB, long seedC,
+                          double[] heights, double[] heats, double[] moistures) {
+        final double[] rowX = this.rowX, rowY = this.rowY, rowZ = this.rowZ, warped = this.warped, samples = this.samples;
+        final double qc = NumberTools.cos(NumberTools.asin(qs));
+        for (int x = 0, xt = 0; x < width; x++) {
+            rowY[x] = trigTable[xt++] * qc;
+            rowX[x] = trigTable[xt++] * qc;
+            rowZ[x] = qs;
+        }
+
+        terrain.fillNoise(rowX, rowY, rowZ, seedB - seedA, samples, width);
+        for (int x = 0; x < width; x++) {
+            warped[x] = rowX[x] + samples[x] * 0.5;
+        }
+        terrainLayered.fillNoise(warped, rowY, rowZ, seedA, samples, width);
+        for (int x = 0; x < width; x++) {
+            heights[x] = samples[x];
+        }
+
+        otherRidged.fillNoise(rowX, rowY, rowZ, seedB + seedC, samples, width);
+        for (int x = 0; x < width; x++) {
+            warped[x] = rowY[x] + 0.375 * samples[x];
+        }
+        heat.fillNoise(rowX, warped, rowZ, seedB, heats, width);
+
+        otherRidged.fillNoise(rowX, rowY, rowZ, seedC + seedA, samples, width);
+        for (int x = 0; x < width; x++) {
+            warped[x] = rowZ[x] + 0.375 * samples[x];
+        }
+        moisture.fillNoise(rowX, rowY, warped, seedC, moistures, width);
+    }
+
+    /**
+     * Gets the factor SphereMap multiplies heat by for a row, which is lower toward the poles.
+     * @param yPos the row's position, from 0.0 at one pole to 2.0 at the other; this is {@code qs + 1.0}
+     * @return the multiplier for heat in the row
+     */
+    public static double latitudeFactor(double yPos) {
+        double quick = Math.abs(yPos - 1.0);
+        quick *= (2.4 - quick);
+        return 2.2 - quick;
+    }
+
+    /**
+     * Adjusts a raw heat value the way SphereMap does after sampling, making high places colder and shallow water
+     * slightly warmer, and scaling by latitude. The result still needs one more normalization to get the final heat.
+     * @param heightCode the height code of this cell, from {@link squidpony.squidgrid.mapping.WorldMapGenerator#codeHeight(double)}
+     * @param height the height of this cell
+     * @param heat the raw heat of this cell
+     * @param minHeat0 the minimum raw heat over the whole map
+     * @param heatDiff 0.8 divided by the range of raw heat over the whole map
+     * @param latitudeFactor the result of {@link #latitudeFactor(double)} for this row
+     * @return the adjusted heat
+     */
+    public static double adjustHeat(int heightCode, double height, double heat, double minHeat0, double heatDiff,
+                                    double latitudeFactor) {
+        double hMod = 1.0;
+        switch (heightCode) {
+            case 0:
+            case 1:
+            case 2:
+            case 3:
+                height = 0.4;
+                hMod = 0.2;
+                break;
+            case 6:
+                height = -0.1 * (height - 0.35 - 0.08);
+                break;
+            case 7:
+                height *= -0.25;
+                break;
+            case 8:
+                height *= -0.4;
+                break;
+            default:
+                height *= 0.05;
+        }
+        return (((heat - minHeat0) * heatDiff * hMod) + height + 0.6) * latitudeFactor;
+    }
+}
@@ -4,14 +4,17 @@ import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.squidpony.globe.GlobeDemo;
 
-/** Launches the desktop (LWJGL3) application. */
+/**
+ * Launches the desktop (LWJGL3) application. Passing {@code compact} as the first argument makes the globe keep its
+ * internal map in compact, quantized storage.
+ */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
-        createApplication();
+        createApplication(args.length > 0 && "compact".equalsIgnoreCase(args[0]));
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new GlobeDemo(), getDefaultConfiguration());
+    private static Lwjgl3Application createApplication(boolean compact) {
+        return new Lwjgl3Application(new GlobeDemo(compact), getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
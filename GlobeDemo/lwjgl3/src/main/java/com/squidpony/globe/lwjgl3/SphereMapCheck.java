@@ -0,0 +1,72 @@
+package com.squidpony.globe.lwjgl3;
+
+import com.squidpony.globe.BatchSphereMap;
+import squidpony.StringKit;
+import squidpony.squidgrid.mapping.WorldMapGenerator;
+import squidpony.squidmath.FastNoise;
+import squidpony.squidmath.Noise;
+
+/**
+ * Checks that {@link BatchSphereMap} generates the same height, heat, moisture, and height code data as
+ * {@link WorldMapGenerator.SphereMap} for a few seeds, modifiers, and octave multipliers, without opening a window.
+ * Prints the largest difference in each field for every case, and exits with status 1 if any field differs at all.
+ * Arguments are optional: width and height, defaulting to 256x128.
+ */
+public class SphereMapCheck {
+    private static final long[] SEEDS = {1L, 0x1337BABE1337D00DL, 0x0c415cf07774ab2eL, -12345678987654321L};
+    private static final double[] OCTAVES = {0.7, 1.0};
+
+    public static void main(String[] args) {
+        final int width = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        final int height = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+
+        // the same settings GlobeDemo gives DEFAULT_NOISE, but on a separate instance
+        FastNoise noise = new FastNoise(1337, 1f, FastNoise.SIMPLEX_FRACTAL, 2, 2.5f, 0.4f);
+
+        boolean same = true;
+        for (int o = 0; o < OCTAVES.length; o++) {
+            for (int s = 0; s < SEEDS.length; s++) {
+                same &= check(width, height, noise, OCTAVES[o], SEEDS[s], 1.0, 1.0);
+                same &= check(width, height, noise, OCTAVES[o], SEEDS[s], 0.85 + s * 0.1, 1.25 - s * 0.1);
+            }
+        }
+        System.out.println(same ? "All maps match." : "Some maps differ.");
+        if(!same)
+            System.exit(1);
+    }
+
+    private static boolean check(int width, int height, Noise.Noise3D noise, double octaveMultiplier, long seed,
+                                 double landMod, double heatMod) {
+        WorldMapGenerator.SphereMap expected = new WorldMapGenerator.SphereMap(seed, width, height, noise, octaveMultiplier);
+        BatchSphereMap actual = new BatchSphereMap(seed, width, height, noise, octaveMultiplier);
+        expected.generate(landMod, heatMod, seed);
+        actual.generate(landMod, heatMod, seed);
+        final double heightDiff = largestDifference(expected.heightData, actual.heightData),
+                heatDiff = largestDifference(expected.heatData, actual.heatData),
+                wetDiff = largestDifference(expected.moistureData, actual.moistureData);
+        int codes = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if(expected.heightCodeData[x][y] != actual.heightCodeData[x][y])
+                    codes++;
+            }
+        }
+        System.out.println("seed 0x" + StringKit.hex(seed) + "L, octaves " + octaveMultiplier + ", land " + landMod
+                + ", heat " + heatMod + ": height " + heightDiff + ", heat " + heatDiff + ", moisture " + wetDiff
+                + ", " + codes + " height codes differ");
+        return heightDiff == 0.0 && heatDiff == 0.0 && wetDiff == 0.0 && codes == 0;
+    }
+
+    private static double largestDifference(double[][] a, double[][] b) {
+        double largest = 0.0;
+        for (int x = 0; x < a.length; x++) {
+            for (int y = 0; y < a[x].length; y++) {
+                // NaN compares unequal to everything, so a NaN on either side counts as different
+                if(!(a[x][y] == b[x][y]))
+                    largest = Math.max(largest, a[x][y] != a[x][y] || b[x][y] != b[x][y]
+                            ? Double.POSITIVE_INFINITY : Math.abs(a[x][y] - b[x][y]));
+            }
+        }
+        return largest;
+    }
+}
@@ -0,0 +1,41 @@
+package com.squidpony.globe.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import squidpony.StringKit;
+import squidpony.squidgrid.mapping.WorldMapGenerator;
+import squidpony.squidmath.DiverRNG;
+import squidpony.squidmath.FastNoise;
+import squidpony.squidmath.NumberTools;
+
+/**
+ * Exports a large world as PNG tiles without opening a window, using {@link WorldTileExporter}.
+ * Arguments are all optional: width, height, seed (as hex), and output directory, defaulting to a 16384x8192 world with
+ * a random seed written to "tiles". The world uses the same noise settings and modifiers as {@link com.squidpony.globe.GlobeDemo}.
+ */
+public class WorldExportLauncher {
+    public static void main(String[] args) {
+        GdxNativesLoader.load();
+        final int width = args.length > 0 ? Integer.parseInt(args[0]) : 16384;
+        final int height = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+        final long seed = args.length > 2 ? StringKit.longFromHex(args[2]) : System.nanoTime() * 0x9E3779B97F4A7C15L;
+        final FileHandle directory = new FileHandle(args.length > 3 ? args[3] : "tiles");
+
+        WorldMapGenerator.DEFAULT_NOISE.setNoiseType(FastNoise.SIMPLEX_FRACTAL);
+        WorldMapGenerator.DEFAULT_NOISE.setFractalOctaves(2);
+        WorldMapGenerator.DEFAULT_NOISE.setFractalLacunarity(2.5f);
+        WorldMapGenerator.DEFAULT_NOISE.setFractalGain(0.4f);
+
+        System.out.println("Exporting " + width + "x" + height + " world with seed 0x" + StringKit.hex(seed) + "L to "
+                + directory.path());
+        long startTime = System.currentTimeMillis();
+        WorldTileExporter exporter = new WorldTileExporter(width, height, 256, 32, WorldMapGenerator.DEFAULT_NOISE, 0.7);
+        exporter.export(directory,
+                0.9 + NumberTools.formCurvedDouble((seed ^ 0x123456789ABCDL) * 0x12345689ABL) * 0.3,
+                DiverRNG.determineDouble(seed * 0x12345L + 0x54321L) * 0.55 + 0.9,
+                seed);
+        exporter.dispose();
+        System.out.println("Took " + (System.currentTimeMillis() - startTime) + " ms to export " + exporter.levels
+                + " zoom levels");
+    }
+}
@@ -0,0 +1,171 @@
+package com.squidpony.globe.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.NumberUtils;
+import com.squidpony.globe.SphereBandMap;
+import squidpony.squidgrid.gui.gdx.WorldMapView;
+import squidpony.squidmath.Noise;
+
+/**
+ * Exports a very large spherical world map as a pyramid of PNG tiles, without ever holding the whole map in memory.
+ * The map is generated a band of rows at a time by a {@link SphereBandMap}, colored by a {@link WorldMapView} using its
+ * usual biome mapper and color table, and copied into a strip of pixels one tile tall. When a strip fills up, its tiles
+ * are written and it is shrunk by half into the strip for the next zoom level, which fills up half as fast, and so on
+ * until the whole map fits in one tile. Memory use depends on the width of the map, the band height, and the tile size,
+ * but not on the height of the map.
+ * <br>
+ * Tiles are written to {@code directory/zoom/x/y.png}, where zoom 0 is the single tile with the whole map in it and
+ * the highest zoom has one pixel per cell. Row 0 of the image is the north edge of the map. Tiles on the right or
+ * bottom edge are smaller than the tile size if the map doesn't divide evenly.
+ * <br>
+ * This uses libGDX Pixmaps, so the native libraries must be loaded first, such as with
+ * {@link com.badlogic.gdx.utils.GdxNativesLoader#load()}. Only one export should run at a time per instance.
+ */
+public class WorldTileExporter {
+    public final int width, height, tileSize, bandHeight, levels;
+    protected final SphereBandMap bands;
+    protected final WorldMapView view;
+    private final Pixmap bandPixmap;
+    private final Pixmap[] strips, halves;
+    private final int[] levelWidths, filled, stripIndices;
+    private FileHandle directory;
+
+    /**
+     * Creates an exporter for worlds of the given size.
+     * @param width the width of the full map, in cells
+     * @param height the height of the full map, in cells
+     * @param tileSize the width and height of each tile, such as 256; must be even
+     * @param bandHeight how many rows to generate at once; must divide {@code tileSize} evenly
+     * @param noiseGenerator an instance of a noise generator capable of 3D noise, usually {@link squidpony.squidmath.FastNoise}
+     * @param octaveMultiplier used to adjust the level of detail, with 0.5 at the bare-minimum detail and 1.0 normal
+     */
+    public WorldTileExporter(int width, int height, int tileSize, int bandHeight, Noise.Noise3D noiseGenerator,
+                             double octaveMultiplier) {
+        if(width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Map size must be positive, not " + width + "x" + height);
+        if(tileSize <= 0 || (tileSize & 1) != 0 || bandHeight <= 0 || tileSize % bandHeight != 0)
+            throw new IllegalArgumentException("tileSize must be even and a multiple of bandHeight");
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.bandHeight = bandHeight;
+        int lv = 1;
+        for (int size = Math.max(width, height); size > tileSize; size = size + 1 >> 1) {
+            lv++;
+        }
+        levels = lv;
+        bands = new SphereBandMap(1L, width, height, bandHeight, noiseGenerator, octaveMultiplier, 16);
+        view = new WorldMapView(bands);
+        bandPixmap = new Pixmap(width, bandHeight, Pixmap.Format.RGBA8888);
+        bandPixmap.setBlending(Pixmap.Blending.None);
+        strips = new Pixmap[levels];
+        halves = new Pixmap[levels];
+        levelWidths = new int[levels];
+        filled = new int[levels];
+        stripIndices = new int[levels];
+        for (int i = 0, w = width; i < levels; i++, w = w + 1 >> 1) {
+            levelWidths[i] = w;
+            strips[i] = new Pixmap(w, tileSize, Pixmap.Format.RGBA8888);
+            strips[i].setBlending(Pixmap.Blending.None);
+            if(i + 1 < levels) {
+                halves[i] = new Pixmap(w + 1 >> 1, tileSize >> 1, Pixmap.Format.RGBA8888);
+                halves[i].setBlending(Pixmap.Blending.None);
+            }
+        }
+    }
+
+    /**
+     * Generates the world with the given state and modifiers, writing all of its tiles under {@code directory}.
+     * @param directory the directory to write tiles into; zoom directories will be created in it
+     * @param landMod 1.0 is Earth-like, less than 1 is more-water, more than 1 is more-land; a random value will be
+     *                used if this is negative
+     * @param heatMod 1.125 is Earth-like, less than 1 is cooler, more than 1 is hotter; a random value will be used if
+     *                this is negative
+     * @param state the state to use for all the RNGs involved, as a long
+     */
+    public void export(FileHandle directory, double landMod, double heatMod, long state) {
+        this.directory = directory;
+        for (int i = 0; i < levels; i++) {
+            filled[i] = 0;
+            stripIndices[i] = 0;
+        }
+        float[][] colors;
+        float c;
+        int rows;
+        // image rows go from north to south, but map rows go from south to north
+        for (int top = 0; top < height; top += bandHeight) {
+            rows = Math.min(bandHeight, height - top);
+            bands.generateBand(height - top - rows, landMod, heatMod, state);
+            view.getBiomeMapper().makeBiomes(bands);
+            view.show();
+            colors = view.getColorMap();
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < width; x++) {
+                    c = colors[x][y];
+                    bandPixmap.drawPixel(x, rows - 1 - y, c == WorldMapView.emptyColor ? 0
+                            : Integer.reverseBytes(NumberUtils.floatToIntColor(c)));
+                }
+            }
+            addRows(0, bandPixmap, rows);
+        }
+        for (int i = 0; i < levels; i++) {
+            if(filled[i] > 0)
+                flush(i);
+        }
+    }
+
+    private void addRows(int level, Pixmap source, int rows) {
+        strips[level].drawPixmap(source, 0, 0, levelWidths[level], rows, 0, filled[level], levelWidths[level], rows);
+        if((filled[level] += rows) >= tileSize)
+            flush(level);
+    }
+
+    private void flush(int level) {
+        final Pixmap strip = strips[level];
+        final int rows = filled[level], levelWidth = levelWidths[level], zoom = levels - 1 - level, ty = stripIndices[level];
+        for (int tx = 0, x = 0; x < levelWidth; tx++, x += tileSize) {
+            final int w = Math.min(tileSize, levelWidth - x);
+            final Pixmap tile = new Pixmap(w, rows, Pixmap.Format.RGBA8888);
+            tile.setBlending(Pixmap.Blending.None);
+            tile.drawPixmap(strip, x, 0, w, rows, 0, 0, w, rows);
+            PixmapIO.writePNG(directory.child(zoom + "/" + tx + "/" + ty + ".png"), tile);
+            tile.dispose();
+        }
+        if(level + 1 < levels) {
+            final Pixmap half = halves[level];
+            final int halfWidth = levelWidth + 1 >> 1, halfRows = rows + 1 >> 1;
+            for (int y = 0; y < halfRows; y++) {
+                final int y0 = y << 1, y1 = Math.min(y0 + 1, rows - 1);
+                for (int x = 0; x < halfWidth; x++) {
+                    final int x0 = x << 1, x1 = Math.min(x0 + 1, levelWidth - 1);
+                    half.drawPixel(x, y, average(strip.getPixel(x0, y0), strip.getPixel(x1, y0),
+                            strip.getPixel(x0, y1), strip.getPixel(x1, y1)));
+                }
+            }
+            addRows(level + 1, half, halfRows);
+        }
+        filled[level] = 0;
+        stripIndices[level]++;
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        return ((a >>> 24) + (b >>> 24) + (c >>> 24) + (d >>> 24) + 2 >>> 2) << 24
+                | ((a >>> 16 & 255) + (b >>> 16 & 255) + (c >>> 16 & 255) + (d >>> 16 & 255) + 2 >>> 2) << 16
+                | ((a >>> 8 & 255) + (b >>> 8 & 255) + (c >>> 8 & 255) + (d >>> 8 & 255) + 2 >>> 2) << 8
+                | ((a & 255) + (b & 255) + (c & 255) + (d & 255) + 2 >>> 2);
+    }
+
+    /**
+     * Releases the native memory used by this exporter's Pixmaps; this can't be used after that.
+     */
+    public void dispose() {
+        bandPixmap.dispose();
+        for (int i = 0; i < levels; i++) {
+            strips[i].dispose();
+            if(halves[i] != null)
+                halves[i].dispose();
+        }
+    }
+}
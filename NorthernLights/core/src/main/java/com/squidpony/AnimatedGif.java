@@ -6,8 +6,17 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.StreamUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Based on Nick Badal's Android port ( https://github.com/nbadal/android-gif-encoder/blob/master/GifEncoder.java ) of
@@ -33,11 +42,86 @@ public class AnimatedGif {
             palette = new PaletteReducer(frames);
         start(output);
         setFrameRate(fps);
-        for (int i = 0; i < frames.size; i++) {
-            addFrame(frames.get(i));
+        if (threadCount > 1 && frames.size > 1)
+            writeParallel(frames);
+        else {
+            for (int i = 0; i < frames.size; i++) {
+                addFrame(frames.get(i));
+            }
         }
         finish();
     }
+
+    /**
+     * Writes all of {@code frames} the same way {@link #addFrame(Pixmap)} would, but with each frame reduced to the
+     * palette and LZW-compressed on one of {@link #setThreadCount(int) several threads}. Only a few frames per thread
+     * are worked on ahead of the frame being written, and the calling thread writes the compressed frames in order.
+     */
+    private void writeParallel(final Array<Pixmap> frames) throws IOException {
+        if (!sizeSet)
+            setSize(frames.first().getWidth(), frames.first().getHeight());
+        buildColorTable();
+        colorDepth = 8;
+        palSize = 7;
+        if (palette.paletteArray[0] == 0)
+            transIndex = 0;
+        writeLSD();
+        writePalette();
+        if (repeat >= 0)
+            writeNetscapeExt();
+
+        final int count = frames.size, threads = Math.min(threadCount, count), ahead = threads * 2;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(ahead);
+        try {
+            for (int i = 0, next = 0; i < count; i++) {
+                for (; next < count && next < i + ahead; next++) {
+                    final Pixmap frame = frames.get(next);
+                    pending.add(pool.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            return encodeFrame(frame);
+                        }
+                    }));
+                }
+                final byte[] encoded = pending.poll().get();
+                writeGraphicCtrlExt();
+                writeImageDesc();
+                if (!firstFrame)
+                    writePalette();
+                out.write(encoded);
+                firstFrame = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing frames");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Failed to encode a frame", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reduces one frame to the palette and compresses it, returning the bytes {@link #writePixels()} would write for
+     * it. This doesn't change any fields, so it can run on any thread.
+     */
+    protected byte[] encodeFrame(Pixmap frame) throws IOException {
+        Pixmap im = frame;
+        if (im.getWidth() != width || im.getHeight() != height) {
+            im = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+            im.drawPixmap(frame, 0, 0);
+        }
+        final byte[] pixels = new byte[width * height];
+        quantize(im, pixels, new boolean[256]);
+        if (im != frame)
+            im.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(pixels.length >>> 1);
+        new LZWEncoder(width, height, pixels, 8).encode(bytes);
+        return bytes.toByteArray();
+    }
     
     protected int width; // image size
 
@@ -77,6 +161,8 @@ public class AnimatedGif {
 
     protected boolean sizeSet = false; // if false, get size from first frame
 
+    protected int threadCount = Runtime.getRuntime().availableProcessors(); // threads used by write()
+
     public PaletteReducer palette;
 
     /**
@@ -89,6 +175,17 @@ public class AnimatedGif {
         delay = ms;
     }
 
+    /**
+     * Sets how many threads the write methods use to reduce and compress frames; the frames are still written in
+     * order by the calling thread. Default is the number of available processors; 1 does everything on the calling
+     * thread, the same as calling {@link #addFrame(Pixmap)} for each frame. This doesn't affect addFrame().
+     *
+     * @param threads how many threads to use, at least 1
+     */
+    public void setThreadCount(int threads) {
+        threadCount = Math.max(1, threads);
+    }
+
     /**
      * Sets the GIF frame disposal code for the last added frame and any
      * subsequent frames. Default is 0 if no transparent color has been set,
@@ -121,7 +218,10 @@ public class AnimatedGif {
      * deferred until the next frame is received so that timing data can be
      * inserted. Invoking <code>finish()</code> flushes all frames. If
      * <code>setSize</code> was not invoked, the size of the first image is used
-     * for all subsequent frames.
+     * for all subsequent frames. If {@link #palette} is null, it is analyzed from
+     * the first frame; assign it before adding frames to use a palette that fits
+     * the whole animation. The frame isn't needed after this returns, so frames
+     * can be rendered, added, and disposed one at a time.
      *
      * @param im BufferedImage containing frame to write.
      * @return true if successful.
@@ -136,6 +236,10 @@ public class AnimatedGif {
                 // use first frame's size
                 setSize(im.getWidth(), im.getHeight());
             }
+            if (palette == null) {
+                // frames added one at a time can't all be analyzed, so the first one is used
+                palette = new PaletteReducer(im);
+            }
             image = im;
             getImagePixels(); // convert to correct format if necessary
             analyzePixels(); // build color table & map pixels
@@ -261,24 +365,52 @@ public class AnimatedGif {
         int nPix = width * height;
         indexedPixels = new byte[nPix];
 //        palette.analyze(image);
+        buildColorTable();
+        for (int i = 0; i < 256; i++) {
+            usedEntry[i] = false;
+        }
+        quantize(image, indexedPixels, usedEntry);
+        colorDepth = 8;
+        palSize = 7;
+        // get closest match to transparent color if specified
+        if (palette.paletteArray[0] == 0) {
+            transIndex = 0;
+        }
+    }
+
+    /**
+     * Fills {@link #colorTab} with the colors of {@link #palette}.
+     */
+    protected void buildColorTable() {
         final int[] paletteArray = palette.paletteArray;
-        final byte[] paletteMapping = palette.paletteMapping;
-        // initialize quantizer
         colorTab = new byte[256 * 3]; // create reduced palette
         for (int i = 0, bi = 0; i < 256; i++) {
             int pa = paletteArray[i];
             colorTab[bi++] = (byte) (pa >>> 24);
             colorTab[bi++] = (byte) (pa >>> 16);
             colorTab[bi++] = (byte) (pa >>> 8);
-            usedEntry[i] = false;
         }
+    }
+
+    /**
+     * Maps the pixels of {@code image}, flipped vertically, to indices in {@link #palette} with dithering, storing
+     * them in {@code indexedPixels} and marking each index used in {@code usedEntry}. This only reads fields, so it
+     * can run on several threads at once.
+     */
+    protected void quantize(Pixmap image, byte[] indexedPixels, boolean[] usedEntry) {
+        final int nPix = width * height;
+        final int[] paletteArray = palette.paletteArray;
+        final byte[] paletteMapping = palette.paletteMapping;
         // map image pixels to new palette
         int color, used, flipped = height - 1;
         boolean hasTransparent = paletteArray[0] == 0;
         float pos, adj, strength = palette.ditherStrength * 3.333f;
+        final IntBuffer ints = PaletteReducer.rgba8888(image);
+        final int[] row = new int[width];
         for (int y = 0, i = 0; y < height && i < nPix; y++) {
+            PaletteReducer.readRow(image, ints, flipped - y, row, width);
             for (int px = 0; px < width & i < nPix; px++) {
-                color = image.getPixel(px, flipped - y) & 0xF8F8F880;
+                color = row[px] & 0xF8F8F880;
                 if ((color & 0x80) == 0 && hasTransparent)
                     indexedPixels[i++] = 0;
                 else {
@@ -304,12 +436,6 @@ public class AnimatedGif {
                 }
             }
         }
-        colorDepth = 8;
-        palSize = 7;
-        // get closest match to transparent color if specified
-        if (hasTransparent) {
-            transIndex = 0;
-        }
     }
 
     /**
@@ -64,6 +64,8 @@ public class AnimatedPNG implements Disposable {
     private ByteArray lineOutBytes, curLineBytes, prevLineBytes;
     private boolean flipY = true;
     private int lastLineLen;
+    private DataOutputStream dataOutput; // non-null between start() and finish()
+    private int width, height, fps, framesLeft, seq;
 
     /**
      * Creates an AnimatedPNG writer with an initial buffer size of 16384. The buffer can resize later if needed.
@@ -142,11 +144,35 @@ public class AnimatedPNG implements Disposable {
      */
     public void write(OutputStream output, Array<Pixmap> frames, int fps) throws IOException {
         Pixmap pixmap = frames.first();
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
-        DataOutputStream dataOutput = new DataOutputStream(output);
+        start(output, pixmap.getWidth(), pixmap.getHeight(), frames.size, fps);
+        for (int i = 0; i < frames.size; i++) {
+            addFrame(frames.get(i));
+        }
+        finish();
+    }
+
+    /**
+     * Starts writing an animated PNG to {@code output} one frame at a time, so frames can be written as they are
+     * rendered instead of all being kept in an Array first. After this, call {@link #addFrame(Pixmap)} exactly
+     * {@code frameCount} times, and then {@link #finish()}. Each frame is compressed and written when it is added, so
+     * it can be disposed right after that; memory use doesn't depend on how many frames there are.
+     * @param output the stream to write to; the stream will not be closed
+     * @param width the width of every frame
+     * @param height the height of every frame
+     * @param frameCount how many frames will be added; this has to be known because it is written first
+     * @param fps how many frames per second the animated PNG should display
+     * @throws IOException if an I/O error occurs.
+     */
+    public void start(OutputStream output, int width, int height, int frameCount, int fps) throws IOException {
+        if (frameCount <= 0)
+            throw new IllegalArgumentException("frameCount must be positive, not " + frameCount);
+        dataOutput = new DataOutputStream(output);
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        framesLeft = frameCount;
+        seq = 0;
         dataOutput.write(SIGNATURE);
-        final int width = pixmap.getWidth();
-        final int height = pixmap.getHeight();
 
         buffer.writeInt(IHDR);
         buffer.writeInt(width);
@@ -159,107 +185,136 @@ public class AnimatedPNG implements Disposable {
         buffer.endChunk(dataOutput);
 
         buffer.writeInt(acTL);
-        buffer.writeInt(frames.size);
+        buffer.writeInt(frameCount);
         buffer.writeInt(0);
         buffer.endChunk(dataOutput);
+    }
 
+    /**
+     * Compresses and writes one frame of an animated PNG started with
+     * {@link #start(OutputStream, int, int, int, int)}. The frame must have the size given to start(); it isn't kept
+     * after this returns.
+     * @param pixmap the next frame
+     * @throws IOException if an I/O error occurs.
+     */
+    public void addFrame(Pixmap pixmap) throws IOException {
+        if (dataOutput == null)
+            throw new IllegalStateException("start() must be called before addFrame()");
+        if (framesLeft <= 0)
+            throw new IllegalStateException("More frames were added than were given to start()");
+        if (pixmap.getWidth() != width || pixmap.getHeight() != height)
+            throw new IllegalArgumentException("Frame is " + pixmap.getWidth() + "x" + pixmap.getHeight()
+                    + " but the animation is " + width + "x" + height);
+        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
         int lineLen = width * 4;
         byte[] lineOut, curLine, prevLine;
         ByteBuffer pixels;
         int oldPosition;
-        boolean rgba8888 = pixmap.getFormat() == Pixmap.Format.RGBA8888;
-        int seq = 0;
-        for (int i = 0; i < frames.size; i++) {
+        boolean rgba8888 = pixmap.getFormat() == Pixmap.Format.RGBA8888 && PaletteReducer.bulkPixels();
+
+        buffer.writeInt(fcTL);
+        buffer.writeInt(seq++);
+        buffer.writeInt(width);
+        buffer.writeInt(height);
+        buffer.writeInt(0);
+        buffer.writeInt(0);
+        buffer.writeShort(1);
+        buffer.writeShort(fps);
+        buffer.writeByte(0);
+        buffer.writeByte(0);
+        buffer.endChunk(dataOutput);
 
-            buffer.writeInt(fcTL);
+        if (seq == 1) {
+            buffer.writeInt(IDAT);
+        } else {
+            buffer.writeInt(fdAT);
             buffer.writeInt(seq++);
-            buffer.writeInt(width);
-            buffer.writeInt(height);
-            buffer.writeInt(0);
-            buffer.writeInt(0);
-            buffer.writeShort(1);
-            buffer.writeShort(fps);
-            buffer.writeByte(0);
-            buffer.writeByte(0);
-            buffer.endChunk(dataOutput);
+        }
+        deflater.reset();
 
-            if (i == 0) {
-                buffer.writeInt(IDAT);
-            } else {
-                pixmap = frames.get(i);
-                buffer.writeInt(fdAT);
-                buffer.writeInt(seq++);
-            }
-            deflater.reset();
+        if (lineOutBytes == null) {
+            lineOut = (lineOutBytes = new ByteArray(lineLen)).items;
+            curLine = (curLineBytes = new ByteArray(lineLen)).items;
+            prevLine = (prevLineBytes = new ByteArray(lineLen)).items;
+        } else {
+            lineOut = lineOutBytes.ensureCapacity(lineLen);
+            curLine = curLineBytes.ensureCapacity(lineLen);
+            prevLine = prevLineBytes.ensureCapacity(lineLen);
+            for (int ln = 0, n = lastLineLen; ln < n; ln++)
+                prevLine[ln] = 0;
+        }
+        lastLineLen = lineLen;
 
-            if (lineOutBytes == null) {
-                lineOut = (lineOutBytes = new ByteArray(lineLen)).items;
-                curLine = (curLineBytes = new ByteArray(lineLen)).items;
-                prevLine = (prevLineBytes = new ByteArray(lineLen)).items;
+        pixels = pixmap.getPixels();
+        oldPosition = pixels.position();
+        for (int y = 0; y < height; y++) {
+            int py = flipY ? (height - y - 1) : y;
+            if (rgba8888) {
+                pixels.position(py * lineLen);
+                pixels.get(curLine, 0, lineLen);
             } else {
-                lineOut = lineOutBytes.ensureCapacity(lineLen);
-                curLine = curLineBytes.ensureCapacity(lineLen);
-                prevLine = prevLineBytes.ensureCapacity(lineLen);
-                for (int ln = 0, n = lastLineLen; ln < n; ln++)
-                    prevLine[ln] = 0;
-            }
-            lastLineLen = lineLen;
-
-            pixels = pixmap.getPixels();
-            oldPosition = pixels.position();
-            for (int y = 0; y < height; y++) {
-                int py = flipY ? (height - y - 1) : y;
-                if (rgba8888) {
-                    pixels.position(py * lineLen);
-                    pixels.get(curLine, 0, lineLen);
-                } else {
-                    for (int px = 0, x = 0; px < width; px++) {
-                        int pixel = pixmap.getPixel(px, py);
-                        curLine[x++] = (byte) ((pixel >> 24) & 0xff);
-                        curLine[x++] = (byte) ((pixel >> 16) & 0xff);
-                        curLine[x++] = (byte) ((pixel >> 8) & 0xff);
-                        curLine[x++] = (byte) (pixel & 0xff);
-                    }
+                for (int px = 0, x = 0; px < width; px++) {
+                    int pixel = pixmap.getPixel(px, py);
+                    curLine[x++] = (byte) ((pixel >> 24) & 0xff);
+                    curLine[x++] = (byte) ((pixel >> 16) & 0xff);
+                    curLine[x++] = (byte) ((pixel >> 8) & 0xff);
+                    curLine[x++] = (byte) (pixel & 0xff);
                 }
+            }
 
-                lineOut[0] = (byte) (curLine[0] - prevLine[0]);
-                lineOut[1] = (byte) (curLine[1] - prevLine[1]);
-                lineOut[2] = (byte) (curLine[2] - prevLine[2]);
-                lineOut[3] = (byte) (curLine[3] - prevLine[3]);
+            lineOut[0] = (byte) (curLine[0] - prevLine[0]);
+            lineOut[1] = (byte) (curLine[1] - prevLine[1]);
+            lineOut[2] = (byte) (curLine[2] - prevLine[2]);
+            lineOut[3] = (byte) (curLine[3] - prevLine[3]);
 
-                for (int x = 4; x < lineLen; x++) {
-                    int a = curLine[x - 4] & 0xff;
-                    int b = prevLine[x] & 0xff;
-                    int c = prevLine[x - 4] & 0xff;
-                    int p = a + b - c;
-                    int pa = p - a;
-                    if (pa < 0) pa = -pa;
-                    int pb = p - b;
-                    if (pb < 0) pb = -pb;
-                    int pc = p - c;
-                    if (pc < 0) pc = -pc;
-                    if (pa <= pb && pa <= pc)
-                        c = a;
-                    else if (pb <= pc) //
-                        c = b;
-                    lineOut[x] = (byte) (curLine[x] - c);
-                }
+            for (int x = 4; x < lineLen; x++) {
+                int a = curLine[x - 4] & 0xff;
+                int b = prevLine[x] & 0xff;
+                int c = prevLine[x - 4] & 0xff;
+                int p = a + b - c;
+                int pa = p - a;
+                if (pa < 0) pa = -pa;
+                int pb = p - b;
+                if (pb < 0) pb = -pb;
+                int pc = p - c;
+                if (pc < 0) pc = -pc;
+                if (pa <= pb && pa <= pc)
+                    c = a;
+                else if (pb <= pc) //
+                    c = b;
+                lineOut[x] = (byte) (curLine[x] - c);
+            }
 
-                deflaterOutput.write(PAETH);
-                deflaterOutput.write(lineOut, 0, lineLen);
+            deflaterOutput.write(PAETH);
+            deflaterOutput.write(lineOut, 0, lineLen);
 
-                byte[] temp = curLine;
-                curLine = prevLine;
-                prevLine = temp;
-            }
-            pixels.position(oldPosition);
-            deflaterOutput.finish();
-            buffer.endChunk(dataOutput);
+            byte[] temp = curLine;
+            curLine = prevLine;
+            prevLine = temp;
         }
-        buffer.writeInt(IEND);
+        pixels.position(oldPosition);
+        deflaterOutput.finish();
         buffer.endChunk(dataOutput);
+        framesLeft--;
+    }
 
-        output.flush();
+    /**
+     * Ends an animated PNG started with {@link #start(OutputStream, int, int, int, int)}, after all of its frames
+     * have been added. The stream is flushed but not closed.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        if (dataOutput == null)
+            throw new IllegalStateException("start() must be called before finish()");
+        try {
+            if (framesLeft != 0)
+                throw new IllegalStateException(framesLeft + " fewer frames were added than were given to start()");
+            buffer.writeInt(IEND);
+            buffer.endChunk(dataOutput);
+            dataOutput.flush();
+        } finally {
+            dataOutput = null;
+        }
     }
 
     /**
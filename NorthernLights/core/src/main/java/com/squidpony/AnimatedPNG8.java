@@ -0,0 +1,983 @@
+package com.squidpony;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Indexed-mode AnimatedPNG encoder with compression. An instance can be reused to encode multiple APNGs with low allocation.
+ * You can configure the target palette and how this can dither colors via the {@link #palette} field, which is a
+ * {@link PaletteReducer} object that is allowed to be null and can be reused. The methods
+ * {@link PaletteReducer#exact(Color[])} or {@link PaletteReducer#analyze(Pixmap)} can be used to make the target
+ * palette match a specific set of colors or the colors in an existing image. You can use
+ * {@link PaletteReducer#setDitherStrength(float)} to reduce (or increase) dither strength; the algorithm used here is
+ * standard Floyd-Steinberg dithering.
+ * <p>
+ * From LibGDX in the class PixmapIO, with modifications to support indexed-mode files, dithering, and other features.
+ * <pre>
+ * Copyright (c) 2007 Matthias Mann - www.matthiasmann.de
+ * Copyright (c) 2014 Nathan Sweet
+ * Copyright (c) 2018 Tommy Ettinger
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * </pre>
+ *
+ * @author Matthias Mann
+ * @author Nathan Sweet
+ * @author Tommy Ettinger (PNG-8 parts only)
+ */
+
+public class AnimatedPNG8 implements Disposable {
+    static private final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    static private final int IHDR = 0x49484452, IDAT = 0x49444154, IEND = 0x49454E44,
+            PLTE = 0x504C5445, TRNS = 0x74524E53,
+            acTL = 0x6163544C, fcTL = 0x6663544C, fdAT = 0x66644154;
+
+    static private final byte COLOR_INDEXED = 3;
+    static private final byte COMPRESSION_DEFLATE = 0;
+    static private final byte FILTER_NONE = 0;
+    static private final byte INTERLACE_NONE = 0;
+    static private final byte NONE = 0;
+    static private final byte SUB = 1;
+    static private final byte UP = 2;
+    static private final byte AVERAGE = 3;
+    static private final byte PAETH = 4;
+    static private final byte APNG_DISPOSE_OP_NONE = 0;
+    static private final byte APNG_BLEND_OP_SOURCE = 0;
+    /**
+     * How many rows share one filter choice when {@link #setFastFiltering(boolean)} is true.
+     */
+    static public final int FAST_FILTER_ROWS = 16;
+
+    private final ChunkBuffer buffer;
+    private final Deflater deflater;
+    private ByteArray lineOutBytes, zeroLineBytes;
+    private final Trial trial = new Trial();
+    private byte[] prevFrame, curFrame;
+    private boolean flipY = true;
+    private int compression = Deflater.DEFAULT_COMPRESSION;
+    private boolean fastFiltering = false;
+    private boolean trialFiltering = false;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private DataOutputStream streamOutput; // non-null between start() and finish()
+    private int streamWidth, streamHeight, streamFps, streamCount, streamAdded, streamSeq;
+    private boolean streamDither, streamTransparent;
+
+    public PaletteReducer palette;
+
+    public AnimatedPNG8 () {
+        this(128 * 128);
+    }
+
+    public AnimatedPNG8 (int initialBufferSize) {
+        buffer = new ChunkBuffer(initialBufferSize);
+        deflater = new Deflater();
+    }
+
+    /**
+     * If true, the resulting PNG is flipped vertically. Default is true.
+     */
+    public void setFlipY(boolean flipY) {
+        this.flipY = flipY;
+    }
+
+    /**
+     * Sets the deflate compression level. Default is {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public void setCompression(int level) {
+        deflater.setLevel(level);
+        compression = level;
+    }
+
+    /**
+     * If true, the PNG filter is only chosen for the first row of each frame and then every {@link #FAST_FILTER_ROWS}
+     * rows, and the rows between reuse the previous row's choice; this skips most of the work of trying all five
+     * filters, for slightly larger files. If false (the default), the filter is chosen for every row.
+     */
+    public void setFastFiltering(boolean fastFiltering) {
+        this.fastFiltering = fastFiltering;
+    }
+
+    /**
+     * If true, each frame is also compressed with every row unfiltered, and whichever version is smaller gets written;
+     * this takes about twice as long, but palette indices often compress best unfiltered, so it can make noticeably
+     * smaller files for dithered images. If false (the default), each frame is compressed once, with filters chosen
+     * as {@link #setFastFiltering(boolean)} says; see {@link #compressRegion}.
+     */
+    public void setTrialFiltering(boolean trialFiltering) {
+        this.trialFiltering = trialFiltering;
+    }
+
+    /**
+     * Sets how many threads to use when writing frames; each frame is reduced to the palette and compressed on one of
+     * these threads, while the calling thread writes the finished frames in order. Default is the number of available
+     * processors; 1 writes everything on the calling thread.
+     */
+    public void setThreadCount(int threads) {
+        threadCount = Math.max(1, threads);
+    }
+
+    /**
+     * Writes the given Pixmaps to the requested FileHandle at the requested frames per second.
+     * If {@link #palette} is null (the default unless it has been assigned a PaletteReducer value), this will
+     * compute a palette from all of the frames given. Otherwise, this uses the colors already in {@link #palette}.
+     * Always dithers the result.
+     *
+     * @param file   a FileHandle that must be writable, and will have the given Pixmap written as a PNG-8 image
+     * @param frames a Pixmap Array to write as a sequence of frames to the given output stream
+     * @param fps    how many frames per second the animation should run at
+     * @throws IOException if file writing fails for any reason
+     */
+    public void write(FileHandle file, Array<Pixmap> frames, int fps) throws IOException {
+        write(file, frames, fps, true);
+    }
+
+    /**
+     * Writes the Pixmaps to the stream without closing the stream, optionally computing an 8-bit palette from the given
+     * Pixmap. If {@link #palette} is null (the default unless it has been assigned a PaletteReducer value), this will
+     * compute a palette from all of the frames given. Otherwise, this uses the colors already in {@link #palette}.
+     * Optionally dithers the result if {@code dither} is true.
+     *
+     * @param file   a FileHandle that must be writable, and will have the given Pixmap written as a PNG-8 image
+     * @param frames a Pixmap Array to write as a sequence of frames to the given output stream
+     * @param fps    how many frames per second the animation should run at
+     * @param dither true if this should dither colors that can't be represented exactly
+     * @throws IOException if file writing fails for any reason
+     */
+    public void write(FileHandle file, Array<Pixmap> frames, int fps, boolean dither) throws IOException {
+        OutputStream output = file.write(false);
+        try {
+            write(output, frames, fps, dither);
+        } finally {
+            StreamUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Writes the Pixmaps to the stream without closing the stream, optionally computing an 8-bit palette from the given
+     * Pixmaps. If {@link #palette} is null (the default unless it has been assigned a PaletteReducer value), this will
+     * compute a palette from all of the frames given. Otherwise, this uses the colors already in {@link #palette}.
+     * Optionally dithers the result if {@code dither} is true.
+     * 
+     * @param output an OutputStream that will not be closed
+     * @param frames a Pixmap Array to write as a sequence of frames to the given output stream
+     * @param fps    how many frames per second the animation should run at
+     * @param dither true if this should dither colors that can't be represented exactly
+     */
+    public void write(OutputStream output, Array<Pixmap> frames, int fps, boolean dither) throws IOException {
+        if (palette == null)
+            palette = new PaletteReducer(frames);
+        writeFrames(output, frames, fps, dither);
+    }
+
+    /**
+     * Starts writing an APNG to {@code output} one frame at a time, so frames can be written as they are rendered
+     * instead of all being kept in an Array first. After this, call {@link #addFrame(Pixmap)} exactly
+     * {@code frameCount} times, and then {@link #finish()}. Each frame is reduced to the palette and compressed when it
+     * is added, so it can be disposed right after that; memory use doesn't depend on how many frames there are.
+     * <br>
+     * If {@link #palette} is null, a palette is made from the first frame added. For a palette that fits the whole
+     * animation better, assign one before adding frames, such as one analyzed from a few frames rendered ahead of time.
+     * As with write(), only the part of each frame that changed is stored, but frames that are the same as the one
+     * before them are still written (as tiny 1x1 frames), because the frame count has to be written first.
+     *
+     * @param output     the stream to write to; the stream will not be closed
+     * @param width      the width of every frame
+     * @param height     the height of every frame
+     * @param frameCount how many frames will be added
+     * @param fps        how many frames per second the animation should run at
+     * @param dither     true if this should dither colors that can't be represented exactly
+     */
+    public void start(OutputStream output, int width, int height, int frameCount, int fps, boolean dither) {
+        if (frameCount <= 0)
+            throw new IllegalArgumentException("frameCount must be positive, not " + frameCount);
+        streamOutput = new DataOutputStream(output);
+        streamWidth = width;
+        streamHeight = height;
+        streamFps = fps;
+        streamDither = dither;
+        streamCount = frameCount;
+        streamAdded = 0;
+        streamSeq = 0;
+    }
+
+    /**
+     * Reduces one frame of an APNG started with {@link #start(OutputStream, int, int, int, int, boolean)} to the
+     * palette, and writes the part of it that changed since the last frame. The frame must have the size given to
+     * start(); it isn't kept after this returns.
+     *
+     * @param pixmap the next frame
+     */
+    public void addFrame(Pixmap pixmap) throws IOException {
+        if (streamOutput == null)
+            throw new IllegalStateException("start() must be called before addFrame()");
+        if (streamAdded >= streamCount)
+            throw new IllegalStateException("More frames were added than were given to start()");
+        final int width = streamWidth, height = streamHeight;
+        if (pixmap.getWidth() != width || pixmap.getHeight() != height)
+            throw new IllegalArgumentException("Frame is " + pixmap.getWidth() + "x" + pixmap.getHeight()
+                    + " but the animation is " + width + "x" + height);
+        if (streamAdded == 0) {
+            if (palette == null)
+                palette = new PaletteReducer(pixmap);
+            streamTransparent = writeHeader(streamOutput, width, height, streamCount);
+            final int size = width * height;
+            if (prevFrame == null || prevFrame.length < size) {
+                prevFrame = new byte[size];
+                curFrame = new byte[size];
+            }
+        }
+        final byte[] lineOut, zeroLine;
+        if (lineOutBytes == null) {
+            lineOut = (lineOutBytes = new ByteArray(width)).items;
+            zeroLine = (zeroLineBytes = new ByteArray(width)).items;
+        } else {
+            lineOut = lineOutBytes.ensureCapacity(width);
+            zeroLine = zeroLineBytes.ensureCapacity(width);
+        }
+        final int[] region = new int[4];
+        quantize(pixmap, curFrame, width, height, streamTransparent, streamDither);
+        findRegion(streamAdded == 0 ? null : prevFrame, curFrame, width, height, region);
+        streamSeq = startFrame(streamSeq, region, 1, streamFps, streamOutput);
+        compressRegion(deflater, buffer, trial, curFrame, width, region, lineOut, zeroLine, fastFiltering,
+                trialFiltering);
+        buffer.endChunk(streamOutput);
+        final byte[] temp = prevFrame;
+        prevFrame = curFrame;
+        curFrame = temp;
+        streamAdded++;
+    }
+
+    /**
+     * Ends an APNG started with {@link #start(OutputStream, int, int, int, int, boolean)}, after all of its frames have
+     * been added. The stream is flushed but not closed.
+     */
+    public void finish() throws IOException {
+        if (streamOutput == null)
+            throw new IllegalStateException("start() must be called before finish()");
+        try {
+            if (streamAdded != streamCount)
+                throw new IllegalStateException("Only " + streamAdded + " of " + streamCount + " frames were added");
+            buffer.writeInt(IEND);
+            buffer.endChunk(streamOutput);
+            streamOutput.flush();
+        } finally {
+            streamOutput = null;
+        }
+    }
+
+    /**
+     * Writes every frame as an APNG, only storing the part of each frame that changed since the frame before it.
+     * Each frame is first reduced to palette indices; the smallest rectangle containing every index that differs from
+     * the previous frame is all that gets compressed, with its offset stored in the frame's fcTL chunk and with the
+     * {@code APNG_DISPOSE_OP_NONE} and {@code APNG_BLEND_OP_SOURCE} ops, so the rectangle replaces that part of the
+     * previous frame and everything else stays. A frame with exactly the same pixels as the one before it isn't
+     * written at all; the previous frame is shown for longer instead. The first frame is always written in full, since
+     * it is also the default image for viewers that don't support APNG.
+     */
+    private void writeFrames(OutputStream output, Array<Pixmap> frames, int fps, boolean dither) throws IOException {
+        final Pixmap first = frames.first();
+        final int width = first.getWidth(), height = first.getHeight(), count = frames.size;
+        // repeats are found before anything is written, because the acTL chunk needs the number of frames up front
+        final int[] distinct = new int[count], delays = new int[count];
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && samePixels(frames.get(i - 1), frames.get(i)))
+                delays[written - 1]++;
+            else {
+                distinct[written] = i;
+                delays[written++] = 1;
+            }
+        }
+
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        final boolean hasTransparent = writeHeader(dataOutput, width, height, written);
+        if (threadCount > 1 && written > 1)
+            writeFramesParallel(dataOutput, frames, distinct, delays, written, width, height, hasTransparent, dither, fps);
+        else {
+            final int size = width * height;
+            if (prevFrame == null || prevFrame.length < size) {
+                prevFrame = new byte[size];
+                curFrame = new byte[size];
+            }
+            final int[] region = new int[4];
+            final byte[] lineOut, zeroLine;
+            if (lineOutBytes == null) {
+                lineOut = (lineOutBytes = new ByteArray(width)).items;
+                zeroLine = (zeroLineBytes = new ByteArray(width)).items;
+            } else {
+                lineOut = lineOutBytes.ensureCapacity(width);
+                zeroLine = zeroLineBytes.ensureCapacity(width);
+            }
+            byte[] prev = null, cur = curFrame, temp;
+            int seq = 0;
+            for (int i = 0; i < written; i++) {
+                quantize(frames.get(distinct[i]), cur, width, height, hasTransparent, dither);
+                findRegion(prev, cur, width, height, region);
+                seq = startFrame(seq, region, delays[i], fps, dataOutput);
+                compressRegion(deflater, buffer, trial, cur, width, region, lineOut, zeroLine, fastFiltering,
+                        trialFiltering);
+                buffer.endChunk(dataOutput);
+                temp = prev == null ? prevFrame : prev;
+                prev = cur;
+                cur = temp;
+            }
+        }
+
+        buffer.writeInt(IEND);
+        buffer.endChunk(dataOutput);
+
+        output.flush();
+    }
+
+    /**
+     * The same as the end of {@link #writeFrames(OutputStream, Array, int, boolean)}, but with the work for each frame
+     * spread over {@link #setThreadCount(int) several threads}. Frames are handled in windows of a few frames per
+     * thread: first every frame in the window is reduced to the palette in parallel, then each frame's changed region
+     * is found and compressed in parallel, each thread using its own Deflater, and finally the calling thread writes
+     * the compressed frames in order, giving them their sequence numbers and CRCs. The output is the same as writing
+     * on one thread.
+     */
+    private void writeFramesParallel(final DataOutputStream dataOutput, final Array<Pixmap> frames, final int[] distinct,
+                                     final int[] delays, final int written, final int width, final int height,
+                                     final boolean hasTransparent, final boolean dither, final int fps) throws IOException {
+        final int threads = Math.min(threadCount, written), window = threads * 2;
+        final boolean fast = fastFiltering, tryUnfiltered = trialFiltering;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ArrayBlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(threads);
+        for (int t = 0; t < threads; t++) {
+            deflaters.add(new Deflater(compression));
+        }
+        // slot 0 holds the last frame of the previous window, so the first frame of a window can be compared to it
+        final byte[][] quantized = new byte[window + 1][];
+        final int size = width * height;
+        final ArrayList<Future<int[]>> results = new ArrayList<>(window);
+        try {
+            int seq = 0;
+            for (int start = 0; start < written; start += window) {
+                final int n = Math.min(window, written - start), base = start;
+                results.clear();
+                for (int k = 1; k <= n; k++) {
+                    if (quantized[k] == null)
+                        quantized[k] = new byte[size];
+                    final byte[] out = quantized[k];
+                    final Pixmap pixmap = frames.get(distinct[base + k - 1]);
+                    results.add(pool.submit(new Callable<int[]>() {
+                        @Override
+                        public int[] call() {
+                            quantize(pixmap, out, width, height, hasTransparent, dither);
+                            return null;
+                        }
+                    }));
+                }
+                for (int k = 0; k < n; k++) {
+                    results.get(k).get();
+                }
+                results.clear();
+                final ArrayList<ByteArrayOutputStream> compressed = new ArrayList<>(n);
+                for (int k = 1; k <= n; k++) {
+                    final byte[] prev = base + k == 1 ? null : quantized[k - 1], cur = quantized[k];
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream(size >>> 2);
+                    compressed.add(out);
+                    results.add(pool.submit(new Callable<int[]>() {
+                        @Override
+                        public int[] call() throws IOException, InterruptedException {
+                            final int[] region = new int[4];
+                            findRegion(prev, cur, width, height, region);
+                            final Deflater deflater = deflaters.take();
+                            try {
+                                compressRegion(deflater, out, tryUnfiltered ? new Trial() : null, cur, width, region,
+                                        new byte[region[2]], new byte[region[2]], fast, tryUnfiltered);
+                            } finally {
+                                deflaters.put(deflater);
+                            }
+                            return region;
+                        }
+                    }));
+                }
+                for (int k = 0; k < n; k++) {
+                    seq = startFrame(seq, results.get(k).get(), delays[base + k], fps, dataOutput);
+                    compressed.get(k).writeTo(buffer);
+                    buffer.endChunk(dataOutput);
+                }
+                final byte[] temp = quantized[0];
+                quantized[0] = quantized[n];
+                quantized[n] = temp;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing frames");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Failed to encode a frame", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            for (Deflater deflater : deflaters) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Writes the signature and every chunk that comes before the first frame.
+     *
+     * @return true if palette index 0 is transparent
+     */
+    private boolean writeHeader(DataOutputStream dataOutput, int width, int height, int frameCount) throws IOException {
+        final int[] paletteArray = palette.paletteArray;
+        dataOutput.write(SIGNATURE);
+
+        buffer.writeInt(IHDR);
+        buffer.writeInt(width);
+        buffer.writeInt(height);
+        buffer.writeByte(8); // 8 bits per component.
+        buffer.writeByte(COLOR_INDEXED);
+        buffer.writeByte(COMPRESSION_DEFLATE);
+        buffer.writeByte(FILTER_NONE);
+        buffer.writeByte(INTERLACE_NONE);
+        buffer.endChunk(dataOutput);
+
+        buffer.writeInt(PLTE);
+        for (int i = 0; i < paletteArray.length; i++) {
+            int p = paletteArray[i];
+            buffer.write(p >>> 24);
+            buffer.write(p >>> 16);
+            buffer.write(p >>> 8);
+        }
+        buffer.endChunk(dataOutput);
+
+        boolean hasTransparent = false;
+        if (paletteArray[0] == 0) {
+            hasTransparent = true;
+            buffer.writeInt(TRNS);
+            buffer.write(0);
+            buffer.endChunk(dataOutput);
+        }
+        buffer.writeInt(acTL);
+        buffer.writeInt(frameCount);
+        buffer.writeInt(0);
+        buffer.endChunk(dataOutput);
+        return hasTransparent;
+    }
+
+    /**
+     * Finds the smallest rectangle containing every index that differs between {@code prev} and {@code cur}, storing
+     * its x, y, width, and height in {@code region}. If prev is null, the region is the whole frame; if nothing
+     * differs, the region is a 1x1 rectangle at the origin, which still keeps the frame count that was already written
+     * to acTL (the pixels differed, just not once reduced to the palette).
+     */
+    private static void findRegion(byte[] prev, byte[] cur, int width, int height, int[] region) {
+        if (prev == null) {
+            region[0] = 0;
+            region[1] = 0;
+            region[2] = width;
+            region[3] = height;
+            return;
+        }
+        int top = 0, bottom = height - 1;
+        while (top < height && rowSame(prev, cur, top * width, width))
+            top++;
+        if (top == height) {
+            region[0] = 0;
+            region[1] = 0;
+            region[2] = 1;
+            region[3] = 1;
+            return;
+        }
+        while (rowSame(prev, cur, bottom * width, width))
+            bottom--;
+        int left = width, right = -1;
+        for (int row = top, r = top * width; row <= bottom; row++, r += width) {
+            for (int c = 0; c < left; c++) {
+                if (prev[r + c] != cur[r + c]) {
+                    left = c;
+                    break;
+                }
+            }
+            for (int c = width - 1; c > right; c--) {
+                if (prev[r + c] != cur[r + c]) {
+                    right = c;
+                    break;
+                }
+            }
+        }
+        region[0] = left;
+        region[1] = top;
+        region[2] = right + 1 - left;
+        region[3] = bottom + 1 - top;
+    }
+
+    /**
+     * Writes the fcTL chunk for a frame covering {@code region} (x, y, width, height), and starts the chunk that will
+     * hold its image data in {@link #buffer}; the first frame written uses IDAT, and later ones fdAT.
+     *
+     * @param delay how many frames, at {@code fps} frames per second, this frame is shown for
+     * @return the next sequence number
+     */
+    private int startFrame(int seq, int[] region, int delay, int fps, DataOutputStream dataOutput) throws IOException {
+        buffer.writeInt(fcTL);
+        buffer.writeInt(seq++);
+        buffer.writeInt(region[2]);
+        buffer.writeInt(region[3]);
+        buffer.writeInt(region[0]);
+        buffer.writeInt(region[1]);
+        buffer.writeShort(delay);
+        buffer.writeShort(fps);
+        buffer.writeByte(APNG_DISPOSE_OP_NONE);
+        buffer.writeByte(APNG_BLEND_OP_SOURCE);
+        buffer.endChunk(dataOutput);
+
+        if (seq == 1) {
+            buffer.writeInt(IDAT);
+        } else {
+            buffer.writeInt(fdAT);
+            buffer.writeInt(seq++);
+        }
+        return seq;
+    }
+
+    /**
+     * Filters and compresses the part of {@code frame} inside {@code region} (x, y, width, height), writing the
+     * compressed bytes to {@code target}. This only uses the given Deflater and arrays, so it can run on any thread.
+     * <br>
+     * Each row gets the filter from {@link #chooseFilter(byte[], int, byte[], int, int)}, or if {@code fast} is true,
+     * only the first row and every {@link #FAST_FILTER_ROWS}th row after it do, and other rows reuse the filter of the
+     * row before. Palette indices often compress best with no filtering at all, as the PNG specification recommends
+     * for indexed images, because neighboring indices are only numerically close when the palette happens to be
+     * sorted; if {@code tryUnfiltered} is true, the region is also compressed with every row unfiltered, and only the
+     * smaller version is written. At the default level, a dithered frame with an analyzed palette took 18283 bytes
+     * unfiltered and 26572 filtered, while a gradient with a palette sorted by lightness took 18101 unfiltered and
+     * 16640 filtered.
+     *
+     * @param trial         holds both compressed versions until the smaller is known; may be null if
+     *                      {@code tryUnfiltered} is false
+     * @param frame         palette indices for the whole frame, row by row, {@code width} indices per row
+     * @param lineOut       scratch space for one filtered row; must be at least as long as the region is wide
+     * @param zeroLine      all zeros, at least as long as the region is wide; this is the row "above" the first row
+     * @param fast          if true, only choose a filter every {@link #FAST_FILTER_ROWS} rows
+     * @param tryUnfiltered if true, also compress the region unfiltered and write whichever version is smaller
+     */
+    private static void compressRegion(Deflater deflater, OutputStream target, Trial trial, byte[] frame, int width,
+                                       int[] region, byte[] lineOut, byte[] zeroLine, boolean fast,
+                                       boolean tryUnfiltered) throws IOException {
+        final int every = fast ? FAST_FILTER_ROWS : 1;
+        if (!tryUnfiltered) {
+            deflateRows(deflater, target, frame, width, region, lineOut, zeroLine, every);
+            return;
+        }
+        trial.reset();
+        deflateRows(deflater, trial, frame, width, region, lineOut, zeroLine, 0);
+        final int unfiltered = trial.size();
+        deflateRows(deflater, trial, frame, width, region, lineOut, zeroLine, every);
+        final int filtered = trial.size() - unfiltered;
+        if (filtered < unfiltered)
+            trial.writeTo(target, unfiltered, filtered);
+        else
+            trial.writeTo(target, 0, unfiltered);
+    }
+
+    /**
+     * Compresses the rows of {@code frame} inside {@code region} to {@code target} as one zlib stream. If
+     * {@code every} is 0, every row is unfiltered; otherwise the filter is chosen by
+     * {@link #chooseFilter(byte[], int, byte[], int, int)} for the first row and every {@code every}th row after it,
+     * and the rows between use the same filter as the row before them.
+     */
+    private static void deflateRows(Deflater deflater, OutputStream target, byte[] frame, int width, int[] region,
+                                    byte[] lineOut, byte[] zeroLine, int every) throws IOException {
+        final int x = region[0], y = region[1], w = region[2], h = region[3];
+        deflater.reset();
+        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(target, deflater);
+
+        byte[] above = zeroLine;
+        int aboveStart = 0, filter = NONE;
+        for (int row = 0, start = y * width + x; row < h; row++, start += width) {
+            if (every == 0) {
+                deflaterOutput.write(NONE);
+                deflaterOutput.write(frame, start, w);
+                continue;
+            }
+            if (row % every == 0)
+                filter = chooseFilter(frame, start, above, aboveStart, w);
+            switch (filter) {
+                case NONE:
+                    System.arraycopy(frame, start, lineOut, 0, w);
+                    break;
+                case SUB:
+                    lineOut[0] = frame[start];
+                    for (int i = 1; i < w; i++) {
+                        lineOut[i] = (byte) (frame[start + i] - frame[start + i - 1]);
+                    }
+                    break;
+                case UP:
+                    for (int i = 0; i < w; i++) {
+                        lineOut[i] = (byte) (frame[start + i] - above[aboveStart + i]);
+                    }
+                    break;
+                case AVERAGE:
+                    lineOut[0] = (byte) (frame[start] - ((above[aboveStart] & 0xff) >>> 1));
+                    for (int i = 1; i < w; i++) {
+                        lineOut[i] = (byte) (frame[start + i]
+                                - ((frame[start + i - 1] & 0xff) + (above[aboveStart + i] & 0xff) >>> 1));
+                    }
+                    break;
+                default:
+                    lineOut[0] = (byte) (frame[start] - above[aboveStart]);
+                    for (int i = 1; i < w; i++) {
+                        lineOut[i] = (byte) (frame[start + i] - paeth(frame[start + i - 1] & 0xff,
+                                above[aboveStart + i] & 0xff, above[aboveStart + i - 1] & 0xff));
+                    }
+            }
+
+            deflaterOutput.write(filter);
+            deflaterOutput.write(lineOut, 0, w);
+
+            above = frame;
+            aboveStart = start;
+        }
+        deflaterOutput.finish();
+    }
+
+    /**
+     * Finds which filter type leaves the fewest nonzero bytes in one row, trying all five in one pass. Ties go to the
+     * simpler filter.
+     */
+    private static int chooseFilter(byte[] frame, int start, byte[] above, int aboveStart, int w) {
+        int none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+        for (int i = 0; i < w; i++) {
+            final int v = frame[start + i] & 0xff, b = above[aboveStart + i] & 0xff,
+                    a = i == 0 ? 0 : frame[start + i - 1] & 0xff, c = i == 0 ? 0 : above[aboveStart + i - 1] & 0xff;
+            if ((byte) v != 0) none++;
+            if ((byte) (v - a) != 0) sub++;
+            if ((byte) (v - b) != 0) up++;
+            if ((byte) (v - (a + b >>> 1)) != 0) average++;
+            if ((byte) (v - paeth(a, b, c)) != 0) paeth++;
+        }
+        int best = NONE, least = none;
+        if (sub < least) { best = SUB; least = sub; }
+        if (up < least) { best = UP; least = up; }
+        if (average < least) { best = AVERAGE; least = average; }
+        if (paeth < least) { best = PAETH; }
+        return best;
+    }
+
+    /**
+     * The Paeth predictor from the PNG specification, given the bytes to the left, above, and above-left.
+     */
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = p - a;
+        if (pa < 0) pa = -pa;
+        int pb = p - b;
+        if (pb < 0) pb = -pb;
+        int pc = p - c;
+        if (pc < 0) pc = -pc;
+        if (pa <= pb && pa <= pc)
+            return a;
+        else if (pb <= pc)
+            return b;
+        return c;
+    }
+
+    private static boolean rowSame(byte[] a, byte[] b, int start, int width) {
+        for (int i = start, end = start + width; i < end; i++) {
+            if (a[i] != b[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if two Pixmaps have the same size, format, and pixel data, without reducing either to the palette.
+     */
+    private static boolean samePixels(Pixmap a, Pixmap b) {
+        if (a == b)
+            return true;
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight() || a.getFormat() != b.getFormat())
+            return false;
+        if (!PaletteReducer.bulkPixels()) {
+            for (int y = 0, h = a.getHeight(), w = a.getWidth(); y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    if (a.getPixel(x, y) != b.getPixel(x, y))
+                        return false;
+                }
+            }
+            return true;
+        }
+        ByteBuffer pa = a.getPixels().duplicate(), pb = b.getPixels().duplicate();
+        pa.clear();
+        pb.clear();
+        return pa.equals(pb);
+    }
+
+    /**
+     * Reduces {@code pixmap} to palette indices, stored row by row in {@code out} in the order they will be written,
+     * so flipped if {@link #setFlipY(boolean)} is true.
+     */
+    private void quantize(Pixmap pixmap, byte[] out, int width, int height, boolean hasTransparent, boolean dither) {
+        final byte[] paletteMapping = palette.paletteMapping;
+        final IntBuffer ints = PaletteReducer.rgba8888(pixmap);
+        final int[] row = new int[width];
+        int color;
+        if (!dither) {
+            for (int y = 0, i = 0; y < height; y++) {
+                PaletteReducer.readRow(pixmap, ints, flipY ? (height - y - 1) : y, row, width);
+                for (int px = 0; px < width; px++, i++) {
+                    color = row[px];
+                    if ((color & 0x80) == 0 && hasTransparent)
+                        out[i] = 0;
+                    else {
+                        int rr = ((color >>> 24));
+                        int gg = ((color >>> 16) & 0xFF);
+                        int bb = ((color >>> 8) & 0xFF);
+                        out[i] = paletteMapping[((rr << 7) & 0x7C00)
+                                | ((gg << 2) & 0x3E0)
+                                | ((bb >>> 3))];
+                    }
+                }
+            }
+            return;
+        }
+        final int[] paletteArray = palette.paletteArray;
+        final float strength = palette.ditherStrength * 3.333f;
+        byte paletteIndex;
+        float pos, adj;
+        int used;
+        for (int y = 0, i = 0; y < height; y++) {
+            PaletteReducer.readRow(pixmap, ints, flipY ? (height - y - 1) : y, row, width);
+            for (int px = 0; px < width; px++, i++) {
+                color = row[px] & 0xF8F8F880;
+                if ((color & 0x80) == 0 && hasTransparent)
+                    out[i] = 0;
+                else {
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    int rr = ((color >>> 24)       );
+                    int gg = ((color >>> 16) & 0xFF);
+                    int bb = ((color >>> 8)  & 0xFF);
+                    paletteIndex =
+                            paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
+                    used = paletteArray[paletteIndex & 0xFF];
+//                    adj = (acos_((BlueNoise.get(px, y, i) + 0.5f) * 0.00784313725490196f) - 0.25f) * strength;
+
+                    pos = (px * 0.06711056f + y * 0.00583715f);
+                    pos -= (int)pos;
+                    pos *= 52.9829189f;
+                    pos -= (int)pos;
+                    adj = (pos * pos - 0.3f) * strength;
+//                    adj = ((float)Math.sqrt(pos) * pos - 0.3125f) * strength;
+                    //pos = (BlueNoise.get(y, px, ~i) + 0.5f) * 0.00784313725490196f; // -1f to 1f
+                    // (BlueNoise.get(px, y, i) + 0.5f) * 0.00392156862745098f // -0.5f to 0.5f
+                    rr = MathUtils.clamp((int) (rr + (adj * (rr - (used >>> 24       )))), 0, 0xFF);
+                    gg = MathUtils.clamp((int) (gg + (adj * (gg - (used >>> 16 & 0xFF)))), 0, 0xFF);
+                    bb = MathUtils.clamp((int) (bb + (adj * (bb - (used >>> 8  & 0xFF)))), 0, 0xFF);
+                    out[i] = paletteMapping[((rr << 7) & 0x7C00)
+                            | ((gg << 2) & 0x3E0)
+                            | ((bb >>> 3))];
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse cosine function (arccos) but with output measured in turns instead of radians. Possible results for this
+     * range from 0.0f (inclusive) to 0.5f (inclusive).
+     * <br>
+     * This method is extremely similar to the non-turn approximation.
+     * @param n a float from -1.0f to 1.0f (both inclusive), usually the output of sin_() or cos_()
+     * @return one of the values that would produce {@code n} if it were adjusted to 1/2pi range and passed to cos() 
+     */
+    private static float acos_(final float n)
+    {
+        final float ax = Math.abs(n), ay = (float) Math.sqrt(1f - n * n);
+        if(ax < ay)
+        {
+            final float a = ax / ay, s = a * a,
+                    r = 0.25f - (((-0.0464964749f * s + 0.15931422f) * s - 0.327622764f) * s * a + a) * 0.15915494309189535f;
+            return (n < 0.0f) ? 0.5f - r : r;
+        }
+        else {
+            final float a = ay / ax, s = a * a,
+                    r = (((-0.0464964749f * s + 0.15931422f) * s - 0.327622764f) * s * a + a) * 0.15915494309189535f;
+            return (n < 0.0f) ? 0.5f - r : r;
+        }
+    }
+
+    /**
+     * Disposal will happen automatically in {@link #finalize()} but can be done explicitly if desired.
+     */
+    public void dispose() {
+        deflater.end();
+    }
+    
+    /**
+     * Simple PNG IO from https://www.java-tips.org/java-se-tips-100019/23-java-awt-image/2283-png-file-format-decoder-in-java.html .
+     *
+     * @param inStream
+     * @return
+     * @throws IOException
+     */
+    protected static LinkedHashMap<String, byte[]> readChunks(InputStream inStream) throws IOException {
+        DataInputStream in = new DataInputStream(inStream);
+        if (in.readLong() != 0x89504e470d0a1a0aL)
+            throw new IOException("PNG signature not found!");
+        LinkedHashMap<String, byte[]> chunks = new LinkedHashMap<>(10);
+        boolean trucking = true;
+        while (trucking) {
+            try {
+                // Read the length.
+                int length = in.readInt();
+                if (length < 0)
+                    throw new IOException("Sorry, that file is too long.");
+                // Read the type.
+                byte[] typeBytes = new byte[4];
+                in.readFully(typeBytes);
+                // Read the data.
+                byte[] data = new byte[length];
+                in.readFully(data);
+                // Read the CRC, discard it.
+                int crc = in.readInt();
+                String type = new String(typeBytes, "UTF8");
+                chunks.put(type, data);
+            } catch (EOFException eofe) {
+                trucking = false;
+            }
+        }
+        in.close();
+        return chunks;
+    }
+
+    /**
+     * Simple PNG IO from https://www.java-tips.org/java-se-tips-100019/23-java-awt-image/2283-png-file-format-decoder-in-java.html .
+     *
+     * @param outStream
+     * @param chunks
+     */
+    protected static void writeChunks(OutputStream outStream, LinkedHashMap<String, byte[]> chunks) {
+        DataOutputStream out = new DataOutputStream(outStream);
+        CRC32 crc = new CRC32();
+        try {
+            out.writeLong(0x89504e470d0a1a0aL);
+            for (HashMap.Entry<String, byte[]> ent : chunks.entrySet()) {
+                out.writeInt(ent.getValue().length);
+                out.writeBytes(ent.getKey());
+                byte[] bytes = ent.getKey().getBytes(StandardCharsets.UTF_8);
+                crc.update(bytes, 0, bytes.length);
+                out.write(ent.getValue());
+                crc.update(ent.getValue(), 0, ent.getValue().length);
+                out.writeInt((int) crc.getValue());
+                crc.reset();
+            }
+            out.flush();
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Given a FileHandle to read from and a FileHandle to write to, duplicates the input FileHandle and changes its
+     * palette (in full and in order) to exactly match {@code palette}. This is only likely to work if the input file
+     * was written with the same palette order.
+     *
+     * @param input   FileHandle to read from that should have a similar palette (and very similar order) to {@code palette}
+     * @param output  FileHandle that should be writable and empty
+     * @param palette RGBA8888 color array
+     */
+    public static void swapPalette(FileHandle input, FileHandle output, int[] palette) {
+        try {
+            InputStream inputStream = input.read();
+            LinkedHashMap<String, byte[]> chunks = readChunks(inputStream);
+            byte[] pal = chunks.get("PLTE");
+            if (pal == null) {
+                output.write(inputStream, false);
+                return;
+            }
+            for (int i = 0, p = 0; i < palette.length && p < pal.length - 2; i++) {
+                int rgba = palette[i];
+                pal[p++] = (byte) (rgba >>> 24);
+                pal[p++] = (byte) (rgba >>> 16);
+                pal[p++] = (byte) (rgba >>> 8);
+            }
+            writeChunks(output.write(false), chunks);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets {@link #compressRegion} write out either of the two versions it compresses.
+     */
+    static class Trial extends ByteArrayOutputStream {
+        void writeTo(OutputStream target, int offset, int length) throws IOException {
+            target.write(buf, offset, length);
+        }
+    }
+
+    /**
+     * Copied straight out of libGDX, in the PixmapIO class.
+     */
+    static class ChunkBuffer extends DataOutputStream {
+        final ByteArrayOutputStream buffer;
+        final CRC32 crc;
+
+        ChunkBuffer (int initialSize) {
+            this(new ByteArrayOutputStream(initialSize), new CRC32());
+        }
+
+        private ChunkBuffer (ByteArrayOutputStream buffer, CRC32 crc) {
+            super(new CheckedOutputStream(buffer, crc));
+            this.buffer = buffer;
+            this.crc = crc;
+        }
+
+        public void endChunk (DataOutputStream target) throws IOException {
+            flush();
+            target.writeInt(buffer.size() - 4);
+            buffer.writeTo(target);
+            target.writeInt((int)crc.getValue());
+            buffer.reset();
+            crc.reset();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.squidpony;
 
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
@@ -8,10 +10,14 @@ import com.badlogic.gdx.utils.ByteArray;
 import com.badlogic.gdx.utils.IntIntMap;
 import com.badlogic.gdx.utils.NumberUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Data that can be used to limit the colors present in a Pixmap or other image, here with the goal of using 256 or less
@@ -102,6 +108,60 @@ public class PaletteReducer {
     ByteArray curErrorRedBytes, nextErrorRedBytes, curErrorGreenBytes, nextErrorGreenBytes, curErrorBlueBytes, nextErrorBlueBytes;
     float ditherStrength = 0.5f, halfDitherStrength = 0.25f;
 
+    /**
+     * Somewhere to keep the {@link #paletteMapping} built for a palette between runs, so the same palette only needs
+     * its mapping built once. PaletteReducer builds and checks the records itself; a cache only has to keep the bytes.
+     * See {@link #mappingCache}.
+     */
+    public interface MappingCache {
+        /**
+         * Gets the record stored under {@code key} by {@link #store(String, byte[])}, or null if there isn't one or
+         * it can't be read.
+         */
+        byte[] load(String key);
+
+        /**
+         * Keeps {@code record} under {@code key}, replacing any record already there. Problems storing it should be
+         * ignored; they just mean the mapping gets built again next time.
+         */
+        void store(String key, byte[] record);
+    }
+
+    /**
+     * Where {@link #exact(int[])} and {@link #exact(Color[], int)} store the {@link #paletteMapping} they build for a
+     * palette, and look for one built earlier. Each record is keyed by a hash of the palette, and also holds the
+     * palette itself, so a record is only used if its palette really matches. Defaults to null, which always builds
+     * mappings without storing them anywhere; this class has to work on every platform, so anything that touches
+     * files, like a cache in the temporary directory on desktop, is set here by the launcher that can use it.
+     */
+    public static MappingCache mappingCache = null;
+
+    /**
+     * Threads that {@link #paletteMapping} can be built on, so building one doesn't start threads of its own. See
+     * {@link #mappingWorkers}.
+     */
+    public interface MappingWorkers {
+        /**
+         * Runs {@code task} on the calling thread and at the same time on any number of worker threads, and returns
+         * once every copy has finished. The task splits its work between the copies itself, so any number of them is
+         * fine. If a copy throws, that should be thrown from here once the others are done.
+         */
+        void runCopies(Runnable task);
+    }
+
+    /**
+     * The threads {@link #paletteMapping} is built on when it isn't in {@link #mappingCache}. Defaults to null, which
+     * builds mappings on the calling thread only; like mappingCache, this is left to a launcher that can use threads,
+     * which can share one pool of them with every PaletteReducer.
+     */
+    public static MappingWorkers mappingWorkers = null;
+
+    /**
+     * Identifies the format of records in {@link #mappingCache}, as well as the metric used to build their mappings;
+     * this should change whenever the mapping for a palette would change.
+     */
+    private static final int CACHE_VERSION = 0x50524D31;
+
     /**
      * This stores a preload code for a PaletteReducer using {@link #AURORA} with a CIE LAB-based metric. Using
      * a preload code in the constructor {@link #PaletteReducer(int[], byte[])} eliminates the time needed to fill 32 KB
@@ -282,6 +342,177 @@ public class PaletteReducer {
         return (L * L * 7 + A * A + B * B);
     }
 
+    /**
+     * Fills {@link #paletteMapping} for the first {@code plen} entries of {@link #paletteArray}, loading it from
+     * {@link #mappingCache} if it was built before, or building it with {@link #fillMapping(int)} and storing it there
+     * otherwise. The cells for exact palette colors must already be set.
+     *
+     * @param plen how many entries of paletteArray are in the palette
+     */
+    private void mapPalette(final int plen) {
+        final MappingCache cache = mappingCache;
+        if (cache == null) {
+            fillMapping(plen);
+            return;
+        }
+        long hash = 0x9E3779B97F4A7C15L + plen;
+        for (int i = 0; i < plen; i++) {
+            hash = (hash ^ paletteArray[i]) * 0xD1342543DE82EF95L;
+            hash ^= hash >>> 29;
+        }
+        final String key = Long.toHexString(hash);
+        if (readMapping(cache.load(key), plen))
+            return;
+        fillMapping(plen);
+        cache.store(key, writeMapping(plen));
+    }
+
+    /**
+     * Copies a cached mapping from {@code record} into {@link #paletteMapping} if it was made for the same palette.
+     * The record holds the {@link #CACHE_VERSION}, plen, and each palette color as big-endian ints, then the mapping.
+     *
+     * @return true if the mapping was loaded, or false if it must be built
+     */
+    private boolean readMapping(final byte[] record, final int plen) {
+        if (record == null || record.length != 8 + (plen << 2) + 0x8000
+                || readInt(record, 0) != CACHE_VERSION || readInt(record, 4) != plen)
+            return false;
+        for (int i = 0; i < plen; i++) {
+            if (readInt(record, 8 + (i << 2)) != paletteArray[i])
+                return false;
+        }
+        System.arraycopy(record, 8 + (plen << 2), paletteMapping, 0, 0x8000);
+        return true;
+    }
+
+    /**
+     * Makes a record of {@link #paletteMapping} for {@link #readMapping(byte[], int)} to check and load later.
+     */
+    private byte[] writeMapping(final int plen) {
+        final byte[] record = new byte[8 + (plen << 2) + 0x8000];
+        writeInt(record, 0, CACHE_VERSION);
+        writeInt(record, 4, plen);
+        for (int i = 0; i < plen; i++) {
+            writeInt(record, 8 + (i << 2), paletteArray[i]);
+        }
+        System.arraycopy(paletteMapping, 0, record, 8 + (plen << 2), 0x8000);
+        return record;
+    }
+
+    private static int readInt(final byte[] bytes, final int at) {
+        return (bytes[at] & 0xFF) << 24 | (bytes[at + 1] & 0xFF) << 16 | (bytes[at + 2] & 0xFF) << 8
+                | (bytes[at + 3] & 0xFF);
+    }
+
+    private static void writeInt(final byte[] bytes, final int at, final int value) {
+        bytes[at] = (byte) (value >>> 24);
+        bytes[at + 1] = (byte) (value >>> 16);
+        bytes[at + 2] = (byte) (value >>> 8);
+        bytes[at + 3] = (byte) value;
+    }
+
+    /**
+     * Fills every cell of {@link #paletteMapping} that is still 0 with the index of the closest color in
+     * {@link #paletteArray}, from index 1 up to (but not including) {@code plen}, by the same metric as
+     * {@link #difference(int, int)}; ties go to the lowest index. Entries in paletteArray that are 0 are unused slots,
+     * not colors, so they are never chosen.
+     * <br>
+     * Rather than checking every palette entry for each cell, the candidates are sorted by lightness, and each cell
+     * starts at the candidates with the closest lightness and works outward, stopping in each direction once the
+     * lightness difference alone is greater than the best difference found so far. Because lightness is weighted so
+     * heavily by the metric, this usually checks only a few candidates per cell. The cube is split into slabs of
+     * equal red, which are shared out between the threads of {@link #mappingWorkers} if it is set, since each cell
+     * only reads the palette and writes itself.
+     *
+     * @param plen how many entries of paletteArray to consider, including the transparent entry at index 0
+     */
+    private void fillMapping(final int plen) {
+        final int[] indices = new int[plen], labs = new int[plen];
+        final double[] lights = new double[plen];
+        int count = 0;
+        for (int i = 1; i < plen; i++) {
+            final int color = paletteArray[i];
+            if (color == 0)
+                continue;
+            final int lab = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
+            final double light = LAB[0][lab];
+            // insertion sort by lightness; stable, so equal lightness keeps lower indices first
+            int j = count++;
+            for (; j > 0 && lights[j - 1] > light; j--) {
+                indices[j] = indices[j - 1];
+                labs[j] = labs[j - 1];
+                lights[j] = lights[j - 1];
+            }
+            indices[j] = i;
+            labs[j] = lab;
+            lights[j] = light;
+        }
+        if (count == 0)
+            return;
+        final int candidates = count;
+        final byte[] mapping = paletteMapping;
+        final AtomicInteger nextSlab = new AtomicInteger();
+        final Runnable filler = new Runnable() {
+            @Override
+            public void run() {
+                for (int r = nextSlab.getAndIncrement(); r < 32; r = nextSlab.getAndIncrement()) {
+                    for (int c2 = r << 10, end = c2 + 0x400; c2 < end; c2++) {
+                        if (mapping[c2] == 0)
+                            mapping[c2] = (byte) closest(c2, indices, labs, lights, candidates);
+                    }
+                }
+            }
+        };
+        final MappingWorkers workers = mappingWorkers;
+        if (workers == null)
+            filler.run();
+        else
+            workers.runCopies(filler);
+    }
+
+    /**
+     * Finds the palette index closest to the RGB555 index {@code lab}, given candidates sorted by lightness.
+     * Returns the same index a scan over every candidate in palette order would, including the lowest index on ties:
+     * a candidate is only passed over once its lightness difference alone is strictly greater than the best distance,
+     * so every candidate that could tie is still compared, and distances are computed in the same order as
+     * {@link #difference(int, int)}, so equal distances are exactly equal.
+     */
+    private static int closest(final int lab, final int[] indices, final int[] labs, final double[] lights,
+                               final int count) {
+        final double light = LAB[0][lab], a = LAB[1][lab], b = LAB[2][lab];
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            final int mid = lo + hi >>> 1;
+            if (lights[mid] < light) lo = mid + 1;
+            else hi = mid;
+        }
+        double best = Double.POSITIVE_INFINITY, L, A, B, dist;
+        int bestIndex = 0;
+        for (int j = lo; j < count; j++) {
+            L = lights[j] - light;
+            if ((L = L * L * 7) > best)
+                break;
+            A = LAB[1][labs[j]] - a;
+            B = LAB[2][labs[j]] - b;
+            if ((dist = L + A * A + B * B) < best || (dist == best && indices[j] < bestIndex)) {
+                best = dist;
+                bestIndex = indices[j];
+            }
+        }
+        for (int j = lo - 1; j >= 0; j--) {
+            L = lights[j] - light;
+            if ((L = L * L * 7) > best)
+                break;
+            A = LAB[1][labs[j]] - a;
+            B = LAB[2][labs[j]] - b;
+            if ((dist = L + A * A + B * B) < best || (dist == best && indices[j] < bestIndex)) {
+                best = dist;
+                bestIndex = indices[j];
+            }
+        }
+        return bestIndex;
+    }
+
     /**
      * Builds the palette information this PNG8 stores from the RGBA8888 ints in {@code rgbaPalette}, up to 256 colors.
      * Alpha is not preserved except for the first item in rgbaPalette, and only if it is {@code 0} (fully transparent
@@ -298,8 +529,7 @@ public class PaletteReducer {
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         final int plen = Math.min(256, rgbaPalette.length);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = rgbaPalette[i];
             if ((color & 0x80) != 0) {
@@ -307,24 +537,7 @@ public class PaletteReducer {
                 paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
             }
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, difference(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        mapPalette(plen);
 //        generatePreloadCode(paletteMapping);
     }
 
@@ -388,31 +601,13 @@ public class PaletteReducer {
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         final int plen = Math.min(Math.min(256, colorPalette.length), limit);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = Color.rgba8888(colorPalette[i]);
             paletteArray[i] = color;
             paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, difference(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        mapPalette(plen);
     }
     /**
      * Analyzes {@code pixmap} for color count and frequency, building a palette with at most 256 colors if there are
@@ -440,6 +635,44 @@ public class PaletteReducer {
         }
     };
 
+    /**
+     * Checks if {@link Pixmap#getPixels()} can be read in bulk. It can't on WebGL, where the buffer isn't kept in sync
+     * with the Pixmap's canvas; without an application, as when frames are rendered on the CPU, it always can.
+     */
+    static boolean bulkPixels() {
+        return Gdx.app == null || Gdx.app.getType() != Application.ApplicationType.WebGL;
+    }
+
+    /**
+     * Gets the pixels of {@code pixmap} as RGBA8888 ints, row by row from the top, if it uses the RGBA8888 format; the
+     * buffer has its own position, so this is safe to call from several threads on the same Pixmap. Returns null for
+     * any other format, or if {@link #bulkPixels()} is false; those must be read with {@link Pixmap#getPixel(int, int)}
+     * instead, see {@link #readRow(Pixmap, IntBuffer, int, int[], int)}.
+     */
+    static IntBuffer rgba8888(Pixmap pixmap) {
+        if (pixmap.getFormat() != Pixmap.Format.RGBA8888 || !bulkPixels())
+            return null;
+        ByteBuffer pixels = pixmap.getPixels().duplicate();
+        pixels.clear();
+        return pixels.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Copies the first {@code width} pixels of row {@code y} of {@code pixmap} into {@code row} as RGBA8888 ints, in
+     * bulk from {@code ints} if it was returned by {@link #rgba8888(Pixmap)} for this Pixmap, or one pixel at a time if
+     * {@code ints} is null or the row goes past the edge of the Pixmap (where getPixel() reads 0).
+     */
+    static void readRow(Pixmap pixmap, IntBuffer ints, int y, int[] row, int width) {
+        if (ints != null && y >= 0 && y < pixmap.getHeight() && width <= pixmap.getWidth()) {
+            ints.position(y * pixmap.getWidth());
+            ints.get(row, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) {
+                row[x] = pixmap.getPixel(x, y);
+            }
+        }
+    }
+
 
     /**
      * Analyzes {@code pixmap} for color count and frequency, building a palette with at most 256 colors if there are
@@ -485,11 +718,13 @@ public class PaletteReducer {
         int color;
         final int width = pixmap.getWidth(), height = pixmap.getHeight();
         IntIntMap counts = new IntIntMap(limit);
-        int hasTransparent = 0;
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
+        int hasTransparent = 0, plen;
+        final IntBuffer ints = rgba8888(pixmap);
+        final int[] row = new int[width];
         for (int y = 0; y < height; y++) {
+            readRow(pixmap, ints, y, row, width);
             for (int x = 0; x < width; x++) {
-                color = pixmap.getPixel(x, y);
+                color = row[x];
                 if ((color & 0x80) != 0) {
                     color |= (color >>> 5 & 0x07070700) | 0xFE;
                     counts.getAndIncrement(color, 0, 1);
@@ -513,13 +748,10 @@ public class PaletteReducer {
             for(IntIntMap.Entry e : es) {
                 color = e.key;
                 paletteArray[i] = color;
-                color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                paletteMapping[color] = (byte) i;
-                reds[i] = color >>> 10;
-                greens[i] = color >>> 5 & 31;
-                blues[i] = color & 31;
+                paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
                 i++;
             }
+            plen = i;
         } else // reduce color count
         {
             int i = 1, c = 0;
@@ -531,30 +763,12 @@ public class PaletteReducer {
                         continue PER_BEST;
                 }
                 paletteArray[i] = color;
-                color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                paletteMapping[color] = (byte) i;
-                reds[i] = color >>> 10;
-                greens[i] = color >>> 5 & 31;
-                blues[i] = color & 31;
+                paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
                 i++;
             }
+            plen = i;
         }
-        int c2;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            for (int g = 0; g < 32; g++) {
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        dist = Double.POSITIVE_INFINITY;
-                        for (int i = 1; i < limit; i++) {
-                            if (dist > (dist = Math.min(dist, difference(reds[i], greens[i], blues[i], r, g, b))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(plen);
     }
 
     /**
@@ -574,7 +788,7 @@ public class PaletteReducer {
      * @param pixmaps   a Pixmap Array to analyze, making a palette which can be used by this to {@link #reduce(Pixmap)}, by AnimatedGif, or by AnimatedPNG8
      */
     public void analyze(Array<Pixmap> pixmaps){
-        analyze(pixmaps.items, pixmaps.size, 400, 256);
+        analyze(pixmaps.toArray(Pixmap.class), pixmaps.size, 400, 256);
     }
 
     /**
@@ -596,7 +810,7 @@ public class PaletteReducer {
      * @param threshold a minimum color difference as produced by {@link #difference(int, int)}; usually between 250 and 1000, 400 is a good default
      */
     public void analyze(Array<Pixmap> pixmaps, int threshold){
-        analyze(pixmaps.items, pixmaps.size, threshold, 256);
+        analyze(pixmaps.toArray(Pixmap.class), pixmaps.size, threshold, 256);
     }
 
     /**
@@ -619,7 +833,7 @@ public class PaletteReducer {
      * @param limit     the maximum number of colors to allow in the resulting palette; typically no more than 256
      */
     public void analyze(Array<Pixmap> pixmaps, int threshold, int limit){
-        analyze(pixmaps.items, pixmaps.size, threshold, limit);
+        analyze(pixmaps.toArray(Pixmap.class), pixmaps.size, threshold, limit);
     }
     /**
      * Analyzes all of the Pixmap items in {@code pixmaps} for color count and frequency (as if they are one image),
@@ -646,14 +860,18 @@ public class PaletteReducer {
         Arrays.fill(paletteMapping, (byte) 0);
         int color;
         IntIntMap counts = new IntIntMap(limit);
-        int hasTransparent = 0;
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
+        int hasTransparent = 0, plen;
+        int[] row = new int[0];
         for (int i = 0; i < pixmapCount && i < pixmaps.length; i++) {
             Pixmap pixmap = pixmaps[i];
             final int width = pixmap.getWidth(), height = pixmap.getHeight();
+            final IntBuffer ints = rgba8888(pixmap);
+            if (row.length < width)
+                row = new int[width];
             for (int y = 0; y < height; y++) {
+                readRow(pixmap, ints, y, row, width);
                 for (int x = 0; x < width; x++) {
-                    color = pixmap.getPixel(x, y);
+                    color = row[x];
                     if ((color & 0x80) != 0) {
                         color |= (color >>> 5 & 0x07070700) | 0xFE;
                         counts.getAndIncrement(color, 0, 1);
@@ -678,13 +896,10 @@ public class PaletteReducer {
             for(IntIntMap.Entry e : es) {
                 color = e.key;
                 paletteArray[i] = color;
-                color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                paletteMapping[color] = (byte) i;
-                reds[i] = color >>> 10;
-                greens[i] = color >>> 5 & 31;
-                blues[i] = color & 31;
+                paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
                 i++;
             }
+            plen = i;
         } else // reduce color count
         {
             int i = 1, c = 0;
@@ -696,30 +911,12 @@ public class PaletteReducer {
                         continue PER_BEST;
                 }
                 paletteArray[i] = color;
-                color = (color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F);
-                paletteMapping[color] = (byte) i;
-                reds[i] = color >>> 10;
-                greens[i] = color >>> 5 & 31;
-                blues[i] = color & 31;
+                paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
                 i++;
             }
+            plen = i;
         }
-        int c2;
-        double dist;
-        for (int r = 0; r < 32; r++) {
-            for (int g = 0; g < 32; g++) {
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        dist = Double.POSITIVE_INFINITY;
-                        for (int i = 1; i < limit; i++) {
-                            if (dist > (dist = Math.min(dist, difference(reds[i], greens[i], blues[i], r, g, b))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(plen);
     }
 
     /**
@@ -8,25 +8,41 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.NumberUtils;
 import com.badlogic.gdx.utils.TimeUtils;
-import com.github.tommyettinger.anim8.AnimatedGif;
-import com.github.tommyettinger.anim8.AnimatedPNG;
-import com.github.tommyettinger.anim8.PNG8;
+import com.squidpony.AnimatedGif;
+import com.squidpony.AnimatedPNG;
+import com.squidpony.AnimatedPNG8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /** {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms. */
 public class NorthernLights extends ApplicationAdapter {
     private static final float RATE = 1.5f;
     private int seed;
     private SpriteBatch batch;
-    private Texture tiny;
+    private Texture field;
+    private Pixmap fieldPixmap;
+    private int[] pixels;
     private long startTime;
     private int width, height;
     private float iw, ih;
-    private final transient float[] con = new float[3];
+    private ExecutorService pool;
+    private final List<Band> bands = new ArrayList<>();
     private Array<Pixmap> frames;
     private AnimatedPNG animatedPNG;
-    private PNG8 iapng;
+    private AnimatedPNG8 iapng;
     private AnimatedGif animatedGif;
     @Override
     public void create() {
@@ -40,15 +56,26 @@ public class NorthernLights extends ApplicationAdapter {
         Gdx.gl.glDisable(GL20.GL_BLEND);
         batch = new SpriteBatch();
         batch.disableBlending();
-        Pixmap pm = new Pixmap(1, 1, Pixmap.Format.RGB888);
-        pm.drawPixel(0, 0, -1); // white pixel
-        tiny = new Texture(pm);
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "NorthernLights-" + count++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // a few more bands than threads, so a thread that finishes early can take another band
+        for (int i = threads * 4; i > 0; i--) {
+            bands.add(new Band());
+        }
         width = 256;
         height = 256;
         animatedPNG = new AnimatedPNG(width * height * 3 >>> 1);
         animatedGif = new AnimatedGif();
 //        animatedGif.palette = new PaletteReducer(new int[]{0, 255, -1});
-        iapng = new PNG8(width * height * 3 >>> 1);
+        iapng = new AnimatedPNG8(width * height * 3 >>> 1);
 //        iapng.palette = animatedGif.palette;
 //        iapng.palette = new PaletteReducer(new int[]{
 //                0x00000000, 0x19092DFF, 0x213118FF, 0x314A29FF, 0x8C847BFF, 0x6E868EFF, 0x9CA59CFF, 0xAFC7CFFF,
@@ -66,34 +93,23 @@ public class NorthernLights extends ApplicationAdapter {
 //        width = Gdx.graphics.getWidth();
 //        height = Gdx.graphics.getHeight();
 
+        pixels = new int[width * height];
         for (int i = 0; i < 50; i++) {
             Pixmap frame = new Pixmap(width, height, Pixmap.Format.RGBA8888);
             final int tm = i << 4;
             final float rt = tm * RATE,
                     ftm = rt * 0x5p-13f;
-
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    final float ax = x * iw, ay = y * ih; // adjusted for starting dimensions
-                    con[0] = ftm + ay;
-                    con[1] = ftm + ax;
-                    con[2] = ax + ay;
-                    cosmic(seed ^ 0xC13FA9A9, con, 1, 2, 0);
-                    cosmic(seed ^ 0xDB4F0B91, con, 2, 0, 1);
-                    cosmic(seed ^ 0x19F1D48E, con, 0, 1, 2);
-                    frame.setColor(swayTight(con[0]), swayTight(con[1]), swayTight(con[2]), 1f);
-                    frame.drawPixel(x, y
-//                            255 - Math.min(255, (int)(260 * Math.sqrt(((x - 128) * (x - 128) + (y - 128) * (y - 128)) * 0x1p-14)))
-////use as the alpha to get a circle that fades at the edges
-//                            1f - Math.min(1f, (int)(1.02f * Math.sqrt(((x - 128) * (x - 128) + (y - 128) * (y - 128)) * 0x1p-14)))
-                    );
-                }
-            }
+            fill(ftm, iw, ih);
+            upload(frame);
             frames.add(frame);
         }
-        animatedPNG.write(Gdx.files.local("animated" + TimeUtils.millis() + ".png"), frames, 20);
-        iapng.write(Gdx.files.local("animatedIndexed" + TimeUtils.millis() + ".png"), frames, 20);
-        animatedGif.write(Gdx.files.local("animatedIndexed" + TimeUtils.millis() + ".gif"), frames, 20);
+        try {
+            animatedPNG.write(Gdx.files.local("animated" + TimeUtils.millis() + ".png"), frames, 20);
+            iapng.write(Gdx.files.local("animatedIndexed" + TimeUtils.millis() + ".png"), frames, 20);
+            animatedGif.write(Gdx.files.local("animatedIndexed" + TimeUtils.millis() + ".gif"), frames, 20);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't write the animations", e);
+        }
     }
 
     @Override
@@ -104,6 +120,103 @@ public class NorthernLights extends ApplicationAdapter {
         this.height = height;
 		iw = 1f / width;
 		ih = 1f / height;
+        if (width <= 0 || height <= 0)
+            return;
+        if (field != null)
+            field.dispose();
+        if (fieldPixmap != null)
+            fieldPixmap.dispose();
+        fieldPixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        fieldPixmap.setBlending(Pixmap.Blending.None);
+        field = new Texture(fieldPixmap, false);
+        if (pixels.length < width * height)
+            pixels = new int[width * height];
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        pool.shutdownNow();
+        batch.dispose();
+        if (field != null)
+            field.dispose();
+        if (fieldPixmap != null)
+            fieldPixmap.dispose();
+    }
+
+    /**
+     * Computes the RGBA8888 color of every pixel in the current {@link #width} by {@link #height} field into
+     * {@link #pixels}, row by row from the top, with the rows split into bands that run on {@link #pool}.
+     * @param ftm the time, already scaled
+     * @param sx how much to scale x by before using it as a connection
+     * @param sy how much to scale y by before using it as a connection
+     */
+    private void fill(final float ftm, final float sx, final float sy) {
+        final int count = Math.min(bands.size(), height);
+        for (int i = 0; i < count; i++) {
+            bands.get(i).set(i * height / count, (i + 1) * height / count, ftm, sx, sy);
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(bands.subList(0, count))) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Copies the first {@code width * height} colors of {@link #pixels} into {@code pm}, which must be RGBA8888 and
+     * exactly {@link #width} by {@link #height}, in one bulk put.
+     */
+    private void upload(Pixmap pm) {
+        ByteBuffer bytes = pm.getPixels().duplicate();
+        bytes.clear();
+        bytes.order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(pixels, 0, width * height);
+    }
+
+    /**
+     * One horizontal band of the field, from row {@link #start} inclusive to {@link #end} exclusive. Each band has
+     * its own {@link #con} scratch array, so bands can run at the same time.
+     */
+    private final class Band implements Callable<Void> {
+        private final float[] con = new float[3];
+        private int start, end;
+        private float ftm, sx, sy;
+
+        void set(int start, int end, float ftm, float sx, float sy) {
+            this.start = start;
+            this.end = end;
+            this.ftm = ftm;
+            this.sx = sx;
+            this.sy = sy;
+        }
+
+        @Override
+        public Void call() {
+            final float[] con = this.con;
+            final int[] pixels = NorthernLights.this.pixels;
+            final int w = width;
+            for (int y = start, i = start * w; y < end; y++) {
+                final float ay = y * sy;
+                for (int x = 0; x < w; x++) {
+                    final float ax = x * sx; // adjusted for starting dimensions
+                    con[0] = ftm + ay;
+                    con[1] = ftm + ax;
+                    con[2] = ax + ay;
+                    cosmic(seed ^ 0xC13FA9A9, con, 1, 2, 0);
+                    cosmic(seed ^ 0xDB4F0B91, con, 2, 0, 1);
+                    cosmic(seed ^ 0x19F1D48E, con, 0, 1, 2);
+                    pixels[i++] = (int) (swayTight(con[0]) * 255f) << 24
+                            | (int) (swayTight(con[1]) * 255f) << 16
+                            | (int) (swayTight(con[2]) * 255f) << 8
+                            | 0xFF;
+                }
+            }
+            return null;
+        }
     }
 //    public static float swayRandomized(int seed, float value)
 //    {
@@ -212,86 +325,12 @@ public class NorthernLights extends ApplicationAdapter {
 //        final float r1 = rt * 0x4.e6e9p-13f;//swayRandomized(0x81234567, rt * 0x4.e6e9p-13f);
 //        final float r2 = rt * 0x5.09fcp-13f;//swayRandomized(0x78123456, rt * 0x5.09fcp-13f);
 
+        // rows are filled from the top, but y in the batch goes up, so the texture is drawn flipped
+        fill(ftm, 0.0075f, 0.005f);
+        upload(fieldPixmap);
+        field.draw(fieldPixmap, 0, 0);
         batch.begin();
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-				float ax = x * 0.0075f, ay = y * 0.005f; // adjusted for starting dimensions
-				con[0] = ftm + ay;
-				con[1] = ftm + ax;
-				con[2] = ax + ay;
-				
-                //conn0 = swayRandomized(-1052792407, yt - 1.11f) * ax + swayRandomized(-1640531527, xt - 3.11f) * ay + swayRandomized(924071052, -2.4375f - xy) * ftm;
-				//conn1 = swayRandomized(-615576687, yt + 2.41f) * ax + swayRandomized(776648142, 1.41f - xt) * ay + swayRandomized(-566875093, xy + 1.5625f) * ftm;
-				//conn2 = swayRandomized(435278990, 3.61f - yt) * ax + swayRandomized(-509935190, xt + 2.61f) * ay + swayRandomized(-284277664, xy + -3.8125f) * ftm;
-                //conn0 = cosmic(conn0, conn1, conn2);
-                //conn1 = cosmic(conn0, conn1, conn2);
-                //conn2 = cosmic(conn0, conn1, conn2);
-                
-                //2D
-//                cosmic(seed ^ 0xDB4F0B91, con, 0, 1);
-//                cosmic(~seed, con, 1, 0);
-//                cosmic(seed, con);
-                
-                //cosmic(seed ^ 0x19F1D48E, con, 0, 1, 2);
-
-//                //3D
-                cosmic(seed ^ 0xC13FA9A9, con, 1, 2, 0);
-                cosmic(seed ^ 0xDB4F0B91, con, 2, 0, 1);
-                cosmic(seed ^ 0x19F1D48E, con, 0, 1, 2);
-
-//                cosmic(seed ^ 0xC13FA9A9, con, con[1], con[2], con[0]);
-//                cosmic(seed ^ 0xDB4F0B91, con, con[2], con[0], con[1]);
-//                cosmic(seed ^ 0x19F1D48E, con, con[0], con[1], con[2]);
-                
-//                zone  = cosmic(conn0, conn1, conn2);
-//                conn0 = /*r0*/ + x * c0 - y * s0;
-//                conn1 = /*r1*/ - x * c1 + y * s1;
-//                conn2 = /*r2*/ + x * c2 + y * s2;
-//
-//                zone = 0f;//cosmic(x * 0x1p-7f, y * 0x1p-7f, ftm);
-//                conn0 = cosmic(conn0, conn1, conn2) + zone;
-//                conn1 = cosmic(conn0, conn1, conn2) + zone;
-//                conn2 = cosmic(conn0, conn1, conn2) + zone;
-//                int bright = (int)((swayRandomized(seed ^ 0xDB4F0B91, (con[0]) * 2) * 85.25f
-//                        + swayRandomized(seed ^ 0xBBE05633, (con[1]) * 3) * 85.25f
-//                        + swayRandomized(seed ^ 0xA0F2EC75, (con[2]) * 5) * 85.25f));
-//                batch.setColor(bright, bright, bright);
-                //0xDB4F0B9175AE2165L, 0xBBE0563303A4615FL, 0xA0F2EC75A1FE1575L
-                //batch.setColor(swayTight((((con[0]) * 0.2f)
-                //                + ((con[1]) * 0.3f) 
-                //                + ((con[2]) * 0.5f) )),
-                //        swayTight((((con[1]) * 0.2f)
-                //                + ((con[2]) * 0.3f) 
-                //                + ((con[0]) * 0.5f) )),
-                //        swayTight((((con[2]) * 0.2f)
-                //                + ((con[0]) * 0.3f) 
-                //                + ((con[1]) * 0.5f) )));
-                
-//                batch.setColor((int)((swayRandomized(seed ^ 0xDB4F0B91, (con[0]) * 2) * 85.25f
-//                                + swayRandomized(seed ^ 0xBBE05633, (con[1]) * 3) * 85.25f
-//                                + swayRandomized(seed ^ 0xA0F2EC75, (con[2]) * 5) * 85.25f)),
-//                        (int)((swayRandomized(seed ^ 0x0B9175AE, (con[1]) * 2) * 85.25f
-//                                + swayRandomized(seed ^ 0x563303A4, (con[2]) * 3) * 85.25f
-//                                + swayRandomized(seed ^ 0xEC75A1FE, (con[0]) * 5) * 85.25f)),
-//                        (int)((swayRandomized(seed ^ 0x75AE2165, (con[2]) * 2) * 85.25f
-//                                + swayRandomized(seed ^ 0x03A4615F, (con[0]) * 3) * 85.25f
-//                                + swayRandomized(seed ^ 0xA1FE1575, (con[1]) * 5) * 85.25f)));
-//                final int bright = swayTight(con[0] + con[1] + con[2]);
-//                batch.setColor(bright, bright, bright);
-                batch.setColor(swayTight(con[0]), swayTight(con[1]), swayTight(con[2]), 1f);
-//                batch.setColor((int)(con[0] * 127.99 + 128), (int)(con[1] * 127.99 + 128), (int)(con[2] * 127.99 + 128));
-//                batch.setColor(lerpFloatColors(
-//                        floatGet(swayTight(conn0), swayTight(conn1), swayTight(conn2))
-//                        , floatGetHSV(swayTight(conn2), 1f, 1f), swayTight(0.5f - conn1))
-//            );
-
-//                conn0 = swayTight(conn0 + conn1 + conn2);
-//                conn0 = swayTight(cosmic(conn0, conn1, conn2));
-//                conn0 = swayTight(conn2 + zone);
-//                batch.setColor(conn0, conn0, conn0, 1f);
-                batch.draw(tiny, x, y);
-            }
-        }
+        batch.draw(field, 0, 0, width, height, 0, 0, width, height, false, true);
         batch.end();
     }
 
@@ -0,0 +1,16 @@
+package com.squidpony.shader;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+/**
+ * Receives the frames of an animation in order, such as an AnimatedGif that is adding frames as they arrive.
+ */
+public interface FrameSink {
+	/**
+	 * Called once per frame, in order. The Pixmap belongs to whatever rendered it, and will be overwritten with the
+	 * next frame after this returns, so it should be copied if it needs to be kept.
+	 * @param index the index of this frame
+	 * @param frame an RGBA8888 Pixmap holding the frame, top row first
+	 */
+	void frame(int index, Pixmap frame);
+}
@@ -0,0 +1,15 @@
+package com.squidpony.shader;
+
+/**
+ * Renders the frames of an animation, one at a time, without needing a window. {@link OfflineRenderer} draws them
+ * with a shader into an offscreen FrameBuffer, and {@link StandoffField} computes the same thing on the CPU.
+ */
+public interface FrameSource {
+	/**
+	 * Renders the frames from {@code start} inclusive to {@code end} exclusive, passing each to {@code sink} in order.
+	 * @param start the index of the first frame
+	 * @param end the index after the last frame
+	 * @param sink receives each frame
+	 */
+	void render(int start, int end, FrameSink sink);
+}
@@ -9,12 +9,15 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.scenes.scene2d.utils.UIUtils;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.ScreenUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
 import com.badlogic.gdx.utils.TimeUtils;
-import com.github.tommyettinger.anim8.AnimatedGif;
-import com.github.tommyettinger.anim8.AnimatedPNG;
+import com.squidpony.AnimatedGif;
+import com.squidpony.AnimatedPNG;
+import com.squidpony.PaletteReducer;
 
-import static com.github.tommyettinger.anim8.Dithered.DitherAlgorithm.SCATTER;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Credit for the shader adaptation goes to angelickite , a very helpful user on the libGDX Discord.
@@ -29,6 +32,18 @@ public class NorthernLights extends ApplicationAdapter {
 	private long startTime;
 	private float seed;
 	private int width, height;
+	private final OfflineRenderer.Readback readback;
+
+	public NorthernLights() {
+		this(new OfflineRenderer.BlockingReadback());
+	}
+
+	/**
+	 * @param readback how exported frames are read back from the offscreen FrameBuffer they are drawn into
+	 */
+	public NorthernLights(OfflineRenderer.Readback readback) {
+		this.readback = readback;
+	}
 
 	@Override public void create () {
 		//Gdx.app.setLogLevel(Application.LOG_DEBUG);
@@ -90,39 +105,125 @@ public class NorthernLights extends ApplicationAdapter {
 		batch.end();
 	}
 
+	/**
+	 * Makes an OfflineRenderer that draws frames with the shader, into a FrameBuffer the size of the window, with
+	 * {@code tm} going up by {@code timeStep} each frame.
+	 */
+	private OfflineRenderer offline(final float timeStep) {
+		return new OfflineRenderer(width, height, readback, new OfflineRenderer.Drawer() {
+			@Override
+			public void draw(int index) {
+				Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
+				Gdx.gl.glClear(Gdx.gl.GL_COLOR_BUFFER_BIT);
+				batch.getProjectionMatrix().setToOrtho2D(0, 0, width, height);
+				batch.begin();
+				shader.setUniformf("seed", seed);
+				shader.setUniformf("tm", index * timeStep);
+				batch.draw(pixel, 0, 0, width, height);
+				batch.end();
+			}
+		});
+	}
+
+	@Override public void dispose () {
+		batch.dispose();
+		pixel.dispose();
+		shader.dispose();
+		readback.dispose();
+	}
+
+	/**
+	 * Writes an 80-frame APNG to the local file {@code build/HueWow<startTime>.png}, drawing each frame offscreen and
+	 * compressing it as soon as it is read back, so only one frame is held at a time.
+	 */
 	public void renderAPNG () {
-		Array<Pixmap> pixmaps = new Array<>(80);
-		for (int i = 1; i <= 80; i++) {
-			Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
-			Gdx.gl.glClear(Gdx.gl.GL_COLOR_BUFFER_BIT);
-			batch.begin();
-			shader.setUniformf("seed", seed);
-			shader.setUniformf("tm", i * 1.25f);
-			batch.draw(pixel, 0, 0, width, height);
-			batch.end();
-			pixmaps.add(ScreenUtils.getFrameBufferPixmap(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight()));
-		}
-		AnimatedPNG apng = new AnimatedPNG();
+		final OfflineRenderer renderer = offline(1.25f);
+		final AnimatedPNG apng = new AnimatedPNG();
 		apng.setCompression(7);
-		apng.write(Gdx.files.local("build/HueWow"+startTime+".png"), pixmaps, 16);
+		OutputStream output = Gdx.files.local("build/HueWow"+startTime+".png").write(false);
+		try {
+			apng.start(output, renderer.getWidth(), renderer.getHeight(), 80, 16);
+			renderer.render(1, 81, new FrameSink() {
+				@Override
+				public void frame(int index, Pixmap frame) {
+					try {
+						apng.addFrame(frame);
+					} catch (IOException e) {
+						throw new GdxRuntimeException("Couldn't write frame " + index, e);
+					}
+				}
+			});
+			apng.finish();
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't write the APNG", e);
+		} finally {
+			StreamUtils.closeQuietly(output);
+			renderer.dispose();
+			apng.dispose();
+		}
 	}
+
+	/**
+	 * Writes a 160-frame GIF to the local file {@code build/Wobbly<startTime>.gif}, drawing each frame offscreen. See
+	 * {@link #writeGif(FrameSource, int, OutputStream)}.
+	 */
 	public void renderGif() {
-		Array<Pixmap> pixmaps = new Array<>(80);
-		for (int i = 1; i <= 160; i++) {
-			Gdx.gl.glClearColor(0f, 0f, 0f, 0f);
-			Gdx.gl.glClear(Gdx.gl.GL_COLOR_BUFFER_BIT);
-			batch.begin();
-			shader.setUniformf("seed", seed);
-			shader.setUniformf("tm", i * 0.025f);
-			batch.draw(pixel, 0, 0, width, height);
-			batch.end();
-			pixmaps.add(ScreenUtils.getFrameBufferPixmap(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight()));
+		OfflineRenderer renderer = offline(0.025f);
+		OutputStream output = Gdx.files.local("build/Wobbly"+startTime+".gif").write(false);
+		try {
+			writeGif(renderer, 160, output);
+		} finally {
+			StreamUtils.closeQuietly(output);
+			renderer.dispose();
 		}
-		AnimatedGif gif = new AnimatedGif();
-		gif.setDitherAlgorithm(SCATTER);
+	}
+
+	/**
+	 * Writes a GIF of the frames from 1 to {@code frameCount} while holding only one frame at a time. Each frame from
+	 * {@code source} goes straight to the GIF, which reduces and compresses it right away. The palette has to be known
+	 * before the first frame is added, so it is analyzed from a handful of frames sampled across the animation, which
+	 * are rendered first. This doesn't close {@code output}.
+	 * @param source renders the frames, on the GPU or the CPU
+	 * @param frameCount how many frames to write
+	 * @param output where to write the GIF
+	 */
+	public static void writeGif(FrameSource source, int frameCount, OutputStream output) {
+		final int samples = 8;
+		final AnimatedGif gif = new AnimatedGif();
 //		gif.palette = new PaletteReducer(new int[]{0x00000000, 0x2B2821FF, 0x624C3CFF, 0xD9AC8BFF, 0xE3CFB4FF,
 //				0x243D5CFF, 0x5D7275FF, 0x5C8B93FF, 0xB1A58DFF, 0xB03A48FF, 0xD4804DFF, 0xE0C872FF, 0x3E6958FF, });
-		
-		gif.write(Gdx.files.local("build/Wobbly"+startTime+".gif"), pixmaps, 20);
+		final Array<Pixmap> sampled = new Array<>(samples);
+		final FrameSink sampler = new FrameSink() {
+			@Override
+			public void frame(int index, Pixmap frame) {
+				sampled.add(copy(frame));
+			}
+		};
+		// with fewer frames than samples, every frame is sampled
+		final int step = Math.max(1, frameCount / samples);
+		for (int i = 1; i <= frameCount; i += step) {
+			source.render(i, i + 1, sampler);
+		}
+		gif.palette = new PaletteReducer(sampled);
+		for (Pixmap p : sampled) {
+			p.dispose();
+		}
+
+		gif.start(output);
+		gif.setFrameRate(20);
+		source.render(1, frameCount + 1, new FrameSink() {
+			@Override
+			public void frame(int index, Pixmap frame) {
+				gif.addFrame(frame);
+			}
+		});
+		gif.finish();
+	}
+
+	private static Pixmap copy(Pixmap frame) {
+		Pixmap p = new Pixmap(frame.getWidth(), frame.getHeight(), frame.getFormat());
+		p.setBlending(Pixmap.Blending.None);
+		p.drawPixmap(frame, 0, 0);
+		return p;
 	}
 }
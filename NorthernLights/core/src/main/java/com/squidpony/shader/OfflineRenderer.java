@@ -0,0 +1,144 @@
+package com.squidpony.shader;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Renders frames into an offscreen FrameBuffer instead of the screen, so an animation can be exported without drawing
+ * it in the window. Reading the pixels back is left to a {@link Readback}; frame N is only collected after frame N+1
+ * has been drawn and requested, so a Readback that reads asynchronously, like one using pixel buffer objects, lets
+ * the GPU draw the next frame while the last one is downloaded. This still needs a GL context; {@link StandoffField}
+ * can render without one.
+ */
+public class OfflineRenderer implements FrameSource, Disposable {
+	/**
+	 * Draws one frame into the currently-bound framebuffer, which is {@link #getWidth()} by {@link #getHeight()}.
+	 */
+	public interface Drawer {
+		void draw(int index);
+	}
+
+	/**
+	 * Gets the pixels of the bound framebuffer back to the CPU, in two slots so one can be read while the other is
+	 * being filled.
+	 */
+	public interface Readback extends Disposable {
+		/**
+		 * Starts reading the bottom-left {@code width} by {@code height} RGBA pixels of the bound framebuffer into
+		 * {@code slot}; this may return before the pixels have arrived.
+		 * @param slot 0 or 1
+		 * @param width the width in pixels to read
+		 * @param height the height in pixels to read
+		 */
+		void request(int slot, int width, int height);
+
+		/**
+		 * Waits for the pixels last requested into {@code slot}, then copies them into {@code frame}, top row first.
+		 * @param slot 0 or 1
+		 * @param frame an RGBA8888 Pixmap the same size as the request
+		 */
+		void collect(int slot, Pixmap frame);
+	}
+
+	/**
+	 * Reads with {@code glReadPixels} into a client-side buffer, which blocks until the GPU has finished drawing. This
+	 * works on any backend, but doesn't overlap drawing and reading.
+	 */
+	public static class BlockingReadback implements Readback {
+		private final ByteBuffer[] slots = new ByteBuffer[2];
+
+		@Override
+		public void request(int slot, int width, int height) {
+			final int size = width * height << 2;
+			if (slots[slot] == null || slots[slot].capacity() < size)
+				slots[slot] = BufferUtils.newByteBuffer(size);
+			ByteBuffer pixels = slots[slot];
+			pixels.clear();
+			Gdx.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+			Gdx.gl.glReadPixels(0, 0, width, height, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, pixels);
+		}
+
+		@Override
+		public void collect(int slot, Pixmap frame) {
+			copyFlipped(slots[slot], frame);
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+
+	private final int width, height;
+	private final FrameBuffer buffer;
+	private final Readback readback;
+	private final Pixmap frame;
+	private final Drawer drawer;
+
+	/**
+	 * @param width the width of each frame
+	 * @param height the height of each frame
+	 * @param readback how to get each frame's pixels back; this doesn't dispose it, so it can be shared
+	 * @param drawer draws each frame
+	 */
+	public OfflineRenderer(int width, int height, Readback readback, Drawer drawer) {
+		this.width = width;
+		this.height = height;
+		this.readback = readback;
+		this.drawer = drawer;
+		buffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+		frame = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void render(int start, int end, FrameSink sink) {
+		for (int i = start; i < end; i++) {
+			buffer.begin();
+			drawer.draw(i);
+			readback.request(i & 1, width, height);
+			buffer.end();
+			if (i > start) {
+				readback.collect(i - 1 & 1, frame);
+				sink.frame(i - 1, frame);
+			}
+		}
+		if (end > start) {
+			readback.collect(end - 1 & 1, frame);
+			sink.frame(end - 1, frame);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		buffer.dispose();
+		frame.dispose();
+	}
+
+	/**
+	 * Copies RGBA pixels as read by {@code glReadPixels}, bottom row first, into {@code frame}, top row first.
+	 * @param pixels the pixels to copy, starting at position 0, with as many rows as frame is tall
+	 * @param frame an RGBA8888 Pixmap that will be overwritten
+	 */
+	public static void copyFlipped(ByteBuffer pixels, Pixmap frame) {
+		final int stride = frame.getWidth() << 2, height = frame.getHeight();
+		ByteBuffer src = pixels.duplicate(), dst = frame.getPixels().duplicate();
+		dst.clear();
+		for (int y = height - 1; y >= 0; y--) {
+			src.limit(y * stride + stride).position(y * stride);
+			dst.put(src);
+		}
+	}
+}
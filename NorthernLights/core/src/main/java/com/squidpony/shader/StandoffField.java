@@ -0,0 +1,180 @@
+package com.squidpony.shader;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Computes what {@code standoff_fragment_no_dither.glsl} draws, on the CPU, so frames can be rendered with no GL
+ * context at all, such as on a CI machine without a GPU. Only the native Pixmap code needs to be loaded, which
+ * {@code GdxNativesLoader.load()} does. The math follows the shader step by step in floats, so frames should match
+ * what the shader draws on desktop to within rounding.
+ */
+public class StandoffField implements FrameSource, Disposable {
+	// harmonious numbers
+	private static final float H3x = 0.8191725134f, H3y = 0.6710436067f, H3z = 0.5497004779f;
+	private static final float H4x = 0.8566748838545029f, H4y = 0.733891856627126f, H4z = 0.6287067210378087f,
+			H4w = 0.5385972572236101f;
+
+	private final int width, height;
+	private final float timeStep;
+	private final float sx, sy, sz;
+	private final int[] colors;
+	private final float[] con = new float[3], arg = new float[3], res = new float[3],
+			start = new float[3], end = new float[3];
+	private final Pixmap frame;
+
+	/**
+	 * @param seed the same float that would be given to the shader's {@code seed} uniform
+	 * @param timeStep how much the shader's {@code tm} uniform goes up with each frame index
+	 * @param width the width of each frame
+	 * @param height the height of each frame
+	 */
+	public StandoffField(float seed, float timeStep, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.timeStep = timeStep;
+		sx = 31.555f + 19.225f * fract(seed * 0.61803f);
+		sy = 31.555f + 19.225f * fract(seed * 0.75488f);
+		sz = 31.555f + 19.225f * fract(seed * 0.56984f);
+		colors = new int[width * height];
+		frame = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+	}
+
+	/**
+	 * Gets the same seed that {@link NorthernLights#create()} derives from {@code state}.
+	 * @param state any long
+	 * @return a float seed to give to {@link #StandoffField(float, float, int, int)}
+	 */
+	public static float seedFrom(long state) {
+		return ((((state = (state ^ (state << 41 | state >>> 23) ^ (state << 17 | state >>> 47) ^ 0xD1B54A32D192ED03L) * 0xAEF17502108EF2D9L) ^ state >>> 43 ^ state >>> 31 ^ state >>> 23) * 0xDB4F0B9175AE2165L) >>> 36) * 0x1.5bf0a8p-16f;
+	}
+
+	@Override
+	public void render(int start, int end, FrameSink sink) {
+		for (int i = start; i < end; i++) {
+			fill(i * timeStep);
+			ByteBuffer pixels = frame.getPixels().duplicate();
+			pixels.clear();
+			IntBuffer ints = pixels.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+			ints.put(colors, 0, width * height);
+			sink.frame(i, frame);
+		}
+	}
+
+	/**
+	 * Fills {@link #colors} with RGBA8888 colors for time {@code tm}, top row first.
+	 */
+	private void fill(float tm) {
+		final float[] con = this.con, arg = this.arg, res = this.res;
+		float x, y, z;
+		for (int row = 0, i = 0; row < height; row++) {
+			// gl_FragCoord is at the center of a pixel, with y going up from the bottom
+			final float ay = (height - row - 0.5f + 128f) * 0.015625f;
+			for (int col = 0; col < width; col++) {
+				final float ax = (col + 0.5f + 128f) * 0.015625f, az = tm * 0.015625f;
+				// con = alt.yzx + alt.zxy
+				con[0] = ay + az;
+				con[1] = az + ax;
+				con[2] = ax + ay;
+				// con.yzx += cosmic(s.zxy, con.xyz)
+				cosmic(sz, sx, sy, con[0], con[1], con[2], res);
+				con[1] += res[0];
+				con[2] += res[1];
+				con[0] += res[2];
+				// con.zxy += cosmic(s.xyz, con.yzx)
+				cosmic(sx, sy, sz, con[1], con[2], con[0], res);
+				con[2] += res[0];
+				con[0] += res[1];
+				con[1] += res[2];
+				// con.xyz += cosmic(s.yzx, con.zxy)
+				cosmic(sy, sz, sx, con[2], con[0], con[1], res);
+				x = con[0] + res[0];
+				y = con[1] + res[1];
+				z = con[2] + res[2];
+				colors[i++] = channel(x) << 24 | channel(y) << 16 | channel(z) << 8 | 0xFF;
+			}
+		}
+	}
+
+	private static int channel(float c) {
+		return Math.min(255, Math.max(0, Math.round(((float) Math.cos(c * 3.14159265f) * 0.5f + 0.5f) * 255f)));
+	}
+
+	/**
+	 * The shader's {@code cosmic(seed, con)}, writing the result to {@code out}.
+	 */
+	private void cosmic(float s0, float s1, float s2, float c0, float c1, float c2, float[] out) {
+		final float[] res = arg;
+		// con.xyz += swayRandomized(seed.yzx, con.z)
+		swayRandomized(s1, s2, s0, c2, res);
+		c0 += res[0];
+		c1 += res[1];
+		c2 += res[2];
+		// con.yzx += swayRandomized(seed.zxy, con.x)
+		swayRandomized(s2, s0, s1, c0, res);
+		c1 += res[0];
+		c2 += res[1];
+		c0 += res[2];
+		// con.zxy += swayRandomized(seed.xyz, con.y)
+		swayRandomized(s0, s1, s2, c1, res);
+		c2 += res[0];
+		c0 += res[1];
+		c1 += res[2];
+		out[0] = c0 + 0.125f;
+		out[1] = c1 + 0.125f;
+		out[2] = c2 + 0.125f;
+	}
+
+	private void swayRandomized(float s0, float s1, float s2, float value, float[] out) {
+		final float f = (float) Math.floor(value);
+		norl(s0, s1, s2, f, start);
+		norl(s0, s1, s2, f + 1f, end);
+		float t = value - f;
+		t *= t * (3f - 2f * t);
+		out[0] = start[0] + (end[0] - start[0]) * t;
+		out[1] = start[1] + (end[1] - start[1]) * t;
+		out[2] = start[2] + (end[2] - start[2]) * t;
+	}
+
+	/**
+	 * The shader's {@code norl(seeds, p)}, where every component of {@code p} is {@code f}.
+	 */
+	private static void norl(float s0, float s1, float s2, float f, float[] out) {
+		// fract(fract(dot((p + seeds), H3) + seeds.yzx) * fract(dot(H3.zxy - seeds.zxy, p.yzx)))
+		final float da = (f + s0) * H3x + (f + s1) * H3y + (f + s2) * H3z,
+				fa = fract(((H3z - s2) + (H3x - s0) + (H3y - s1)) * f);
+		// fract(fract(dot((p + H4.wzy), seeds.yzx) + H4.yzx) * fract(dot(seeds.zxy - H4.yxw, p.yzx)))
+		final float db = (f + H4w) * s1 + (f + H4z) * s2 + (f + H4y) * s0,
+				fb = fract(((s2 - H4y) + (s0 - H4x) + (s1 - H4w)) * f);
+		// normalize(p.zxy), which is the same in every component
+		final float t = f == 0f ? 0f : Math.signum(f) * 0.57735026f;
+		out[0] = fract(16f * mix(fract(fract(da + s1) * fa), fract(fract(db + H4y) * fb), t));
+		out[1] = fract(16f * mix(fract(fract(da + s2) * fa), fract(fract(db + H4z) * fb), t));
+		out[2] = fract(16f * mix(fract(fract(da + s0) * fa), fract(fract(db + H4x) * fb), t));
+	}
+
+	private static float mix(float a, float b, float t) {
+		return a + (b - a) * t;
+	}
+
+	private static float fract(float v) {
+		return v - (float) Math.floor(v);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void dispose() {
+		frame.dispose();
+	}
+}
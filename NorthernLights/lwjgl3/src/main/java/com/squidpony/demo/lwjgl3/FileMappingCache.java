@@ -0,0 +1,69 @@
+package com.squidpony.demo.lwjgl3;
+
+import com.squidpony.PaletteReducer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps {@link PaletteReducer} mappings as files in a directory, one per palette, reading them through a memory-mapped
+ * buffer. Each file is written under a temporary name and then moved into place, so other processes never see a
+ * partial file. Problems reading or writing just mean the mapping gets built again.
+ */
+public class FileMappingCache implements PaletteReducer.MappingCache {
+    private final File directory;
+
+    public FileMappingCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * A cache in a "PaletteReducer" folder in the system temporary directory.
+     */
+    public FileMappingCache() {
+        this(new File(System.getProperty("java.io.tmpdir"), "PaletteReducer"));
+    }
+
+    @Override
+    public byte[] load(String key) {
+        final File file = new File(directory, key + ".map");
+        if (!file.isFile())
+            return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final byte[] record = new byte[buffer.remaining()];
+            buffer.get(record);
+            return record;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void store(String key, byte[] record) {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            return;
+        File temp = null;
+        try {
+            temp = File.createTempFile("mapping", ".tmp", directory);
+            final ByteBuffer buffer = ByteBuffer.wrap(record);
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+            Files.move(temp.toPath(), new File(directory, key + ".map").toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException | RuntimeException ignored) {
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+}
@@ -3,16 +3,19 @@ package com.squidpony.demo.lwjgl3;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.squidpony.PaletteReducer;
 import com.squidpony.shader.NorthernLights;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
+        PaletteReducer.mappingCache = new FileMappingCache();
+        PaletteReducer.mappingWorkers = new PooledMappingWorkers();
         createApplication();
     }
 
     private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new NorthernLights(), getDefaultConfiguration());
+        return new Lwjgl3Application(new NorthernLights(new PboReadback()), getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
@@ -0,0 +1,43 @@
+package com.squidpony.demo.lwjgl3;
+
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.squidpony.PaletteReducer;
+import com.squidpony.shader.NorthernLights;
+import com.squidpony.shader.StandoffField;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the same GIF as {@link NorthernLights#renderGif()} without a window or a GL context, computing each frame on
+ * the CPU with {@link StandoffField}, for machines that have no GPU. Takes optional arguments for the width and height,
+ * which default to 300 by 300 like the launcher's window, and the file to write.
+ */
+public class OfflineExport {
+    public static void main(String[] args) {
+        final int width = args.length > 0 ? Integer.parseInt(args[0]) : 300,
+                height = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        final File file = new File(args.length > 2 ? args[2] : "build/Wobbly" + System.currentTimeMillis() + ".gif");
+        GdxNativesLoader.load();
+        PaletteReducer.mappingCache = new FileMappingCache();
+        PaletteReducer.mappingWorkers = new PooledMappingWorkers();
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+        StandoffField field = new StandoffField(StandoffField.seedFrom(-1L), 0.025f, width, height);
+        OutputStream output = null;
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(file));
+            NorthernLights.writeGif(field, 160, output);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Couldn't write " + file, e);
+        } finally {
+            StreamUtils.closeQuietly(output);
+            field.dispose();
+        }
+    }
+}
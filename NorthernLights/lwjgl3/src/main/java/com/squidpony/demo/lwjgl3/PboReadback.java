@@ -0,0 +1,56 @@
+package com.squidpony.demo.lwjgl3;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.squidpony.shader.OfflineRenderer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads frames back through two pixel buffer objects, so {@code glReadPixels} only queues a copy on the GPU and
+ * returns right away; the copy is waited for when the PBO is mapped in {@link #collect(int, Pixmap)}, by which point
+ * {@link OfflineRenderer} has already drawn and requested the next frame into the other PBO. Uses LWJGL3 directly,
+ * since libGDX's GL interfaces can't read pixels into a bound buffer object.
+ */
+public class PboReadback implements OfflineRenderer.Readback {
+    private final int[] buffers = new int[2];
+    private final int[] sizes = new int[2];
+
+    @Override
+    public void request(int slot, int width, int height) {
+        final int size = width * height << 2;
+        if (buffers[slot] == 0)
+            buffers[slot] = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        if (sizes[slot] != size) {
+            GL15.glBufferData(GL21.GL_PIXEL_PACK_BUFFER, size, GL15.GL_STREAM_READ);
+            sizes[slot] = size;
+        }
+        GL11.glPixelStorei(GL11.GL_PACK_ALIGNMENT, 1);
+        GL11.glReadPixels(0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, 0L);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    @Override
+    public void collect(int slot, Pixmap frame) {
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        ByteBuffer pixels = GL15.glMapBuffer(GL21.GL_PIXEL_PACK_BUFFER, GL15.GL_READ_ONLY);
+        if (pixels != null) {
+            OfflineRenderer.copyFlipped(pixels, frame);
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != 0)
+                GL15.glDeleteBuffers(buffers[i]);
+            buffers[i] = 0;
+            sizes[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.squidpony.demo.lwjgl3;
+
+import com.squidpony.PaletteReducer;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds {@link PaletteReducer} mappings on one pool of daemon threads that lasts as long as the program, so building a
+ * mapping for every frame's palette doesn't start any threads. The pool has one thread fewer than there are processors,
+ * since the thread that asks for a mapping works on it too.
+ */
+public class PooledMappingWorkers implements PaletteReducer.MappingWorkers {
+    private final ExecutorService pool;
+    private final Future<?>[] futures;
+
+    public PooledMappingWorkers(int threads) {
+        futures = new Future<?>[Math.max(0, threads)];
+        pool = futures.length == 0 ? null : Executors.newFixedThreadPool(futures.length, new ThreadFactory() {
+            private int made = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PaletteReducer-" + made++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * A pool with one thread fewer than there are processors, up to 31.
+     */
+    public PooledMappingWorkers() {
+        this(Math.min(32, Runtime.getRuntime().availableProcessors()) - 1);
+    }
+
+    @Override
+    public synchronized void runCopies(Runnable task) {
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pool.submit(task);
+        }
+        Throwable failure = null;
+        try {
+            task.run();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (int i = 0; i < futures.length; i++) {
+            while (true) {
+                try {
+                    futures[i].get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                    break;
+                }
+            }
+            futures[i] = null;
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new RuntimeException(failure);
+    }
+}
@@ -6,7 +6,9 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.squidpony.samples.desktop.CustomConfig;
@@ -21,11 +23,17 @@ import squidpony.squidmath.LinnormRNG;
 import squidpony.squidmath.NumberTools;
 import squidpony.squidmath.StatefulRNG;
 
+import java.nio.ByteBuffer;
+
 /**
  * Port of Zachary Carter's world generation technique, https://github.com/zacharycarter/mapgen
  * It seems to mostly work now, though it only generates one view of the map that it renders (but biome, moisture, heat,
  * and height maps can all be requested from it).
  * Currently, clouds are in progress, and look like <a href="http://i.imgur.com/Uq7Whzp.gifv">this preview</a>.
+ * <br>
+ * Pressing 'g' toggles a GPU coloring mode, where the CPU only writes compact per-pixel codes (two palette indices, a
+ * mix byte, and the height code) and {@link #fragmentShaderPalette} does the palette lookup and blending. Pressing 'c'
+ * randomizes the biome colors; in GPU mode that only needs the tiny palette texture to be uploaded again.
  */
 public class DetailedWorldMapDemo extends ApplicationAdapter {
     public DetailedWorldMapDemo(){}
@@ -68,6 +76,12 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
 
     private Pixmap pm;
     private Texture pt;
+    
+    // used only when gpuColoring is true; codes holds palette indices and the palette texture holds colors
+    private boolean gpuColoring = false;
+    private Pixmap codes, palette;
+    private Texture codeTexture, paletteTexture;
+    private ShaderProgram paletteShader;
     //private int counter = 0;
     private Color tempColor = Color.WHITE.cpy();
     
@@ -140,6 +154,21 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
             Empty                                                                                                                      //SPACE
     }, BIOME_COLOR_TABLE = new float[61], BIOME_DARK_COLOR_TABLE = new float[61];
     private static final float[] NATION_COLORS = new float[144];
+    
+    // Indices into the palette texture past the 61 biome colors; these entries are the same in both palette rows, so
+    // they can be used as either end of a blend.
+    private static final int
+            PAL_SHALLOW = 61,
+            PAL_ICE = 62,
+            PAL_LIGHT_ICE = 63,
+            PAL_COASTAL = 64,
+            PAL_EMPTY = 65,
+            PAL_DEEP = 66,
+            PAL_MOSS = 67,
+            PAL_CORAL = 68,
+            PAL_DESERT = 69,
+            PAL_RAINFOREST = 70,
+            PAL_SIZE = 128;
     private static void randomizeColors(long seed)
     {
         float b, diff, alt, hue = NumberTools.randomSignedFloat(seed);
@@ -193,6 +222,19 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
         pm.setBlending(Pixmap.Blending.None);
         pt = new Texture(pm);
         pt.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+
+        codes = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        codes.setBlending(Pixmap.Blending.None);
+        codeTexture = new Texture(codes);
+        // codes must never be interpolated, or the palette indices would blend into nonsense
+        codeTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        palette = new Pixmap(PAL_SIZE, 2, Pixmap.Format.RGBA8888);
+        palette.setBlending(Pixmap.Blending.None);
+        paletteTexture = new Texture(palette);
+        paletteTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        paletteShader = new ShaderProgram(batch.getShader().getVertexShaderSource(), fragmentShaderPalette);
+        if (!paletteShader.isCompiled()) throw new GdxRuntimeException("Couldn't compile shader: " + paletteShader.getLog());
+        uploadPalette();
         
 //        stage = new Stage(view, batch);
         seed = 0x0c415cf07774ab2eL;//0x9987a26d1e4d187dL;//0xDEBACL;
@@ -233,6 +275,15 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
                     case 'm':
                         mode = (mode + 2) % maxModes;
                         break;
+                    case 'G':
+                    case 'g':
+                        gpuColoring = !gpuColoring;
+                        break;
+                    case 'C':
+                    case 'c':
+                        randomizeColors(rng.nextLong());
+                        uploadPalette();
+                        break;
                     case 'Q':
                     case 'q':
                     case SquidInput.ESCAPE: {
@@ -319,6 +370,10 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
     }
 
     public void putMap() {
+        if(gpuColoring) {
+            putCodedMap();
+            return;
+        }
         int hc, tc, bc;
         int[][] heightCodeData = world.heightCodeData;
         double[][] heightData = world.heightData;
@@ -406,6 +461,10 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
         batch.end();
     }
     public void putHeatMap() {
+        if(gpuColoring) {
+            putCodedHeatMap();
+            return;
+        }
         int hc;
         int[][] heightCodeData = world.heightCodeData;
         double[][] heatData = world.heatData;
@@ -434,6 +493,10 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
         batch.end();
     }
     public void putMoistureMap() {
+        if(gpuColoring) {
+            putCodedMoistureMap();
+            return;
+        }
         int hc;
         int[][] heightCodeData = world.heightCodeData;
         double[][] moistureData = world.moistureData;
@@ -460,6 +523,175 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
         batch.draw(pt, 0, 0, width >> 1, height >> 1);
         batch.end();
     }
+    /**
+     * Writes the current biome colors and the few extra colors used by water, ice, and the heat/moisture views into the
+     * palette texture. Row 0 holds {@link #BIOME_COLOR_TABLE} and row 1 holds {@link #BIOME_DARK_COLOR_TABLE}; this is
+     * all that needs to happen on the CPU for a palette swap in GPU coloring mode.
+     */
+    public void uploadPalette() {
+        for (int i = 0; i < 61; i++) {
+            Color.abgr8888ToColor(tempColor, BIOME_COLOR_TABLE[i]);
+            palette.drawPixel(i, 0, Color.rgba8888(tempColor));
+            Color.abgr8888ToColor(tempColor, BIOME_DARK_COLOR_TABLE[i]);
+            palette.drawPixel(i, 1, Color.rgba8888(tempColor));
+        }
+        putPaletteEntry(PAL_SHALLOW, shallowColor);
+        putPaletteEntry(PAL_ICE, ice);
+        putPaletteEntry(PAL_LIGHT_ICE, lightIce);
+        putPaletteEntry(PAL_COASTAL, coastalColor);
+        // the CPU views leave off-map cells as the DB_INK they fill with first, so this uses that exact color
+        putPaletteEntry(PAL_EMPTY, quantize(SColor.DB_INK));
+        putPaletteEntry(PAL_DEEP, deepColor);
+        putPaletteEntry(PAL_MOSS, -0x1.5bbf5ap126F); // SColor.MOSS_GREEN
+        putPaletteEntry(PAL_CORAL, -0x1.8081fep125F); // SColor.CORAL_RED
+        putPaletteEntry(PAL_DESERT, desert);
+        putPaletteEntry(PAL_RAINFOREST, tropicalRainforest);
+        paletteTexture.draw(palette, 0, 0);
+    }
+
+    private void putPaletteEntry(int index, float color) {
+        Color.abgr8888ToColor(tempColor, color);
+        putPaletteEntry(index, Color.rgba8888(tempColor));
+    }
+
+    private void putPaletteEntry(int index, int rgba8888) {
+        palette.drawPixel(index, 0, rgba8888);
+        palette.drawPixel(index, 1, rgba8888);
+    }
+
+    /**
+     * Stores one pixel's code; the shader draws {@code lerp(lightRow[light], darkRow[dark], mix)}.
+     */
+    private static void putCode(final ByteBuffer buf, final int x, final int y, final int dark, final int light,
+                                final float mix, final int hc) {
+        final int i = (y * width + x) << 2;
+        buf.put(i, (byte) dark)
+                .put(i + 1, (byte) light)
+                .put(i + 2, (byte) (MathUtils.clamp(mix, 0f, 1f) * 255.999f))
+                .put(i + 3, (byte) Math.min(hc, 255));
+    }
+
+    /**
+     * Equivalent to {@link #putMap()}, but only writes palette codes; the colors are looked up and blended in
+     * {@link #fragmentShaderPalette}.
+     */
+    public void putCodedMap() {
+        int hc, tc, bc;
+        final int[][] heightCodeData = world.heightCodeData;
+        final double[][] heightData = world.heightData;
+        final int[][] heatCodeData = dbm.heatCodeData;
+        final int[][] biomeCodeData = dbm.biomeCodeData;
+        final ByteBuffer buf = codes.getPixels();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                hc = heightCodeData[x][y];
+                if (hc == 1000) {
+                    putCode(buf, x, y, PAL_EMPTY, PAL_EMPTY, 0f, hc);
+                    continue;
+                }
+                tc = heatCodeData[x][y];
+                bc = biomeCodeData[x][y];
+                if (tc == 0 && hc <= 4) {
+                    if (hc == 4)
+                        putCode(buf, x, y, PAL_ICE, PAL_LIGHT_ICE,
+                                (float) ((heightData[x][y] - WorldMapGenerator.sandLower) / (WorldMapGenerator.sandUpper - WorldMapGenerator.sandLower)), hc);
+                    else
+                        putCode(buf, x, y, PAL_ICE, PAL_SHALLOW,
+                                (float) ((heightData[x][y] - -1.0) / (WorldMapGenerator.sandLower - -1.0)), hc);
+                }
+                else if (hc < 4)
+                    putCode(buf, x, y, PAL_COASTAL, 56,
+                            (float) (((heightData[x][y] + 0.06) * 8.0) / (WorldMapGenerator.sandLower + 1.0)), hc);
+                else
+                    putCode(buf, x, y, dbm.extractPartA(bc), dbm.extractPartB(bc), dbm.extractMixAmount(bc), hc);
+            }
+        }
+        drawCodes(width, height);
+    }
+
+    /**
+     * Equivalent to {@link #putHeatMap()}, but only writes palette codes.
+     */
+    public void putCodedHeatMap() {
+        int hc;
+        final int[][] heightCodeData = world.heightCodeData;
+        final double[][] heatData = world.heatData;
+        final double heatRange = 1.0 / (world.maxHeat - world.minHeat + 0.001);
+        final ByteBuffer buf = codes.getPixels();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                hc = heightCodeData[x][y];
+                if (hc == 1000)
+                    putCode(buf, x, y, PAL_EMPTY, PAL_EMPTY, 0f, hc);
+                else if (hc < 4)
+                    putCode(buf, x, y, PAL_DEEP, PAL_ICE, (float) ((heatData[x][y] - world.minHeat) * heatRange), hc);
+                else
+                    putCode(buf, x, y, PAL_CORAL, PAL_MOSS, (float) ((heatData[x][y] - world.minHeat) * heatRange), hc);
+            }
+        }
+        drawCodes(width >> 1, height >> 1);
+    }
+
+    /**
+     * Equivalent to {@link #putMoistureMap()}, but only writes palette codes.
+     */
+    public void putCodedMoistureMap() {
+        int hc;
+        final int[][] heightCodeData = world.heightCodeData;
+        final double[][] moistureData = world.moistureData;
+        final double wetRange = 1.0 / (world.maxWet - world.minWet + 0.001);
+        final ByteBuffer buf = codes.getPixels();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                hc = heightCodeData[x][y];
+                if (hc == 1000)
+                    putCode(buf, x, y, PAL_EMPTY, PAL_EMPTY, 0f, hc);
+                else if (hc < 4)
+                    putCode(buf, x, y, PAL_DEEP, PAL_SHALLOW, (float) ((moistureData[x][y] - world.minWet) * wetRange), hc);
+                else
+                    putCode(buf, x, y, PAL_RAINFOREST, PAL_DESERT, (float) ((moistureData[x][y] - world.minWet) * wetRange), hc);
+            }
+        }
+        drawCodes(width >> 1, height >> 1);
+    }
+
+    private void drawCodes(int drawWidth, int drawHeight) {
+        codeTexture.draw(codes, 0, 0);
+        paletteTexture.bind(1);
+        Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+        batch.setShader(paletteShader);
+        batch.begin();
+        paletteShader.setUniformi("u_palette", 1);
+        batch.draw(codeTexture, 0, 0, drawWidth, drawHeight);
+        batch.end();
+        batch.setShader(null);
+    }
+
+    /**
+     * Looks up two colors in a 128x2 palette texture bound as {@code u_palette}, using the red channel of the code
+     * texture as an index into the dark row and the green channel as an index into the light row, then blends from
+     * the light color to the dark one by the blue channel. The alpha channel holds the height code, which this doesn't
+     * need, but is there for any shader that wants to shade by elevation.
+     */
+    public static final String fragmentShaderPalette =
+            "#ifdef GL_ES\n" +
+                    "#define LOWP lowp\n" +
+                    "precision mediump float;\n" +
+                    "#else\n" +
+                    "#define LOWP \n" +
+                    "#endif\n" +
+                    "varying vec2 v_texCoords;\n" +
+                    "varying LOWP vec4 v_color;\n" +
+                    "uniform sampler2D u_texture;\n" +
+                    "uniform sampler2D u_palette;\n" +
+                    "void main()\n" +
+                    "{\n" +
+                    "   vec4 code = texture2D( u_texture, v_texCoords );\n" +
+                    "   vec3 light = texture2D( u_palette, vec2((code.g * 255.0 + 0.5) * (1.0 / 128.0), 0.25) ).rgb;\n" +
+                    "   vec3 dark = texture2D( u_palette, vec2((code.r * 255.0 + 0.5) * (1.0 / 128.0), 0.75) ).rgb;\n" +
+                    "   gl_FragColor = vec4(mix(light, dark, code.b), 1.0);\n" +
+                    "}";
+
     private final float emphasize(final float a)
     {
         return a * a * (3f - 2f * a);
@@ -575,6 +807,16 @@ public class DetailedWorldMapDemo extends ApplicationAdapter {
         view.apply(true);
     }
 
+    @Override
+    public void dispose() {
+        paletteShader.dispose();
+        codeTexture.dispose();
+        paletteTexture.dispose();
+        codes.dispose();
+        palette.dispose();
+        super.dispose();
+    }
+
     public static CustomConfig config = new CustomConfig("DetailedWorldMapDemo"){
         {
             setTitle("SquidLib Demo: Detailed World Map");
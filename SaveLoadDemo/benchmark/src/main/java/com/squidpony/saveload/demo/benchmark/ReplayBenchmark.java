@@ -0,0 +1,163 @@
+package com.squidpony.saveload.demo.benchmark;
+
+import com.squidpony.saveload.demo.MainApplication;
+import com.squidpony.saveload.demo.Replay;
+import com.squidpony.saveload.demo.SaveCodec;
+import com.squidpony.saveload.demo.desktop.DeflateCodec;
+import squidpony.squidgrid.gui.gdx.SColor;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GWTRNG;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Plays a {@link Replay} as fast as possible without a window, to measure how many turns per second the game logic
+ * takes apart from rendering. The replay can be one recorded in the game with 'T', which is saved as Replay.sav in the
+ * save directory, or one made up here from a fixed seed, walking and clicking around the game's dungeon.
+ * <br>
+ * Every playback has to end exactly where the recording did, or where the first playback did for a recorded replay;
+ * if one doesn't, the difference is printed and this exits with status 1, since replays are only useful if they are
+ * deterministic.
+ * <br>
+ * Options, all optional: {@code --replay path/to/Replay.sav}, {@code --codec none|lz|deflate} for the codec the
+ * snapshot was written with (the game records with lz), {@code --inputs 5000} for how many inputs to make up,
+ * {@code --size 450x125} for the dungeon to make them up in, {@code --repeat 20}, and {@code --warmup 5}.
+ */
+public class ReplayBenchmark {
+    public static void main(String[] args) throws IOException {
+        String file = null, codecName = "none";
+        int inputs = 5000, repeat = 20, warmup = 5, width = MainApplication.bigWidth, height = MainApplication.bigHeight;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--replay": file = args[i + 1];
+                    break;
+                case "--codec": codecName = args[i + 1];
+                    break;
+                case "--inputs": inputs = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--size": {
+                    final int x = args[i + 1].indexOf('x');
+                    width = Integer.parseInt(args[i + 1].substring(0, x).trim());
+                    height = Integer.parseInt(args[i + 1].substring(x + 1).trim());
+                    break;
+                }
+                case "--repeat": repeat = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup": warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        // the same setup MainApplication.create() does, which the generated colors depend on
+        SColor.LIMITED_PALETTE[3] = SColor.DB_GRAPHITE;
+        Coord.expandPoolTo(width, height);
+        // a null codec reads both uncompressed and LzCodec snapshots, and makes up replays with a new LzCodec
+        final SaveCodec codec;
+        switch (codecName) {
+            case "none":
+            case "lz": codec = null;
+                break;
+            case "deflate": codec = new DeflateCodec();
+                break;
+            default: throw new IllegalArgumentException("Unknown codec " + codecName + "; use none, lz, or deflate");
+        }
+        final byte[] replay;
+        MainApplication.Data expected = null;
+        if(file != null)
+        {
+            replay = Files.readAllBytes(Paths.get(file));
+            width = MainApplication.bigWidth;
+            height = MainApplication.bigHeight;
+        }
+        else
+        {
+            final GWTRNG rng = new GWTRNG(12345, 67890);
+            final DungeonGenerator gen = new DungeonGenerator(width, height, rng);
+            expected = new MainApplication.Data();
+            expected.generate(gen, rng);
+            expected.stateA = rng.getStateA();
+            expected.stateB = rng.getStateB();
+            replay = makeUp(expected, codec, gen, rng, inputs);
+        }
+        // a replay of only the snapshot times loading it, so that can be left out of the turns per second
+        final int snapshotEnd = 12 + ((replay[8] & 0xFF) | (replay[9] & 0xFF) << 8 | (replay[10] & 0xFF) << 16
+                | (replay[11] & 0xFF) << 24);
+        final byte[] snapshot = Arrays.copyOf(replay, Math.min(replay.length, snapshotEnd));
+        final long[] loadNanos = new long[repeat], playNanos = new long[repeat];
+        int turns = 0;
+        for (int i = -warmup; i < repeat; i++) {
+            final GWTRNG rng = new GWTRNG(0, 0);
+            final DungeonGenerator gen = new DungeonGenerator(width, height, rng);
+            long start = System.nanoTime();
+            Replay.play(snapshot, new MainApplication.Data(), codec, gen, rng);
+            final long load = System.nanoTime() - start;
+            final MainApplication.Data data = new MainApplication.Data();
+            start = System.nanoTime();
+            turns = Replay.play(replay, data, codec, gen, rng);
+            final long play = System.nanoTime() - start;
+            if(expected == null)
+                expected = data;
+            final String difference = SaveBenchmark.difference(expected, data);
+            if(difference != null)
+            {
+                System.out.println("FAILED: playback " + (i + warmup) + " ended with a different " + difference);
+                System.exit(1);
+            }
+            if(i >= 0)
+            {
+                loadNanos[i] = load;
+                playNanos[i] = play;
+            }
+        }
+        Arrays.sort(loadNanos);
+        Arrays.sort(playNanos);
+        final long load = loadNanos[repeat >> 1], play = playNanos[repeat >> 1],
+                p99 = playNanos[Math.max(0, (int) Math.ceil(repeat * 0.99) - 1)];
+        System.out.println(String.format("%d bytes, %d turns from a %dx%d snapshot", replay.length, turns, width,
+                height));
+        System.out.println(String.format("load p50 %.3fms, play p50 %.3fms, play p99 %.3fms", load / 1e6, play / 1e6,
+                p99 / 1e6));
+        System.out.println(String.format("%.0f turns per second, not counting the load",
+                turns / (Math.max(1L, play - load) / 1e9)));
+    }
+
+    /**
+     * Records inputs something like a player's while playing them in data: mostly single steps, then clicks a few
+     * cells away, and now and then a new tint. The inputs come from their own RNG, so only the game's turns use rng.
+     */
+    private static byte[] makeUp(MainApplication.Data data, SaveCodec codec, DungeonGenerator gen, GWTRNG rng,
+                                 int inputs)
+    {
+        final Replay recording = new Replay(data, codec);
+        final Replay.Player player = new Replay.Player(data, gen, rng);
+        final GWTRNG choices = new GWTRNG(0x1234, 0x5678);
+        final int width = data.decoDungeon.length, height = data.decoDungeon[0].length;
+        for (int i = 0; i < inputs; i++) {
+            final int roll = choices.nextInt(100);
+            if(roll < 70)
+            {
+                final int d = choices.nextInt(4), xmod = d == 0 ? -1 : d == 1 ? 1 : 0, ymod = d == 2 ? -1 : d == 3 ? 1 : 0;
+                recording.move(xmod, ymod);
+                player.move(xmod, ymod);
+            }
+            else if(roll < 99)
+            {
+                final int x = Math.max(0, Math.min(width - 1, data.player.x + choices.nextInt(25) - 12)),
+                        y = Math.max(0, Math.min(height - 1, data.player.y + choices.nextInt(25) - 12));
+                recording.click(Coord.get(x, y));
+                player.click(x, y);
+            }
+            else
+            {
+                recording.recolor();
+                player.recolor();
+            }
+        }
+        player.finish();
+        return recording.toByteArray();
+    }
+}
@@ -0,0 +1,305 @@
+package com.squidpony.saveload.demo.benchmark;
+
+import com.badlogic.gdx.utils.JsonWriter;
+import com.squidpony.saveload.demo.BinarySave;
+import com.squidpony.saveload.demo.LzCodec;
+import com.squidpony.saveload.demo.MainApplication;
+import com.squidpony.saveload.demo.SaveCodec;
+import com.squidpony.saveload.demo.desktop.DeflateCodec;
+import com.squidpony.saveload.demo.desktop.ChannelSaveStore;
+import squidpony.squidgrid.Direction;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.GWTRNG;
+import squidpony.squidmath.GreasedRegion;
+import squidpony.store.json.JsonConverter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times saving and loading a {@link MainApplication.Data} in each save format, without a window. For each map size, a
+ * dungeon is generated from a fixed seed and played for a number of random turns, then each format saves it to a
+ * temporary directory and loads it back many times. Each format's saved size, the median and 99th percentile time to
+ * keep and to load, and the bytes allocated by each keep and load are printed as a table. Keeping covers encoding and
+ * writing the file, and loading covers reading it and decoding it into a Data that is reused, as the game does.
+ * <br>
+ * If any format loads something that isn't exactly what was saved, down to the bits of every float, the differences are
+ * printed and this exits with status 1, so it can be run as a check before trusting a change to saving.
+ * <br>
+ * Options, all optional: {@code --sizes 90x25,450x125,1024x1024}, {@code --iterations 30}, {@code --warmup 10},
+ * {@code --turns 100}, and {@code --formats json,binary,...} to run only some of the formats by name.
+ */
+public class SaveBenchmark {
+    /**
+     * One way of saving a Data and loading it back.
+     */
+    private abstract static class Format {
+        final String name;
+
+        Format(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Saves data, returning how many bytes were written.
+         */
+        abstract long keep(MainApplication.Data data);
+
+        /**
+         * Loads what {@link #keep(MainApplication.Data)} last saved into data.
+         */
+        abstract void load(MainApplication.Data data);
+    }
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        String sizes = "90x25,450x125,1024x1024", only = null;
+        int iterations = 30, warmup = 10, turns = 100;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[i + 1];
+                    break;
+                case "--iterations": iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup": warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--turns": turns = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--formats": only = "," + args[i + 1] + ",";
+                    break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        final Path directory = Files.createTempDirectory("SaveLoadDemo-bench");
+        final List<String> failures = new ArrayList<>();
+        try {
+            for (String size : sizes.split(",")) {
+                final int x = size.indexOf('x');
+                final int width = Integer.parseInt(size.substring(0, x).trim()),
+                        height = Integer.parseInt(size.substring(x + 1).trim());
+                // the same seed the game starts with, so every run saves the same dungeon
+                final GWTRNG rng = new GWTRNG(12345, 67890);
+                final DungeonGenerator gen = new DungeonGenerator(width, height, rng);
+                final MainApplication.Data data = new MainApplication.Data();
+                data.generate(gen, rng);
+                play(data, rng, turns);
+                System.out.println();
+                System.out.println(width + "x" + height + ", " + turns + " turns played");
+                System.out.println(String.format("%-16s %10s %10s %10s %12s %10s %10s %12s  %s", "format", "bytes",
+                        "keep p50", "keep p99", "keep alloc", "load p50", "load p99", "load alloc", "round trip"));
+                for (Format format : formats(new ChannelSaveStore(directory), gen, rng)) {
+                    if(only == null || only.contains("," + format.name + ","))
+                        run(format, data, iterations, warmup, width + "x" + height, failures);
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+        if(!failures.isEmpty())
+        {
+            System.out.println();
+            for (String failure : failures) {
+                System.out.println("FAILED: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static List<Format> formats(final ChannelSaveStore store, final DungeonGenerator gen, final GWTRNG rng)
+    {
+        final JsonConverter json = new JsonConverter(JsonWriter.OutputType.minimal);
+        List<Format> formats = new ArrayList<>();
+        formats.add(new Format("json") {
+            @Override
+            long keep(MainApplication.Data data) {
+                byte[] bytes = json.toJson(data, MainApplication.Data.class).getBytes(StandardCharsets.UTF_8);
+                store.write(name, bytes);
+                return bytes.length;
+            }
+
+            @Override
+            void load(MainApplication.Data data) {
+                data.set(json.fromJson(MainApplication.Data.class,
+                        new String(store.read(name), StandardCharsets.UTF_8)));
+            }
+        });
+        formats.add(binary("binary", store, null, 0, false, gen, rng));
+        formats.add(binary("binary+filters", store, null, BinarySave.DEFAULT_FILTERS, false, gen, rng));
+        formats.add(binary("binary+lz", store, new LzCodec(), BinarySave.DEFAULT_FILTERS, false, gen, rng));
+        formats.add(binary("binary+deflate", store, new DeflateCodec(), BinarySave.DEFAULT_FILTERS, false, gen, rng));
+        formats.add(binary("recipe", store, null, BinarySave.DEFAULT_FILTERS, true, gen, rng));
+        formats.add(binary("recipe+lz", store, new LzCodec(), BinarySave.DEFAULT_FILTERS, true, gen, rng));
+        formats.add(new Format("channel") {
+            @Override
+            long keep(MainApplication.Data data) {
+                return store.writeData(name, data);
+            }
+
+            @Override
+            void load(MainApplication.Data data) {
+                if(!store.readData(name, data))
+                    throw new IllegalStateException("ChannelSaveStore couldn't read its own save.");
+            }
+        });
+        return formats;
+    }
+
+    private static Format binary(String name, final ChannelSaveStore store, final SaveCodec codec, final int filters,
+                                 final boolean recipe, final DungeonGenerator gen, final GWTRNG rng)
+    {
+        return new Format(name) {
+            @Override
+            long keep(MainApplication.Data data) {
+                byte[] bytes = recipe ? BinarySave.writeRecipe(data, codec, filters, null)
+                        : BinarySave.write(data, codec, filters, null);
+                store.write(this.name, bytes);
+                return bytes.length;
+            }
+
+            @Override
+            void load(MainApplication.Data data) {
+                BinarySave.readInto(store.read(this.name), codec, data, gen, rng);
+            }
+        };
+    }
+
+    /**
+     * Takes random steps with the player through {@link MainApplication.Data#step(int, int)}, bumping into walls and
+     * coloring them the same way the game does, so seen, colors, and prunedDungeon aren't just what was generated.
+     */
+    private static void play(MainApplication.Data data, GWTRNG rng, int turns)
+    {
+        for (int t = 0; t < turns; t++) {
+            final Direction d = Direction.CARDINALS[rng.nextInt(4)];
+            if(!data.step(d.deltaX, d.deltaY))
+                data.bump(data.player.x + d.deltaX, data.player.y + d.deltaY);
+        }
+        data.stateA = rng.getStateA();
+        data.stateB = rng.getStateB();
+    }
+
+    private static void run(Format format, MainApplication.Data data, int iterations, int warmup, String size,
+                            List<String> failures)
+    {
+        final MainApplication.Data loaded = new MainApplication.Data();
+        final long bytes;
+        try {
+            bytes = format.keep(data);
+            format.load(loaded);
+        } catch (RuntimeException e) {
+            failures.add(size + " " + format.name + " threw " + e);
+            System.out.println(String.format("%-16s threw %s", format.name, e));
+            return;
+        }
+        String difference = difference(data, loaded);
+        for (int i = 0; i < warmup; i++) {
+            format.keep(data);
+            format.load(loaded);
+        }
+        final long[] keepNanos = new long[iterations], loadNanos = new long[iterations];
+        final boolean counting = allocated() >= 0L;
+        long keepAllocated = 0L, loadAllocated = 0L;
+        for (int i = 0; i < iterations; i++) {
+            long allocated = allocated(), start = System.nanoTime();
+            format.keep(data);
+            keepNanos[i] = System.nanoTime() - start;
+            keepAllocated += allocated() - allocated;
+        }
+        for (int i = 0; i < iterations; i++) {
+            long allocated = allocated(), start = System.nanoTime();
+            format.load(loaded);
+            loadNanos[i] = System.nanoTime() - start;
+            loadAllocated += allocated() - allocated;
+        }
+        // loading into a Data that already has everything must give the same result as loading into an empty one
+        if(difference == null)
+            difference = difference(data, loaded);
+        if(difference != null)
+            failures.add(size + " " + format.name + " didn't load the same " + difference);
+        System.out.println(String.format("%-16s %10d %10s %10s %12s %10s %10s %12s  %s", format.name, bytes,
+                millis(percentile(keepNanos, 0.5)), millis(percentile(keepNanos, 0.99)),
+                kilobytes(counting ? keepAllocated : -1L, iterations), millis(percentile(loadNanos, 0.5)),
+                millis(percentile(loadNanos, 0.99)), kilobytes(counting ? loadAllocated : -1L, iterations),
+                difference == null ? "exact" : "differs in " + difference));
+    }
+
+    /**
+     * Gets the name of the first saved part of a Data that isn't exactly the same in b as in a, or null if they match.
+     * The generated dungeon isn't saved, so it isn't compared.
+     */
+    static String difference(MainApplication.Data a, MainApplication.Data b)
+    {
+        if(!Arrays.deepEquals(a.decoDungeon, b.decoDungeon)) return "decoDungeon";
+        if(!Arrays.deepEquals(a.bareDungeon, b.bareDungeon)) return "bareDungeon";
+        if(!Arrays.deepEquals(a.lineDungeon, b.lineDungeon)) return "lineDungeon";
+        if(!Arrays.deepEquals(a.prunedDungeon, b.prunedDungeon)) return "prunedDungeon";
+        // Float.equals and Double.equals compare bits, so -0.0 and 0.0 are different here
+        if(!Arrays.deepEquals(a.colors, b.colors)) return "colors";
+        if(!Arrays.deepEquals(a.bgColors, b.bgColors)) return "bgColors";
+        if(!Arrays.deepEquals(a.resistance, b.resistance)) return "resistance";
+        if(!Arrays.deepEquals(a.visible, b.visible)) return "visible";
+        if(!sameRegion(a.blockage, b.blockage)) return "blockage";
+        if(!sameRegion(a.seen, b.seen)) return "seen";
+        if(!sameRegion(a.currentlySeen, b.currentlySeen)) return "currentlySeen";
+        if(!sameRegion(a.floors, b.floors)) return "floors";
+        if(!a.player.equals(b.player)) return "player";
+        if(Float.floatToRawIntBits(a.cb) != Float.floatToRawIntBits(b.cb)) return "cb";
+        if(Float.floatToRawIntBits(a.cr) != Float.floatToRawIntBits(b.cr)) return "cr";
+        if(a.stateA != b.stateA || a.stateB != b.stateB) return "RNG state";
+        if(a.genStateA != b.genStateA || a.genStateB != b.genStateB) return "generation state";
+        if(a.turn != b.turn) return "turn";
+        return null;
+    }
+
+    private static boolean sameRegion(GreasedRegion a, GreasedRegion b)
+    {
+        return a.width == b.width && a.height == b.height && Arrays.equals(a.data, b.data);
+    }
+
+    private static long percentile(long[] nanos, double fraction)
+    {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1))];
+    }
+
+    /**
+     * Gets how many bytes the current thread has allocated so far, or -1 if this JVM can't tell.
+     */
+    private static long allocated()
+    {
+        if(threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1L;
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format("%.3fms", nanos / 1e6);
+    }
+
+    private static String kilobytes(long total, int iterations)
+    {
+        return total < 0 ? "n/a" : String.format("%.1fKB", total / 1024.0 / iterations);
+    }
+
+    private static void delete(Path directory) throws IOException
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
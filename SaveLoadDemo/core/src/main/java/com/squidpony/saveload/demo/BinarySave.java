@@ -0,0 +1,861 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.utils.TimeUtils;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GWTRNG;
+
+/**
+ * A versioned binary format for {@link MainApplication.Data}. The file starts with a schema header: a magic number,
+ * the format version, the map size, and a table with one entry per layer giving its id, its type, whether it was
+ * compressed, and its length before and after compression. The layers follow in the same order as the table, each
+ * one either a map-sized primitive array written raw and little-endian, a GreasedRegion written as its long words, or
+ * the few scalar values. Layers with ids this version doesn't know are skipped, so later versions can add layers.
+ * <br>
+ * Each layer can be compressed separately with a {@link SaveCodec}; the codec's id is stored in the header so a save
+ * isn't silently read with the wrong one. Before that, up to two filters can make a layer easier to compress, and are
+ * recorded in its flags: {@link #FILTER_XOR} XORs decoDungeon and colors with the dungeon as it was generated, which
+ * leaves almost nothing but zeros, and {@link #FILTER_RLE} replaces runs of the same char, float, double, or region
+ * word with one copy and a count, and is only kept for a layer if it makes it smaller. A layer that used XOR needs the
+ * dungeon generated again to be read, like a recipe save does.
+ * <br>
+ * A recipe save, from {@link #writeRecipe(MainApplication.Data, SaveCodec)}, holds only the state nothing else can be built from: the
+ * RNG state the dungeon was generated from, the cells of decoDungeon and colors that changed since then, seen, the
+ * player, and the current RNG state. Everything else is generated or derived again when it is read, which makes it a
+ * tiny fraction of the size of a full save.
+ */
+public final class BinarySave {
+    /** "SLDB" in ASCII. */
+    public static final int MAGIC = 0x42444C53;
+    public static final int VERSION = 3;
+
+    public static final int TYPE_CHARS = 1, TYPE_FLOATS = 2, TYPE_DOUBLES = 3, TYPE_REGION = 4, TYPE_VALUES = 5,
+            TYPE_DIFF = 6;
+
+    public static final int DECO = 1, BARE = 2, LINE = 3, PRUNED = 4, COLORS = 5, BG_COLORS = 6, RESISTANCE = 7,
+            VISIBLE = 8, BLOCKAGE = 9, SEEN = 10, CURRENTLY_SEEN = 11, FLOORS = 12, VALUES = 13, GENERATION = 14,
+            DECO_DIFF = 15, COLOR_DIFF = 16, TURN = 17;
+
+    private static final int[] LAYERS = {DECO, BARE, LINE, PRUNED, COLORS, BG_COLORS, RESISTANCE, VISIBLE,
+            BLOCKAGE, SEEN, CURRENTLY_SEEN, FLOORS, VALUES, GENERATION, TURN};
+
+    private static final int[] RECIPE_LAYERS = {VALUES, GENERATION, TURN, DECO_DIFF, COLOR_DIFF, SEEN};
+
+    /**
+     * Bits in each layer's flags: compressed with the codec, XORed with the generated dungeon, and run-length encoded.
+     * FILTER_XOR and FILTER_RLE can also be given to {@link #write(MainApplication.Data, SaveCodec, int, SaveReport)}
+     * to choose which filters may be used.
+     */
+    public static final int FLAG_CODEC = 1, FILTER_XOR = 2, FILTER_RLE = 4;
+    /** The filters {@link #write(MainApplication.Data, SaveCodec)} and the other short overloads use. */
+    public static final int DEFAULT_FILTERS = FILTER_XOR | FILTER_RLE;
+
+    /** Bytes in each entry of the layer table: id, type, flags, raw length, stored length. */
+    private static final int ENTRY = 11;
+
+    private BinarySave()
+    {
+    }
+
+    /**
+     * Gets the type a layer id must have, or 0 if the id isn't known.
+     */
+    public static int typeOf(int layer)
+    {
+        switch (layer)
+        {
+            case DECO:
+            case BARE:
+            case LINE:
+            case PRUNED:
+                return TYPE_CHARS;
+            case COLORS:
+            case BG_COLORS:
+                return TYPE_FLOATS;
+            case RESISTANCE:
+            case VISIBLE:
+                return TYPE_DOUBLES;
+            case BLOCKAGE:
+            case SEEN:
+            case CURRENTLY_SEEN:
+            case FLOORS:
+                return TYPE_REGION;
+            case VALUES:
+            case GENERATION:
+            case TURN:
+                return TYPE_VALUES;
+            case DECO_DIFF:
+            case COLOR_DIFF:
+                return TYPE_DIFF;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the ids of the layers a full save has, in the order it has them.
+     */
+    public static int[] fullLayers()
+    {
+        return LAYERS.clone();
+    }
+
+    /**
+     * Gets how many bytes layer {@code id} takes uncompressed in a full save of a width by height map, or -1 for a
+     * layer whose length depends on its contents.
+     */
+    public static int layerLength(int id, int width, int height)
+    {
+        switch (typeOf(id))
+        {
+            case TYPE_CHARS: return width * height << 1;
+            case TYPE_FLOATS: return width * height << 2;
+            case TYPE_DOUBLES: return width * height << 3;
+            // a GreasedRegion has one long for every 64 cells of each column, rounding up
+            case TYPE_REGION: return 8 + (width * (height + 63 >>> 6) << 3);
+        }
+        switch (id)
+        {
+            case VALUES: return 24;
+            case GENERATION: return 8;
+            case TURN: return 4;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets how many bytes make up one element of layer {@code id}, which {@link #FILTER_RLE} looks for runs of, or 0
+     * if that layer can't be run-length encoded.
+     */
+    public static int strideOf(int id)
+    {
+        switch (typeOf(id))
+        {
+            case TYPE_CHARS: return 2;
+            case TYPE_FLOATS: return 4;
+            case TYPE_DOUBLES:
+            case TYPE_REGION: return 8;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets a short name for layer {@code id}, for reports; 0 is the work of rebuilding a recipe save.
+     */
+    public static String nameOf(int id)
+    {
+        switch (id)
+        {
+            case 0: return "rebuild";
+            case DECO: return "deco";
+            case BARE: return "bare";
+            case LINE: return "line";
+            case PRUNED: return "pruned";
+            case COLORS: return "colors";
+            case BG_COLORS: return "bgColors";
+            case RESISTANCE: return "resistance";
+            case VISIBLE: return "visible";
+            case BLOCKAGE: return "blockage";
+            case SEEN: return "seen";
+            case CURRENTLY_SEEN: return "currentlySeen";
+            case FLOORS: return "floors";
+            case VALUES: return "values";
+            case GENERATION: return "generation";
+            case DECO_DIFF: return "decoDiff";
+            case COLOR_DIFF: return "colorDiff";
+            case TURN: return "turn";
+        }
+        return "layer" + id;
+    }
+
+    /**
+     * Describes a layer's flags as the filters and codec it used, such as "xor+rle+codec", or "-" for none.
+     */
+    public static String describeFlags(int flags)
+    {
+        String s = ((flags & FILTER_XOR) != 0 ? "+xor" : "") + ((flags & FILTER_RLE) != 0 ? "+rle" : "")
+                + ((flags & FLAG_CODEC) != 0 ? "+codec" : "");
+        return s.isEmpty() ? "-" : s.substring(1);
+    }
+
+    /**
+     * Writes the header and layer table of a full, uncompressed save of a width by height map. Every layer then follows
+     * it at a fixed offset, with the length {@link #layerLength(int, int, int)} gives, so a store that lays layers out
+     * itself, such as one writing through a FileChannel, can write them straight to their places and still be read by
+     * {@link #read(byte[], SaveCodec, DungeonGenerator, GWTRNG)}.
+     */
+    public static byte[] writeFullHeader(int width, int height)
+    {
+        SaveWriter out = new SaveWriter(32 + LAYERS.length * ENTRY);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(0);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeShort(LAYERS.length);
+        for (int i = 0; i < LAYERS.length; i++) {
+            final int id = LAYERS[i], length = layerLength(id, width, height);
+            out.writeByte(id);
+            out.writeByte(typeOf(id));
+            out.writeByte(0);
+            out.writeInt(length);
+            out.writeInt(length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes all of {@code data} in this format, with the {@link #DEFAULT_FILTERS}.
+     * @param data the Data to write; its stateA and stateB should already be current
+     * @param codec used to compress each layer, or null to store layers as-is
+     * @return the saved bytes
+     */
+    public static byte[] write(MainApplication.Data data, SaveCodec codec)
+    {
+        return write(data, codec, LAYERS, DEFAULT_FILTERS, null);
+    }
+
+    /**
+     * Writes all of {@code data} in this format.
+     * @param data the Data to write; its stateA and stateB should already be current
+     * @param codec used to compress each layer, or null to store layers as-is
+     * @param filters {@link #FILTER_XOR} and/or {@link #FILTER_RLE} to allow them, or 0 for neither
+     * @param report if not null, gets the size of each layer and how long it took to write
+     * @return the saved bytes
+     */
+    public static byte[] write(MainApplication.Data data, SaveCodec codec, int filters, SaveReport report)
+    {
+        return write(data, codec, LAYERS, filters, report);
+    }
+
+    /**
+     * Writes only what can't be rebuilt from the rest, with the {@link #DEFAULT_FILTERS}: see
+     * {@link #writeRecipe(MainApplication.Data, SaveCodec, int, SaveReport)}.
+     */
+    public static byte[] writeRecipe(MainApplication.Data data, SaveCodec codec)
+    {
+        return writeRecipe(data, codec, DEFAULT_FILTERS, null);
+    }
+
+    /**
+     * Writes only what can't be rebuilt from the rest: see the class docs. {@code data} must have its generatedDeco
+     * and generatedColors, which {@link MainApplication.Data#generate(DungeonGenerator, GWTRNG)} and
+     * {@link MainApplication.Data#regenerate(DungeonGenerator, GWTRNG)} fill.
+     * @param data the Data to write; its stateA and stateB should already be current
+     * @param codec used to compress each layer, or null to store layers as-is
+     * @param filters {@link #FILTER_RLE} to allow it, or 0; XOR doesn't apply to any layer a recipe save has
+     * @param report if not null, gets the size of each layer and how long it took to write
+     * @return the saved bytes
+     */
+    public static byte[] writeRecipe(MainApplication.Data data, SaveCodec codec, int filters, SaveReport report)
+    {
+        if(data.generatedDeco == null || data.generatedColors == null)
+            throw new IllegalStateException("A recipe save needs the generated dungeon to compare against.");
+        return write(data, codec, RECIPE_LAYERS, filters, report);
+    }
+
+    private static byte[] write(MainApplication.Data data, SaveCodec codec, final int[] layers, int filters,
+                                SaveReport report)
+    {
+        final int width = data.decoDungeon.length, height = data.decoDungeon[0].length;
+        SaveWriter out = new SaveWriter(layers == LAYERS ? 32 + layers.length * ENTRY + width * height * 48 : 1024);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(codec == null ? 0 : codec.id());
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeShort(layers.length);
+        final int table = out.size();
+        for (int i = 0; i < layers.length * ENTRY; i++) {
+            out.writeByte(0);
+        }
+        final SaveWriter layer = new SaveWriter(layers == LAYERS ? width * height << 3 : 1024),
+                runs = new SaveWriter(layers == LAYERS ? width * height << 3 : 1024);
+        SaveWriter base = null;
+        for (int i = 0, entry = table; i < layers.length; i++, entry += ENTRY) {
+            final int id = layers[i];
+            final long start = report == null ? 0L : TimeUtils.nanoTime();
+            layer.reset();
+            writeLayer(id, data, layer);
+            final int raw = layer.size();
+            byte[] bytes = layer.buffer();
+            int length = raw, flags = 0;
+            if((filters & FILTER_XOR) != 0 && hasBaseline(id, data))
+            {
+                if(base == null)
+                    base = new SaveWriter(raw);
+                base.reset();
+                writeBaseline(id, data, base);
+                xor(bytes, 0, base.buffer(), raw);
+                flags |= FILTER_XOR;
+            }
+            final int stride = strideOf(id);
+            if((filters & FILTER_RLE) != 0 && stride > 0)
+            {
+                runs.reset();
+                encodeRuns(bytes, length, stride, runs);
+                if(runs.size() < length)
+                {
+                    bytes = runs.buffer();
+                    length = runs.size();
+                    flags |= FILTER_RLE;
+                }
+            }
+            final int stored;
+            if(codec != null)
+            {
+                byte[] compressed = codec.encode(bytes, 0, length);
+                // the codec has to be told how long the run-length encoded bytes are before it can decompress them
+                if((flags & FILTER_RLE) != 0)
+                    out.writeInt(length);
+                out.writeBytes(compressed, 0, compressed.length);
+                flags |= FLAG_CODEC;
+                stored = compressed.length + ((flags & FILTER_RLE) != 0 ? 4 : 0);
+            }
+            else
+            {
+                out.writeBytes(bytes, 0, length);
+                stored = length;
+            }
+            out.buffer()[entry] = (byte) id;
+            out.buffer()[entry + 1] = (byte) typeOf(id);
+            out.buffer()[entry + 2] = (byte) flags;
+            out.setInt(entry + 3, raw);
+            out.setInt(entry + 7, stored);
+            if(report != null)
+                report.wrote(id, raw, stored, flags, TimeUtils.nanoTime() - start);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean hasBaseline(int id, MainApplication.Data data)
+    {
+        if(id == DECO)
+            return data.generatedDeco != null && data.generatedDeco.length == data.decoDungeon.length
+                    && data.generatedDeco[0].length == data.decoDungeon[0].length;
+        if(id == COLORS)
+            return data.generatedColors != null && data.generatedColors.length == data.colors.length
+                    && data.generatedColors[0].length == data.colors[0].length;
+        return false;
+    }
+
+    private static void writeBaseline(int id, MainApplication.Data data, SaveWriter out)
+    {
+        if(id == DECO)
+            out.writeChars(data.generatedDeco);
+        else
+            out.writeFloats(data.generatedColors);
+    }
+
+    private static void xor(byte[] bytes, int offset, byte[] baseline, int length)
+    {
+        for (int i = 0; i < length; i++) {
+            bytes[offset + i] ^= baseline[i];
+        }
+    }
+
+    /**
+     * Run-length encodes length bytes, in elements of stride bytes. Each control byte under 128 is followed by that
+     * many plus one elements to copy as-is; one of 128 or more is followed by one element to repeat that many minus
+     * 125 times, so runs of 3 to 130 are worth encoding.
+     */
+    private static void encodeRuns(byte[] bytes, int length, int stride, SaveWriter out)
+    {
+        final int units = length / stride;
+        int i = 0, literals = 0;
+        while (i < units) {
+            int run = 1;
+            while (i + run < units && run < 130 && sameUnit(bytes, i * stride, (i + run) * stride, stride))
+                run++;
+            if(run >= 3)
+            {
+                writeLiterals(bytes, literals, i, stride, out);
+                out.writeByte(run + 125);
+                out.writeBytes(bytes, i * stride, stride);
+                i += run;
+                literals = i;
+            }
+            else if(++i - literals == 128)
+            {
+                writeLiterals(bytes, literals, i, stride, out);
+                literals = i;
+            }
+        }
+        writeLiterals(bytes, literals, units, stride, out);
+    }
+
+    private static boolean sameUnit(byte[] bytes, int a, int b, int stride)
+    {
+        for (int i = 0; i < stride; i++) {
+            if(bytes[a + i] != bytes[b + i])
+                return false;
+        }
+        return true;
+    }
+
+    private static void writeLiterals(byte[] bytes, int start, int end, int stride, SaveWriter out)
+    {
+        if(end > start)
+        {
+            out.writeByte(end - start - 1);
+            out.writeBytes(bytes, start * stride, (end - start) * stride);
+        }
+    }
+
+    private static void decodeRuns(byte[] stored, int offset, int length, int stride, byte[] into, int rawLength)
+    {
+        final int end = offset + length;
+        int p = offset, o = 0;
+        while (p < end) {
+            final int control = stored[p++] & 0xFF;
+            if(control < 128)
+            {
+                final int n = (control + 1) * stride;
+                if(p + n > end || o + n > rawLength)
+                    throw new IllegalStateException("Saved state layer is corrupt.");
+                System.arraycopy(stored, p, into, o, n);
+                p += n;
+                o += n;
+            }
+            else
+            {
+                final int n = control - 125;
+                if(p + stride > end || o + n * stride > rawLength)
+                    throw new IllegalStateException("Saved state layer is corrupt.");
+                for (int r = 0; r < n; r++, o += stride) {
+                    System.arraycopy(stored, p, into, o, stride);
+                }
+                p += stride;
+            }
+        }
+        if(o != rawLength)
+            throw new IllegalStateException("Saved state layer is corrupt.");
+    }
+
+    /**
+     * Writes one layer of {@code data} uncompressed, as it appears in this format.
+     */
+    public static void writeLayer(int id, MainApplication.Data data, SaveWriter out)
+    {
+        switch (id)
+        {
+            case DECO: out.writeChars(data.decoDungeon);
+                break;
+            case BARE: out.writeChars(data.bareDungeon);
+                break;
+            case LINE: out.writeChars(data.lineDungeon);
+                break;
+            case PRUNED: out.writeChars(data.prunedDungeon);
+                break;
+            case COLORS: out.writeFloats(data.colors);
+                break;
+            case BG_COLORS: out.writeFloats(data.bgColors);
+                break;
+            case RESISTANCE: out.writeDoubles(data.resistance);
+                break;
+            case VISIBLE: out.writeDoubles(data.visible);
+                break;
+            case BLOCKAGE: out.writeRegion(data.blockage);
+                break;
+            case SEEN: out.writeRegion(data.seen);
+                break;
+            case CURRENTLY_SEEN: out.writeRegion(data.currentlySeen);
+                break;
+            case FLOORS: out.writeRegion(data.floors);
+                break;
+            case VALUES:
+                out.writeInt(data.player.x);
+                out.writeInt(data.player.y);
+                out.writeFloat(data.cb);
+                out.writeFloat(data.cr);
+                out.writeInt(data.stateA);
+                out.writeInt(data.stateB);
+                break;
+            case GENERATION:
+                out.writeInt(data.genStateA);
+                out.writeInt(data.genStateB);
+                break;
+            case TURN: out.writeInt(data.turn);
+                break;
+            case DECO_DIFF: {
+                final char[][] now = data.decoDungeon, then = data.generatedDeco;
+                final int position = out.size();
+                int count = 0;
+                out.writeInt(0);
+                for (int x = 0, i = 0; x < now.length; x++) {
+                    for (int y = 0; y < now[x].length; y++, i++) {
+                        if(now[x][y] != then[x][y])
+                        {
+                            out.writeInt(i);
+                            out.writeInt(now[x][y]);
+                            count++;
+                        }
+                    }
+                }
+                out.setInt(position, count);
+                break;
+            }
+            case COLOR_DIFF: {
+                final float[][] now = data.colors, then = data.generatedColors;
+                final int position = out.size();
+                int count = 0;
+                out.writeInt(0);
+                for (int x = 0, i = 0; x < now.length; x++) {
+                    for (int y = 0; y < now[x].length; y++, i++) {
+                        if(now[x][y] != then[x][y])
+                        {
+                            out.writeInt(i);
+                            out.writeFloat(now[x][y]);
+                            count++;
+                        }
+                    }
+                }
+                out.setInt(position, count);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Checks whether {@code bytes} starts like a save in this format, without reading any further.
+     */
+    public static boolean isBinary(byte[] bytes)
+    {
+        return bytes != null && bytes.length >= 8 && new SaveReader(bytes).readInt() == MAGIC;
+    }
+
+    /**
+     * Reads a save in this format into a new Data; see
+     * {@link #readInto(byte[], SaveCodec, MainApplication.Data, DungeonGenerator, GWTRNG)}.
+     * @return a new Data holding everything that was saved
+     * @throws IllegalStateException if the bytes aren't a valid save, or need a different codec
+     */
+    public static MainApplication.Data read(byte[] bytes, SaveCodec codec, DungeonGenerator gen, GWTRNG rng)
+            throws IllegalStateException
+    {
+        MainApplication.Data data = new MainApplication.Data();
+        readInto(bytes, codec, data, gen, rng);
+        return data;
+    }
+
+    /**
+     * Reads a save in this format straight into {@code data}; see
+     * {@link #readInto(byte[], SaveCodec, MainApplication.Data, DungeonGenerator, GWTRNG, SaveReport)}.
+     */
+    public static void readInto(byte[] bytes, SaveCodec codec, MainApplication.Data data, DungeonGenerator gen,
+                                GWTRNG rng) throws IllegalStateException
+    {
+        readInto(bytes, codec, data, gen, rng, null);
+    }
+
+    /**
+     * Reads a save in this format straight into {@code data}, filling the arrays and GreasedRegions it already has
+     * when they are the right size, so loading doesn't make a second Data or copy one into another. Layers stored
+     * as-is are read from where they are in bytes; filtered or compressed ones are undone into buffers that are reused
+     * for every layer and every load, so this should only be called from one thread at a time. A recipe save, or a full
+     * save with XORed layers, has its dungeon generated again with {@code gen} and {@code rng}; rng is left in the
+     * state it started in.
+     * <br>
+     * The header and layer table are checked before anything in data changes, so a save with the wrong version or
+     * codec, that ends early, or that is missing layers leaves data as it was. Damage inside a layer, such as stored
+     * bytes that don't decompress, is only found while reading it, and leaves data partly loaded.
+     * @param bytes the saved bytes
+     * @param codec the codec the save was written with, or null if it was written without one; an {@link LzCodec}
+     *              save can always be read
+     * @param data the Data to read into
+     * @param gen the DungeonGenerator the dungeon was first generated with, constructed with rng
+     * @param rng the RNG gen uses
+     * @param report if not null, gets the size of each layer and how long it took to read
+     * @throws IllegalStateException if the bytes aren't a valid save, or need a different codec
+     */
+    public static void readInto(byte[] bytes, SaveCodec codec, MainApplication.Data data, DungeonGenerator gen,
+                                GWTRNG rng, SaveReport report) throws IllegalStateException
+    {
+        SaveReader in = new SaveReader(bytes);
+        if(in.readInt() != MAGIC)
+            throw new IllegalStateException("Saved state is not in the binary format.");
+        final int version = in.readInt();
+        if(version < 1 || version > VERSION)
+            throw new IllegalStateException("Saved state has unknown version " + version + ".");
+        final int codecId = in.readByte();
+        final int width = in.readInt(), height = in.readInt(), count = in.readShort();
+        if(width <= 0 || height <= 0)
+            throw new IllegalStateException("Saved state has a bad map size.");
+        final SaveCodec decoder = codecFor(codecId, codec);
+        final int[] ids = new int[count], flags = new int[count], rawLengths = new int[count],
+                storedLengths = new int[count], starts = new int[count], at = new int[256];
+        for (int i = 0; i < 256; i++) {
+            at[i] = -1;
+        }
+        boolean xored = false;
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readByte();
+            final int type = in.readByte();
+            flags[i] = in.readByte();
+            rawLengths[i] = in.readInt();
+            storedLengths[i] = in.readInt();
+            if(typeOf(ids[i]) == 0)
+                continue;
+            if(type != typeOf(ids[i]))
+                throw new IllegalStateException("Saved state has layer " + ids[i] + " with the wrong type.");
+            final int expected = layerLength(ids[i], width, height);
+            // a layer that is stored as-is or only XORed takes exactly as many bytes as it has
+            if(rawLengths[i] < 0 || (expected >= 0 && rawLengths[i] != expected)
+                    || ((flags[i] & ~FILTER_XOR) == 0 && storedLengths[i] != rawLengths[i]))
+                throw new IllegalStateException("Saved state has layer " + ids[i] + " with the wrong length.");
+            if((flags[i] & ~(FLAG_CODEC | FILTER_XOR | FILTER_RLE)) != 0
+                    || ((flags[i] & FILTER_RLE) != 0 && strideOf(ids[i]) == 0)
+                    || ((flags[i] & FILTER_XOR) != 0 && ids[i] != DECO && ids[i] != COLORS))
+                throw new IllegalStateException("Saved state has layer " + ids[i] + " with unknown filters.");
+            if((flags[i] & FLAG_CODEC) != 0 && decoder == null)
+                throw new IllegalStateException("Saved state needs codec " + codecId + " to load.");
+            xored |= (flags[i] & FILTER_XOR) != 0;
+            at[ids[i]] = i;
+        }
+        for (int i = 0; i < count; i++) {
+            starts[i] = in.position();
+            in.skip(storedLengths[i]);
+        }
+        boolean full = at[VALUES] >= 0;
+        for (int id = DECO; id <= FLOORS; id++) {
+            full &= at[id] >= 0;
+        }
+        final boolean recipe = !full && at[VALUES] >= 0 && at[GENERATION] >= 0 && at[DECO_DIFF] >= 0
+                && at[COLOR_DIFF] >= 0 && at[SEEN] >= 0;
+        if(!full && !recipe)
+            throw new IllegalStateException("Saved state is missing layers.");
+        if((recipe || xored) && (gen == null || rng == null || at[GENERATION] < 0))
+            throw new IllegalStateException("A recipe or XORed save needs a DungeonGenerator to load.");
+
+        data.ensureLayers(width, height);
+        final LayerBuffers buffers = new LayerBuffers();
+        // anything the save doesn't have belongs to whatever data held before, so it is cleared
+        data.generatedDeco = null;
+        data.generatedColors = null;
+        data.genStateA = 0;
+        data.genStateB = 0;
+        data.turn = 0;
+        if(full) {
+            if(xored)
+            {
+                // the XORed layers need the generated dungeon, which needs the generation state read first
+                final int g = at[GENERATION];
+                readLayer(GENERATION, data, layer(bytes, decoder, GENERATION, starts[g], flags[g], storedLengths[g],
+                        rawLengths[g], null, buffers, report), width, height);
+                final long start = report == null ? 0L : TimeUtils.nanoTime();
+                data.regenerate(gen, rng);
+                if(data.generatedDeco.length != width || data.generatedDeco[0].length != height)
+                    throw new IllegalStateException("Saved state was generated with a different map size.");
+                if(report != null)
+                    report.read(0, 0, 0, 0, TimeUtils.nanoTime() - start);
+            }
+            for (int i = 0; i < count; i++) {
+                final int id = ids[i];
+                if(typeOf(id) != 0 && typeOf(id) != TYPE_DIFF && !(xored && id == GENERATION))
+                    readLayer(id, data, layer(bytes, decoder, id, starts[i], flags[i], storedLengths[i],
+                            rawLengths[i], data, buffers, report), width, height);
+            }
+        }
+        else {
+            for (int id : RECIPE_LAYERS) {
+                final int i = at[id];
+                if(i >= 0 && typeOf(id) != TYPE_DIFF)
+                    readLayer(id, data, layer(bytes, decoder, id, starts[i], flags[i], storedLengths[i],
+                            rawLengths[i], data, buffers, report), width, height);
+            }
+            rebuild(data, bytes, decoder, starts, flags, storedLengths, rawLengths, at[DECO_DIFF], at[COLOR_DIFF],
+                    gen, rng, width, height, buffers, report);
+        }
+    }
+
+    /**
+     * Any save compressed with an {@link LzCodec} can be read with this one, since decoding keeps no state.
+     */
+    private static final LzCodec LZ = new LzCodec();
+
+    private static SaveCodec codecFor(int codecId, SaveCodec codec)
+    {
+        if(codec != null && codec.id() == codecId)
+            return codec;
+        return codecId == LzCodec.ID ? LZ : null;
+    }
+
+    /**
+     * Somewhere for decompressing and undoing the filters to put the bytes of each layer while one save is read. These
+     * grow to fit the largest layer read so far and are reused for the rest of that save, but each read gets its own,
+     * so saves can be read on more than one thread and nothing stays allocated after a read.
+     */
+    private static final class LayerBuffers {
+        byte[] scratch = new byte[0], runs = new byte[0];
+        final SaveWriter baseline = new SaveWriter(1024);
+    }
+
+    /**
+     * Undoes the compression and filters on one stored layer and gets a reader over its raw bytes, without changing
+     * {@code bytes}. {@code data} needs its generated dungeon if the layer was XORed.
+     */
+    private static SaveReader layer(byte[] bytes, SaveCodec codec, int id, int start, int flags, int stored, int raw,
+                                    MainApplication.Data data, LayerBuffers buffers, SaveReport report)
+    {
+        final long time = report == null ? 0L : TimeUtils.nanoTime();
+        SaveReader reader;
+        if(flags == 0)
+            reader = new SaveReader(bytes, start, stored);
+        else
+        {
+            byte[] current = bytes;
+            int offset = start, length = stored;
+            if((flags & FLAG_CODEC) != 0)
+            {
+                if((flags & FILTER_RLE) != 0)
+                {
+                    // the length of the run-length encoded bytes, which is what the codec decompresses to
+                    if(stored < 4)
+                        throw new IllegalStateException("Saved state layer is corrupt.");
+                    length = new SaveReader(bytes, start, 4).readInt();
+                    if(length < 0)
+                        throw new IllegalStateException("Saved state layer is corrupt.");
+                    offset += 4;
+                    stored -= 4;
+                }
+                else
+                    length = raw;
+                if(buffers.scratch.length < length)
+                    buffers.scratch = new byte[length];
+                codec.decode(bytes, offset, stored, buffers.scratch, length);
+                current = buffers.scratch;
+                offset = 0;
+            }
+            if((flags & FILTER_RLE) != 0)
+            {
+                if(buffers.runs.length < raw)
+                    buffers.runs = new byte[raw];
+                decodeRuns(current, offset, length, strideOf(id), buffers.runs, raw);
+                current = buffers.runs;
+                offset = 0;
+            }
+            else if(current == bytes)
+            {
+                // only XORed, which mustn't change the bytes that were passed in
+                if(buffers.scratch.length < raw)
+                    buffers.scratch = new byte[raw];
+                System.arraycopy(bytes, start, buffers.scratch, 0, raw);
+                current = buffers.scratch;
+                offset = 0;
+            }
+            if((flags & FILTER_XOR) != 0)
+            {
+                buffers.baseline.reset();
+                writeBaseline(id, data, buffers.baseline);
+                xor(current, offset, buffers.baseline.buffer(), raw);
+            }
+            reader = new SaveReader(current, offset, raw);
+        }
+        if(report != null)
+            report.read(id, raw, stored + ((flags & FLAG_CODEC) != 0 && (flags & FILTER_RLE) != 0 ? 4 : 0), flags,
+                    TimeUtils.nanoTime() - time);
+        return reader;
+    }
+
+    /**
+     * Reads one uncompressed layer, as written by {@link #writeLayer(int, MainApplication.Data, SaveWriter)}, into
+     * {@code data}, filling its arrays and GreasedRegions in place; map-sized layers need
+     * {@link MainApplication.Data#ensureLayers(int, int)} to have been called with the same size first. The diff
+     * layers of a recipe save can't be read alone and are skipped.
+     */
+    public static void readLayer(int id, MainApplication.Data data, SaveReader in, int width, int height)
+    {
+        switch (id)
+        {
+            case DECO: in.readChars(data.decoDungeon);
+                break;
+            case BARE: in.readChars(data.bareDungeon);
+                break;
+            case LINE: in.readChars(data.lineDungeon);
+                break;
+            case PRUNED: in.readChars(data.prunedDungeon);
+                break;
+            case COLORS: in.readFloats(data.colors);
+                break;
+            case BG_COLORS: in.readFloats(data.bgColors);
+                break;
+            case RESISTANCE: in.readDoubles(data.resistance);
+                break;
+            case VISIBLE: in.readDoubles(data.visible);
+                break;
+            case BLOCKAGE: data.blockage = in.readRegion(data.blockage);
+                break;
+            case SEEN: data.seen = in.readRegion(data.seen);
+                break;
+            case CURRENTLY_SEEN: data.currentlySeen = in.readRegion(data.currentlySeen);
+                break;
+            case FLOORS: data.floors = in.readRegion(data.floors);
+                break;
+            case VALUES:
+                data.player = Coord.get(in.readInt(), in.readInt());
+                data.cb = in.readFloat();
+                data.cr = in.readFloat();
+                data.stateA = in.readInt();
+                data.stateB = in.readInt();
+                break;
+            case GENERATION:
+                data.genStateA = in.readInt();
+                data.genStateB = in.readInt();
+                break;
+            case TURN: data.turn = in.readInt();
+                break;
+        }
+    }
+
+    /**
+     * Generates the dungeon of a recipe save again into data's arrays, applies the changed cells, and derives every
+     * other layer. The two diff layers are read one after the other, since they may share the decompression buffer.
+     */
+    private static void rebuild(MainApplication.Data data, byte[] bytes, SaveCodec codec, int[] starts, int[] flags,
+                                int[] storedLengths, int[] rawLengths, int decoDiffAt, int colorDiffAt,
+                                DungeonGenerator gen, GWTRNG rng, int width, int height, LayerBuffers buffers,
+                                SaveReport report)
+    {
+        final long start = report == null ? 0L : TimeUtils.nanoTime(),
+                diffs = report == null ? 0L : report.readNanos[DECO_DIFF] + report.readNanos[COLOR_DIFF];
+        data.regenerate(gen, rng);
+        final char[][] generatedBare = gen.getBareDungeon();
+        if(data.generatedDeco.length != width || data.generatedDeco[0].length != height)
+            throw new IllegalStateException("Saved state was generated with a different map size.");
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(data.generatedDeco[x], 0, data.decoDungeon[x], 0, height);
+            System.arraycopy(generatedBare[x], 0, data.bareDungeon[x], 0, height);
+        }
+        final int cells = width * height;
+        SaveReader decoDiff = layer(bytes, codec, DECO_DIFF, starts[decoDiffAt], flags[decoDiffAt],
+                storedLengths[decoDiffAt], rawLengths[decoDiffAt], data, buffers, report);
+        for (int n = decoDiff.readInt(); n > 0; n--) {
+            final int i = decoDiff.readInt();
+            final char c = (char) decoDiff.readInt();
+            if(i < 0 || i >= cells)
+                throw new IllegalStateException("Saved state has a changed cell outside the map.");
+            data.decoDungeon[i / height][i % height] = c;
+            // bareDungeon only has walls as '#' and everything else as '.'
+            data.bareDungeon[i / height][i % height] = c == '#' ? '#' : '.';
+        }
+        data.floors.refill(data.bareDungeon, '.');
+        data.derive();
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(data.generatedColors[x], 0, data.colors[x], 0, height);
+        }
+        SaveReader colorDiff = layer(bytes, codec, COLOR_DIFF, starts[colorDiffAt], flags[colorDiffAt],
+                storedLengths[colorDiffAt], rawLengths[colorDiffAt], data, buffers, report);
+        for (int n = colorDiff.readInt(); n > 0; n--) {
+            final int i = colorDiff.readInt();
+            final float f = colorDiff.readFloat();
+            if(i < 0 || i >= cells)
+                throw new IllegalStateException("Saved state has a changed cell outside the map.");
+            data.colors[i / height][i % height] = f;
+        }
+        if(report != null)
+        {
+            // the time spent reading the diffs is already counted under their own layers
+            report.read(0, 0, 0, 0, TimeUtils.nanoTime() - start
+                    - (report.readNanos[DECO_DIFF] + report.readNanos[COLOR_DIFF] - diffs));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.squidpony.saveload.demo;
+
+/**
+ * A {@link SaveStore} that can also write a full, uncompressed save of a {@link MainApplication.Data} itself and read
+ * one straight into the arrays of an existing Data, without the whole save ever being in a byte array. The saves are
+ * still in {@link BinarySave}'s format, laid out with {@link BinarySave#writeFullHeader(int, int)}, so
+ * {@link #read(String)} can read them as bytes too.
+ */
+public interface DirectSaveStore extends SaveStore {
+    /**
+     * Writes all of {@code data} under {@code name} as a full, uncompressed save, replacing anything already there.
+     * @return how many bytes were written
+     * @throws IllegalStateException if the save couldn't be written
+     */
+    long writeData(String name, MainApplication.Data data);
+
+    /**
+     * Reads the full, uncompressed save under {@code name} into {@code data}, reusing its arrays when they have the
+     * right size. Nothing in data changes if this returns false.
+     * @return true if it was read, or false if there is no such save or it isn't full and uncompressed, such as a
+     *         recipe save, in which case {@link #read(String)} should be used with {@link BinarySave} instead
+     * @throws IllegalStateException if the save is damaged
+     */
+    boolean readData(String name, MainApplication.Data data);
+}
@@ -0,0 +1,138 @@
+package com.squidpony.saveload.demo;
+
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 codec in plain Java, so saves can be compressed on GWT too, where java.util.zip isn't available. It
+ * compresses less than Deflate but is several times faster, and the run-length and XOR filters in {@link BinarySave}
+ * already take care of most of the redundancy in a save.
+ * <br>
+ * The format is like an LZ4 block: a series of sequences, each a token byte whose high four bits are how many literal
+ * bytes follow and whose low four bits are the length of the match after them minus 4, with 15 in either meaning more
+ * length follows as bytes of 255 and then one smaller byte. The literal bytes come next, then the distance back to
+ * the match as 2 little-endian bytes, then any more match length. The last sequence has only literals, possibly none.
+ * <br>
+ * Encoding reuses a hash table, so one LzCodec shouldn't encode on two threads at once; decoding keeps no state.
+ */
+public class LzCodec implements SaveCodec {
+    public static final int ID = 2;
+
+    private static final int HASH_BITS = 14, MIN_MATCH = 4, MAX_DISTANCE = 0xFFFF;
+
+    private final int[] table = new int[1 << HASH_BITS];
+    private byte[] buffer = new byte[8192];
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(byte[] raw, int offset, int length) {
+        // the worst case is all literals, which adds one byte for every 255 plus the token
+        final int capacity = length + length / 255 + 16;
+        if(buffer.length < capacity)
+            buffer = new byte[capacity];
+        final byte[] out = buffer;
+        final int[] table = this.table;
+        Arrays.fill(table, -1);
+        final int end = offset + length;
+        int p = offset, anchor = offset, o = 0;
+        while (p <= end - MIN_MATCH) {
+            final int seq = readInt(raw, p);
+            final int h = (seq * 0x9E3779B1) >>> 32 - HASH_BITS;
+            final int ref = table[h];
+            table[h] = p;
+            if(ref >= 0 && p - ref <= MAX_DISTANCE && readInt(raw, ref) == seq)
+            {
+                int match = MIN_MATCH;
+                while (p + match < end && raw[ref + match] == raw[p + match])
+                    match++;
+                final int token = o;
+                o = sequence(raw, anchor, p - anchor, out, o);
+                out[token] |= Math.min(match - MIN_MATCH, 15);
+                out[o++] = (byte) (p - ref);
+                out[o++] = (byte) (p - ref >>> 8);
+                if(match - MIN_MATCH >= 15)
+                    o = extend(match - MIN_MATCH - 15, out, o);
+                p += match;
+                anchor = p;
+            }
+            else
+                // skips ahead faster the longer it has gone without a match, so data that won't compress is quick
+                p += 1 + (p - anchor >>> 6);
+        }
+        o = sequence(raw, anchor, end - anchor, out, o);
+        return Arrays.copyOf(out, o);
+    }
+
+    @Override
+    public void decode(byte[] stored, int offset, int length, byte[] into, int rawLength) {
+        final int end = offset + length;
+        int p = offset, o = 0;
+        try {
+            while (true) {
+                final int token = stored[p++] & 0xFF;
+                int literals = token >>> 4;
+                if(literals == 15) {
+                    int b;
+                    do {
+                        literals += b = stored[p++] & 0xFF;
+                    } while (b == 255);
+                }
+                if(p + literals > end || o + literals > rawLength)
+                    throw new IllegalStateException("Saved state layer is corrupt.");
+                System.arraycopy(stored, p, into, o, literals);
+                p += literals;
+                o += literals;
+                if(p == end)
+                    break;
+                final int distance = (stored[p++] & 0xFF) | (stored[p++] & 0xFF) << 8;
+                int match = token & 15;
+                if(match == 15) {
+                    int b;
+                    do {
+                        match += b = stored[p++] & 0xFF;
+                    } while (b == 255);
+                }
+                match += MIN_MATCH;
+                if(distance == 0 || distance > o || o + match > rawLength)
+                    throw new IllegalStateException("Saved state layer is corrupt.");
+                // byte by byte, since a match can overlap the bytes it is copying
+                for (int r = o - distance, e = o + match; o < e; ) {
+                    into[o++] = into[r++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Saved state layer is truncated.", e);
+        }
+        if(o != rawLength)
+            throw new IllegalStateException("Saved state layer is corrupt.");
+    }
+
+    private static int readInt(byte[] b, int p)
+    {
+        return (b[p] & 0xFF) | (b[p + 1] & 0xFF) << 8 | (b[p + 2] & 0xFF) << 16 | b[p + 3] << 24;
+    }
+
+    /**
+     * Writes a token with the given number of literals and no match length yet, then the literals themselves.
+     */
+    private static int sequence(byte[] raw, int start, int literals, byte[] out, int o)
+    {
+        out[o++] = (byte) (Math.min(literals, 15) << 4);
+        if(literals >= 15)
+            o = extend(literals - 15, out, o);
+        System.arraycopy(raw, start, out, o, literals);
+        return o + literals;
+    }
+
+    private static int extend(int n, byte[] out, int o)
+    {
+        for (; n >= 255; n -= 255) {
+            out[o++] = (byte) 255;
+        }
+        out[o++] = (byte) n;
+        return o;
+    }
+}
@@ -22,6 +22,7 @@ import squidpony.squidmath.GreasedRegion;
 import squidpony.store.json.JsonConverter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The main class of the game, constructed once in each of the platform-specific Launcher classes. Doesn't use any
@@ -69,14 +70,297 @@ public class MainApplication extends ApplicationAdapter {
         public GreasedRegion blockage, seen, currentlySeen;
         public GreasedRegion floors;
         public int stateA, stateB;
+        // turn counts every move or bump the player has made, so a journal of per-turn changes knows which turns a save
+        // already includes.
+        public int turn;
+        // genStateA and genStateB are the RNG state just before decoDungeon was generated, so the same dungeon can be
+        // generated again. generatedDeco and generatedColors are what decoDungeon and colors were right after that, so
+        // a save only needs the cells that changed since; they aren't saved themselves.
+        public int genStateA, genStateB;
+        public transient char[][] generatedDeco;
+        public transient float[][] generatedColors;
+        // true once snapshot() has handed out the layers that are only ever replaced, never written in place, so set()
+        // must replace them too instead of copying into them.
+        private transient boolean shared;
         public Data()
         {
         }
 
+        /**
+         * Makes a copy of this Data that stays the same while this one keeps changing, for saving on another thread.
+         * Layers gameplay writes to in place (prunedDungeon, colors, visible, and the GreasedRegions) are copied, and
+         * the rest are shared; this Data then replaces those shared layers rather than writing into them.
+         */
+        public Data snapshot()
+        {
+            Data s = new Data();
+            s.decoDungeon = decoDungeon;
+            s.bareDungeon = bareDungeon;
+            s.lineDungeon = lineDungeon;
+            s.bgColors = bgColors;
+            s.resistance = resistance;
+            s.generatedDeco = generatedDeco;
+            s.generatedColors = generatedColors;
+            s.prunedDungeon = ArrayTools.copy(prunedDungeon);
+            s.colors = ArrayTools.copy(colors);
+            s.visible = ArrayTools.copy(visible);
+            s.blockage = blockage.copy();
+            s.seen = seen.copy();
+            s.currentlySeen = currentlySeen.copy();
+            s.floors = floors.copy();
+            s.player = player;
+            s.cb = cb;
+            s.cr = cr;
+            s.stateA = stateA;
+            s.stateB = stateB;
+            s.turn = turn;
+            s.genStateA = genStateA;
+            s.genStateB = genStateB;
+            shared = true;
+            return s;
+        }
+
+        /**
+         * Generates a new dungeon with {@code gen}, which must have been constructed with {@code rng}, places the
+         * player on a random floor, and builds every derived layer with {@link #derive()}. The state of rng just before
+         * generating is kept in genStateA and genStateB, so {@link BinarySave#writeRecipe(Data, SaveCodec)} can store
+         * just that instead of the dungeon.
+         */
+        public void generate(DungeonGenerator gen, GWTRNG rng)
+        {
+            genStateA = rng.getStateA();
+            genStateB = rng.getStateB();
+            //decoDungeon is given the dungeon with any decorations we specified. (Here, we didn't, unless you chose to add
+            //water to the dungeon. In that case, decoDungeon will have different contents than bareDungeon, next.)
+            decoDungeon = gen.generate();
+            bareDungeon = gen.getBareDungeon();
+            generatedDeco = ArrayTools.copy(decoDungeon);
+            // Here we fill a GreasedRegion so it stores the cells that contain a floor, the '.' char, as "on."
+            if(floors == null)
+                floors = new GreasedRegion(bareDungeon, '.');
+            else
+                floors.refill(bareDungeon, '.');
+            //player is, here, just a Coord that stores his position. In a real game, you would probably have a class for
+            //creatures, and possibly a subclass for the player. The singleRandom() method on GreasedRegion finds one Coord
+            // in that region that is "on," or -1,-1 if there are no such cells. It takes an RNG object as a parameter, and
+            // if you gave a seed to the RNG constructor, then the cell this chooses will be reliable for testing. If you
+            // don't seed the RNG, any valid cell should be possible.
+            player = floors.singleRandom(rng);
+            turn = 0;
+            if(seen != null)
+                seen.clear();
+            derive();
+            generatedColors = ArrayTools.copy(colors);
+        }
+
+        /**
+         * Generates the dungeon from genStateA and genStateB again, storing it in generatedDeco and its default colors
+         * in generatedColors. Nothing else in this Data changes, and rng is left in the state it started in. The
+         * bareDungeon that goes with generatedDeco can be had from {@code gen.getBareDungeon()} until gen generates
+         * again.
+         * @param gen the same DungeonGenerator that first generated the dungeon, which must have been constructed with rng
+         * @param rng the RNG gen uses
+         */
+        public void regenerate(DungeonGenerator gen, GWTRNG rng)
+        {
+            final int a = rng.getStateA(), b = rng.getStateB();
+            rng.setState(genStateA, genStateB);
+            generatedDeco = ArrayTools.copy(gen.generate());
+            generatedColors = MapUtility.generateDefaultColorsFloat(generatedDeco);
+            rng.setState(a, b);
+        }
+
+        /**
+         * Builds every layer that depends only on decoDungeon, player, and seen: lineDungeon, resistance, colors,
+         * bgColors, visible, blockage, currentlySeen, and prunedDungeon. Whatever is currently seen is added to seen,
+         * which is created if it is null. floors and bareDungeon aren't touched. Layers that already have the right
+         * size, and aren't shared with a snapshot, are filled in place.
+         */
+        public void derive()
+        {
+            final int w = decoDungeon.length, h = decoDungeon[0].length;
+            // SquidLib has no way to draw the wall lines into an existing array, so this is the one new layer
+            lineDungeon = DungeonUtility.hashesToLines(decoDungeon);
+            if(colors == null || colors.length != w || colors[0].length != h)
+                colors = new float[w][h];
+            // bgColors and resistance are only ever replaced while a snapshot shares them, never written in place
+            if(shared || bgColors == null || bgColors.length != w || bgColors[0].length != h)
+                bgColors = new float[w][h];
+            if(shared || resistance == null || resistance.length != w || resistance[0].length != h)
+                resistance = new double[w][h];
+            fillCellLayers(w, h);
+            if(visible == null || visible.length != w || visible[0].length != h)
+                visible = new double[w][h];
+            if(blockage == null || blockage.width != w || blockage.height != h)
+                blockage = new GreasedRegion(w, h);
+            if(currentlySeen == null || currentlySeen.width != w || currentlySeen.height != h)
+                currentlySeen = new GreasedRegion(w, h);
+            if(seen == null || seen.width != w || seen.height != h)
+                seen = new GreasedRegion(w, h);
+            // prunedDungeon starts with the full lineDungeon, which includes features like water and grass but also stores
+            // all walls as box-drawing characters. The issue with using lineDungeon as-is is that a character like '┬' may
+            // be used because there are walls to the east, west, and south of it, even when the player is to the north of
+            // that cell and so has never seen the southern connecting wall, and would have no reason to know it is there.
+            // refreshView() calls LineKit.pruneLines() to adjust prunedDungeon to hold a variant on lineDungeon that removes
+            // any line segments that haven't ever been visible.
+            if(prunedDungeon == null || prunedDungeon.length != w || prunedDungeon[0].length != h)
+                prunedDungeon = ArrayTools.copy(lineDungeon);
+            else {
+                for (int x = 0; x < w; x++) {
+                    System.arraycopy(lineDungeon[x], 0, prunedDungeon[x], 0, h);
+                }
+            }
+            refreshView();
+        }
+
+        /**
+         * Fills colors, bgColors, and resistance from decoDungeon, the same as MapUtility's generateDefaultColorsFloat()
+         * and generateDefaultBGColorsFloat() and DungeonUtility's generateResistances() would. Those only look at each
+         * cell's own char, so they are given a map with one cell per distinct char, and their results are copied into
+         * the existing layers.
+         */
+        private void fillCellLayers(int w, int h)
+        {
+            char[] chars = new char[16];
+            int count = 0;
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    if(indexOf(chars, count, decoDungeon[x][y]) < 0)
+                    {
+                        if(count == chars.length)
+                            chars = Arrays.copyOf(chars, count << 1);
+                        chars[count++] = decoDungeon[x][y];
+                    }
+                }
+            }
+            final char[][] probe = new char[count][1];
+            for (int i = 0; i < count; i++) {
+                probe[i][0] = chars[i];
+            }
+            final float[][] fg = MapUtility.generateDefaultColorsFloat(probe),
+                    bg = MapUtility.generateDefaultBGColorsFloat(probe);
+            final double[][] res = DungeonUtility.generateResistances(probe);
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    final int i = indexOf(chars, count, decoDungeon[x][y]);
+                    colors[x][y] = fg[i][0];
+                    bgColors[x][y] = bg[i][0];
+                    resistance[x][y] = res[i][0];
+                }
+            }
+        }
+
+        private static int indexOf(char[] chars, int count, char c)
+        {
+            for (int i = 0; i < count; i++) {
+                if(chars[i] == c)
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Updates what can be seen from where the player is now: visible, blockage, currentlySeen, and prunedDungeon,
+         * adding whatever is currently seen to seen. This is everything that changes when the player moves.
+         */
+        public void refreshView()
+        {
+            // Uses shadowcasting FOV and reuses the visible array without creating new arrays constantly.
+            FOV.reuseFOV(resistance, visible, player.x, player.y, 9.0, Radius.CIRCLE);
+            // This is just like the constructor for GreasedRegion that takes a double[][], but affects an existing
+            // GreasedRegion without making a new one just for this movement.
+            blockage.refill(visible, 0.0);
+            seen.or(currentlySeen.remake(blockage.not()));
+            blockage.fringe8way();
+            // By calling LineKit.pruneLines(), we adjust prunedDungeon to hold a variant on lineDungeon that removes any
+            // line segments that haven't ever been visible. This is called again whenever seen changes.
+            // We call pruneLines with an optional parameter here, LineKit.lightAlt, which will allow prunedDungeon to use
+            // the half-line chars "╴╵╶╷". These chars aren't supported by all fonts, but they are by the one we use here.
+            // The default is to use LineKit.light , which will replace '╴' and '╶' with '─' and '╷' and '╵' with '│'.
+            LineKit.pruneLines(lineDungeon, seen, LineKit.lightAlt, prunedDungeon);
+        }
+
+        /**
+         * Takes one turn, moving the player by xmod and ymod unless that would go into a wall or off the map; moving
+         * by 0,0 waits in place. This is only the game logic, with nothing drawn, so a {@link Replay} can play turns
+         * the same way.
+         * @return true if the player moved or waited, false if it bumped into a wall, which should then be passed to
+         *         {@link #bump(int, int)}
+         */
+        public boolean step(int xmod, int ymod)
+        {
+            turn++;
+            final int newX = player.x + xmod, newY = player.y + ymod;
+            if (newX >= 0 && newY >= 0 && newX < bareDungeon.length && newY < bareDungeon[0].length
+                    && bareDungeon[newX][newY] != '#')
+            {
+                player = player.translate(xmod, ymod);
+                // updates FOV, the cells we have seen, and the walls we draw for them; see refreshView().
+                refreshView();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Colors the cell at x,y with the player's bloody nose, after bumping into it.
+         */
+        public void bump(int x, int y)
+        {
+            if(x >= 0 && y >= 0 && x < colors.length && y < colors[0].length)
+                colors[x][y] = SColor.DB_BLOOD.toFloatBits();
+        }
+
+        /**
+         * Picks a random color from rng to tint the whole map with, setting cb and cr.
+         */
+        public void recolor(GWTRNG rng)
+        {
+            final float rand = SColor.DAWNBRINGER_AURORA[rng.between(1, 256)].toFloatBits();
+            cb = SColor.chromaBOfFloat(rand);
+            cr = SColor.chromaROfFloat(rand);
+        }
+
+        /**
+         * Makes sure every map-sized layer exists with the given size and isn't shared with a snapshot, creating the
+         * ones that don't, so a save can be read straight into this Data. What they hold afterwards is unspecified.
+         */
+        public void ensureLayers(int width, int height)
+        {
+            if(shared || decoDungeon == null || decoDungeon.length != width || decoDungeon[0].length != height)
+            {
+                decoDungeon = new char[width][height];
+                bareDungeon = new char[width][height];
+                lineDungeon = new char[width][height];
+                bgColors = new float[width][height];
+                resistance = new double[width][height];
+                shared = false;
+            }
+            if(prunedDungeon == null || prunedDungeon.length != width || prunedDungeon[0].length != height)
+                prunedDungeon = new char[width][height];
+            if(colors == null || colors.length != width || colors[0].length != height)
+                colors = new float[width][height];
+            if(visible == null || visible.length != width || visible[0].length != height)
+                visible = new double[width][height];
+            if(blockage == null || blockage.width != width || blockage.height != height)
+                blockage = new GreasedRegion(width, height);
+            if(seen == null || seen.width != width || seen.height != height)
+                seen = new GreasedRegion(width, height);
+            if(currentlySeen == null || currentlySeen.width != width || currentlySeen.height != height)
+                currentlySeen = new GreasedRegion(width, height);
+            if(floors == null || floors.width != width || floors.height != height)
+                floors = new GreasedRegion(width, height);
+        }
+
         public void set(Data data) {
             stateA = data.stateA;
             stateB = data.stateB;
-            if(decoDungeon == null)
+            turn = data.turn;
+            genStateA = data.genStateA;
+            genStateB = data.genStateB;
+            generatedDeco = data.generatedDeco;
+            generatedColors = data.generatedColors;
+            if(decoDungeon == null || shared)
             {
                 decoDungeon = data.decoDungeon;
                 bareDungeon = data.bareDungeon;
@@ -86,6 +370,7 @@ public class MainApplication extends ApplicationAdapter {
                 bgColors = data.bgColors;
                 resistance = data.resistance;
                 visible = data.visible;
+                shared = false;
             }
             else {
                 for (int x = 0; x < data.decoDungeon.length; x++) {
@@ -194,11 +479,111 @@ public class MainApplication extends ApplicationAdapter {
 
     private static final JsonConverter json = new JsonConverter(JsonWriter.OutputType.minimal);
     private Data data;
-    
+    /**
+     * Compresses each layer of a save, or null to store layers uncompressed; see {@link BinarySave}.
+     */
+    private final SaveCodec codec;
+    /**
+     * Writes saves without stalling the game; see {@link SaveService}.
+     */
+    private final SaveService saves;
+    /**
+     * If true, {@link #keep(Data)} writes a recipe save with {@link BinarySave#writeRecipe(Data, SaveCodec)}, which
+     * stores only what can't be derived and rebuilds the rest on load; if false, it saves every layer.
+     */
+    public boolean saveRecipes = true;
+    /**
+     * The numbered saves, each keeping a journal of each turn's changes next to it, compacted into a new save every so
+     * often; see {@link SaveSlots} and {@link SaveJournal}.
+     */
+    private final SaveSlots slots;
+    /**
+     * Which of the {@link #slots} {@link #keep(Data)}, autosaving, and {@link #load()} use; the number keys pick it.
+     */
+    public int slot;
+    /**
+     * If true, every turn is saved as it is taken, with {@link SaveJournal#record(Data, boolean, SaveService.Callback)}.
+     */
+    public boolean autosave = true;
+    /**
+     * What the player has done since recording started, or null if not recording; 'T' starts and stops it. See
+     * {@link Replay}.
+     */
+    private Replay recording;
+    /**
+     * Logs how saves went; successful ones are only logged at the debug level, since autosaves happen every turn.
+     */
+    private final SaveService.Callback saveLog = new SaveService.Callback() {
+        @Override
+        public void saved(String name, int bytes) {
+            if(name.equals("SavedBinary")) {
+                Preferences prefs = Gdx.app.getPreferences("SaveLoadDemo");
+                if(prefs.contains("SavedState")) {
+                    prefs.remove("SavedState");
+                    prefs.flush();
+                }
+            }
+            Gdx.app.debug("SaveLoadDemo", "Saved " + name + " (" + bytes + " bytes)");
+        }
+
+        @Override
+        public void failed(String name, Exception e) {
+            Gdx.app.error("SaveLoadDemo", "Couldn't save " + name, e);
+        }
+    };
+
+    public MainApplication()
+    {
+        this(new LzCodec());
+    }
+
+    /**
+     * @param codec used to compress saves, such as {@link LzCodec} or a Deflater-based codec on desktop; may be null
+     */
+    public MainApplication(SaveCodec codec)
+    {
+        this(codec, new PreferencesSaveStore("SaveLoadDemo"), SaveService.IMMEDIATE);
+    }
+
+    /**
+     * @param codec used to compress saves, such as a Deflater-based codec on desktop; may be null
+     * @param store where saves are kept
+     * @param background where saves are encoded and written, such as a worker thread on desktop
+     */
+    public MainApplication(SaveCodec codec, SaveStore store, SaveService.Background background)
+    {
+        this.codec = codec;
+        saves = new SaveService(background, store, codec);
+        slots = new SaveSlots(saves, 10, 200);
+    }
+
+    /**
+     * Gets the SaveService this writes saves with, such as to set its {@link SaveService#filters} or turn on its
+     * {@link SaveService#report}, which load() also follows.
+     */
+    public SaveService getSaves() {
+        return saves;
+    }
+
+    /**
+     * Loads the state saved by {@link #keep(Data)} in the current {@link #slot}, along with any turns autosaved in the
+     * journal after it. Saves are in {@link BinarySave}'s format, kept by {@link SaveSlots} in the {@link SaveStore};
+     * older saves written as JSON under the "SavedState" preference are still read into slot 0 if it has no binary one.
+     * @throws IllegalStateException if there is no saved state or it can't be read
+     */
     public void load() throws IllegalStateException {
-        String s = Gdx.app.getPreferences("SaveLoadDemo").getString("SavedState");
-        if (s == null || s.isEmpty()) throw new IllegalStateException("Saved state is empty.");
-        data.set(json.fromJson(Data.class, s));
+        SaveReport report = saves.report ? new SaveReport() : null;
+        if (slots.load(slot, data, codec, dungeonGen, rng, report)) {
+            if (report != null)
+                Gdx.app.log("SaveLoadDemo", "Read " + SaveSlots.nameOf(slot) + ":\n" + report);
+        }
+        else {
+            String s = slot == 0 ? Gdx.app.getPreferences("SaveLoadDemo").getString("SavedState") : null;
+            if (s == null || s.isEmpty()) throw new IllegalStateException("Saved state is empty.");
+            data.set(json.fromJson(Data.class, s));
+            // there is no binary snapshot for a journal to follow yet, so the next turn writes one
+            slots.journal(slot).restart();
+        }
         rng.setStateA(data.stateA);
         rng.setStateB(data.stateB);
         filter.targetCb = data.cb;
@@ -211,11 +596,45 @@ public class MainApplication extends ApplicationAdapter {
         toCursor.clear();
         awaitedMoves.clear();
     }
+
+    /**
+     * Saves d in the current {@link #slot} with {@link SaveService}, starting the journal of autosaved turns over after
+     * it; only a snapshot is taken here, and the rest happens in the background.
+     */
     public void keep(Data d)
+    {
+        prepareSave(d);
+        slots.keep(slot, d, saveRecipes, saveLog);
+    }
+
+    /**
+     * Autosaves the turn d just took, usually as a small journal entry; see {@link SaveJournal}.
+     */
+    public void keepTurn(Data d)
+    {
+        prepareSave(d);
+        slots.keepTurn(slot, d, saveRecipes, saveLog);
+    }
+
+    /**
+     * Saves what has been recorded as "Replay" in the {@link SaveStore}, if anything is being recorded, and stops.
+     */
+    private void stopRecording()
+    {
+        if(recording == null)
+            return;
+        Gdx.app.log("SaveLoadDemo", "Recorded " + recording.inputs() + " inputs");
+        saves.write("Replay", recording.toByteArray(), saveLog);
+        recording = null;
+    }
+
+    private void prepareSave(Data d)
     {
         d.stateA = rng.getStateA();
         d.stateB = rng.getStateB();
-        Gdx.app.getPreferences("SaveLoadDemo").putString("SavedState", json.toJson(d, Data.class)).flush();
+        // a Data loaded from an old JSON save doesn't have the generated dungeon to compare against yet
+        if(saveRecipes && d.generatedDeco == null)
+            d.regenerate(dungeonGen, rng);
     }
     @Override
     public void create () {
@@ -288,42 +707,9 @@ public class MainApplication extends ApplicationAdapter {
             FloatFilters.ColorizeFilter cf = new FloatFilters.ColorizeFilter(SColor.DAWNBRINGER_AURORA[rng.between(1, 256)]);
             filter.targetCb = data.cb = cf.targetCb;
             filter.targetCr = data.cr = cf.targetCr;
-            //decoDungeon is given the dungeon with any decorations we specified. (Here, we didn't, unless you chose to add
-            //water to the dungeon. In that case, decoDungeon will have different contents than bareDungeon, next.)
-            data.decoDungeon = dungeonGen.generate();
-            data.bareDungeon = dungeonGen.getBareDungeon();
-            data.lineDungeon = DungeonUtility.hashesToLines(data.decoDungeon);
-            data.resistance = DungeonUtility.generateResistances(data.decoDungeon);
-            data.visible = new double[bigWidth][bigHeight];
-            // Here we fill a GreasedRegion so it stores the cells that contain a floor, the '.' char, as "on."
-            data.floors = new GreasedRegion(data.bareDungeon, '.');
-            //player is, here, just a Coord that stores his position. In a real game, you would probably have a class for
-            //creatures, and possibly a subclass for the player. The singleRandom() method on GreasedRegion finds one Coord
-            // in that region that is "on," or -1,-1 if there are no such cells. It takes an RNG object as a parameter, and
-            // if you gave a seed to the RNG constructor, then the cell this chooses will be reliable for testing. If you
-            // don't seed the RNG, any valid cell should be possible.
-            data.player = data.floors.singleRandom(rng);
-//            data.player = rng.getRandomElement(data.floors);
+            // generates the dungeon, places the player, and builds the maps that depend on them; see Data.generate().
+            data.generate(dungeonGen, rng);
             pg = display.glyph('@', SColor.SAFETY_ORANGE, data.player.x, data.player.y);
-            // Uses shadowcasting FOV and reuses the visible array without creating new arrays constantly.
-            FOV.reuseFOV(data.resistance, data.visible, data.player.x, data.player.y, 9.0, Radius.CIRCLE);//, (System.currentTimeMillis() & 0xFFFF) * 0x1p-4, 60.0);
-            data.blockage = new GreasedRegion(data.visible, 0.0);
-            data.seen = data.blockage.not().copy();
-            data.currentlySeen = data.seen.copy();
-            data.blockage.fringe8way();
-            // prunedDungeon starts with the full lineDungeon, which includes features like water and grass but also stores
-            // all walls as box-drawing characters. The issue with using lineDungeon as-is is that a character like '┬' may
-            // be used because there are walls to the east, west, and south of it, even when the player is to the north of
-            // that cell and so has never seen the southern connecting wall, and would have no reason to know it is there.
-            // By calling LineKit.pruneLines(), we adjust prunedDungeon to hold a variant on lineDungeon that removes any
-            // line segments that haven't ever been visible. This is called again whenever seen changes. 
-            data.prunedDungeon = ArrayTools.copy(data.lineDungeon);
-            // We call pruneLines with an optional parameter here, LineKit.lightAlt, which will allow prunedDungeon to use
-            // the half-line chars "╴╵╶╷". These chars aren't supported by all fonts, but they are by the one we use here.
-            // The default is to use LineKit.light , which will replace '╴' and '╶' with '─' and '╷' and '╵' with '│'.
-            LineKit.pruneLines(data.lineDungeon, data.seen, LineKit.lightAlt, data.prunedDungeon);
-            data.colors = MapUtility.generateDefaultColorsFloat(data.decoDungeon);
-            data.bgColors = MapUtility.generateDefaultBGColorsFloat(data.decoDungeon);
         }
         //DijkstraMap is the pathfinding swiss-army knife we use here to find a path to the latest cursor position.
         //DijkstraMap.Measurement is an enum that determines the possibility or preference to enter diagonals. Here, the
@@ -370,6 +756,8 @@ public class MainApplication extends ApplicationAdapter {
                         toCursor.clear();
                         //-1 is up on the screen
                         awaitedMoves.add(data.player.translate(0, -1));
+                        if(recording != null)
+                            recording.move(0, -1);
                         break;
                     }
                     case SquidInput.DOWN_ARROW:
@@ -381,6 +769,8 @@ public class MainApplication extends ApplicationAdapter {
                         toCursor.clear();
                         //+1 is down on the screen
                         awaitedMoves.add(data.player.translate(0, 1));
+                        if(recording != null)
+                            recording.move(0, 1);
                         break;
                     }
                     case SquidInput.LEFT_ARROW:
@@ -391,6 +781,8 @@ public class MainApplication extends ApplicationAdapter {
                     {
                         toCursor.clear();
                         awaitedMoves.add(data.player.translate(-1, 0));
+                        if(recording != null)
+                            recording.move(-1, 0);
                         break;
                     }
                     case SquidInput.RIGHT_ARROW:
@@ -401,6 +793,8 @@ public class MainApplication extends ApplicationAdapter {
                     {
                         toCursor.clear();
                         awaitedMoves.add(data.player.translate(1, 0));
+                        if(recording != null)
+                            recording.move(1, 0);
                         break;
                     }
                     case 'Q':
@@ -413,38 +807,32 @@ public class MainApplication extends ApplicationAdapter {
                     case 'V':
                     {
                         data.seen.fill(true);
+                        if(recording != null)
+                            recording.reveal();
                         break;
                     }
                     case 'C':
                     case 'c':
                     {
-                        final float rand = SColor.DAWNBRINGER_AURORA[rng.between(1, 256)].toFloatBits();
-                        filter.targetCb = data.cb = SColor.chromaBOfFloat(rand);
-                        filter.targetCr = data.cr = SColor.chromaROfFloat(rand);
+                        data.recolor(rng);
+                        filter.targetCb = data.cb;
+                        filter.targetCr = data.cr;
+                        if(recording != null)
+                            recording.recolor();
                         break;
                     }
                     case 'R':
                     case 'r':
                     {
-                        data.decoDungeon = dungeonGen.generate();
-                        data.bareDungeon = dungeonGen.getBareDungeon();
-                        data.lineDungeon = DungeonUtility.hashesToLines(data.decoDungeon);
-                        data.resistance = DungeonUtility.generateResistances(data.decoDungeon);
-//                        data.floors = new GreasedRegion(data.bareDungeon, '.').asCoords();
-//                        data.player = rng.getRandomElement(data.floors);
-                        data.floors = new GreasedRegion(data.bareDungeon, '.');
-                        data.player = data.floors.singleRandom(rng);
+                        data.generate(dungeonGen, rng);
+                        // a path highlighted in the old dungeon means nothing in the new one
+                        toCursor.clear();
+                        if(recording != null)
+                            recording.generate();
+                        // the journal can only follow a save of the same dungeon
+                        slots.journal(slot).restart();
                         display.clear();
                         pg.setPosition(display.worldX(data.player.x), display.worldY(data.player.y));
-                        FOV.reuseFOV(data.resistance, data.visible, data.player.x, data.player.y, 9.0, Radius.CIRCLE);
-                        data.blockage.refill(data.visible, 0.0);
-                        data.seen.remake(data.blockage).not();
-                        data.currentlySeen.remake(data.seen);
-                        data.blockage.fringe8way();
-                        data.prunedDungeon = ArrayTools.copy(data.lineDungeon);
-                        LineKit.pruneLines(data.lineDungeon, data.seen, LineKit.lightAlt, data.prunedDungeon);
-                        data.colors = MapUtility.generateDefaultColorsFloat(data.decoDungeon);
-                        data.bgColors = MapUtility.generateDefaultBGColorsFloat(data.decoDungeon);
                         playerToCursor.initialize(data.decoDungeon);
                         playerToCursor.reset();
                         playerToCursor.setGoal(data.player);
@@ -454,6 +842,8 @@ public class MainApplication extends ApplicationAdapter {
                     case 'L':
                     case 'l':
                     {
+                        // a replay can't follow the game onto a different save
+                        stopRecording();
                         try {
                             load();
                             playerToCursor.initialize(data.decoDungeon);
@@ -474,6 +864,45 @@ public class MainApplication extends ApplicationAdapter {
                     {
                         Gdx.app.getPreferences("SaveLoadDemo").clear();
                         Gdx.app.getPreferences("SaveLoadDemo").flush();
+                        for (int i = 0; i < slots.count(); i++) {
+                            slots.delete(i);
+                        }
+                        break;
+                    }
+                    case 'M':
+                    case 'm':
+                    {
+                        // only the small headers are read, so this is quick however many slots are full
+                        SaveHeader[] headers = slots.list();
+                        for (int i = 0; i < headers.length; i++) {
+                            Gdx.app.log("SaveLoadDemo", (i == slot ? "> " : "  ") + i + ": "
+                                    + (headers[i] == null ? "empty" : headers[i].toString()));
+                        }
+                        break;
+                    }
+                    case 'T':
+                    case 't':
+                    {
+                        if(recording == null)
+                        {
+                            prepareSave(data);
+                            // codec may be encoding a save on the SaveService's thread right now, so the replay's
+                            // snapshot gets a codec of its own
+                            recording = new Replay(data, null);
+                        }
+                        else
+                            stopRecording();
+                        break;
+                    }
+                    default:
+                    {
+                        // the number keys pick the slot that saving and loading use; this dungeon is saved in it
+                        // separately from then on, so its journal has to start over from a full save
+                        if(key >= '0' && key <= '9')
+                        {
+                            slot = key - '0';
+                            slots.journal(slot).restart();
+                        }
                         break;
                     }
                 }
@@ -515,6 +944,8 @@ public class MainApplication extends ApplicationAdapter {
                                     toCursor.remove(0);
                             }
                             awaitedMoves.addAll(toCursor);
+                            if(recording != null)
+                                recording.click(cursor);
                         }
                         return true;
                     }
@@ -576,23 +1007,12 @@ public class MainApplication extends ApplicationAdapter {
      * @param ymod
      */
     private void move(final int xmod, final int ymod) {
-        int newX = data.player.x + xmod, newY = data.player.y + ymod;
-        if (newX >= 0 && newY >= 0 && newX < bigWidth && newY < bigHeight
-                && data.bareDungeon[newX][newY] != '#')
+        final Coord from = data.player;
+        // the turn itself is taken by Data.step(), which a Replay uses too; everything here is only drawing it
+        if (data.step(xmod, ymod))
         {
-            if((xmod | ymod) != 0) {
-                display.slide(pg, data.player.x, data.player.y, newX, newY, DURATION, null);
-                data.player = data.player.translate(xmod, ymod);
-            }
-            FOV.reuseFOV(data.resistance, data.visible, data.player.x, data.player.y, 9.0, Radius.CIRCLE);//, (System.currentTimeMillis() & 0xFFFF) * 0x1p-4, 60.0);
-            // This is just like the constructor used earlier, but affects an existing GreasedRegion without making
-            // a new one just for this movement.
-            data.blockage.refill(data.visible, 0.0);
-            data.seen.or(data.currentlySeen.remake(data.blockage.not()));
-            data.blockage.fringe8way();
-            // By calling LineKit.pruneLines(), we adjust prunedDungeon to hold a variant on lineDungeon that removes any
-            // line segments that haven't ever been visible. This is called again whenever seen changes.
-            LineKit.pruneLines(data.lineDungeon, data.seen, LineKit.lightAlt, data.prunedDungeon);
+            if((xmod | ymod) != 0)
+                display.slide(pg, from.x, from.y, data.player.x, data.player.y, DURATION, null);
         }
         else
         {
@@ -615,11 +1035,14 @@ public class MainApplication extends ApplicationAdapter {
                 int y = data.player.y + ymod;
                 @Override
                 public void run() {
-                    data.colors[x][y] = SColor.DB_BLOOD.toFloatBits();
+                    data.bump(x, y);
+                    slots.journal(slot).colorChanged(x, y);
                 }
             });
             //display.addAction(new PanelEffect.ExplosionEffect(display, 1f, floors, player, 6));
         }
+        if(autosave)
+            keepTurn(data);
 //        // removes the first line displayed of the Art of War text or its translation.
 //        lang.remove(0);
 //        // if the last line reduced the number of lines we can show to less than what we try to show, we fill in more
@@ -0,0 +1,59 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.utils.Base64Coder;
+
+/**
+ * Keeps saves as Base64 strings in a libGDX Preferences file, one key per save name. This works on every platform,
+ * including GWT, where it uses browser local storage.
+ */
+public class PreferencesSaveStore implements SaveStore {
+    private final String preferencesName;
+
+    /**
+     * @param preferencesName the name given to {@code Gdx.app.getPreferences()}
+     */
+    public PreferencesSaveStore(String preferencesName)
+    {
+        this.preferencesName = preferencesName;
+    }
+
+    @Override
+    public void write(String name, byte[] bytes) {
+        Preferences prefs = Gdx.app.getPreferences(preferencesName);
+        prefs.putString(name, new String(Base64Coder.encode(bytes)));
+        prefs.flush();
+    }
+
+    /**
+     * Preferences can only replace a whole string, so this rewrites everything under name; keep appended saves short.
+     */
+    @Override
+    public void append(String name, byte[] bytes) {
+        byte[] old = read(name);
+        if(old == null) {
+            write(name, bytes);
+            return;
+        }
+        byte[] both = new byte[old.length + bytes.length];
+        System.arraycopy(old, 0, both, 0, old.length);
+        System.arraycopy(bytes, 0, both, old.length, bytes.length);
+        write(name, both);
+    }
+
+    @Override
+    public byte[] read(String name) {
+        String s = Gdx.app.getPreferences(preferencesName).getString(name);
+        if(s == null || s.isEmpty())
+            return null;
+        return Base64Coder.decode(s);
+    }
+
+    @Override
+    public void delete(String name) {
+        Preferences prefs = Gdx.app.getPreferences(preferencesName);
+        prefs.remove(name);
+        prefs.flush();
+    }
+}
@@ -0,0 +1,251 @@
+package com.squidpony.saveload.demo;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GWTRNG;
+
+import java.util.ArrayList;
+
+/**
+ * Records what the player does from a snapshot of a {@link MainApplication.Data}, and plays it back without drawing
+ * anything. The Data's stateA and stateB carry the RNG along, so the snapshot and the input alone are enough to take
+ * every turn the same way again, which makes a replay a tiny file to attach to a bug report, and playing one back as
+ * fast as possible measures how many turns per second the game logic can take apart from rendering.
+ * <br>
+ * A replay starts with the magic number, the version, and the length of the snapshot, followed by the snapshot itself
+ * as a {@link BinarySave}: a recipe save if the Data has its generated dungeon, or a full save if it doesn't. After that
+ * come the inputs, each one byte saying what it is and then anything it needs: {@link #MOVE} is followed by the x and y
+ * to move by as signed bytes, {@link #CLICK} by the x and y of the clicked cell as ints, and {@link #RECOLOR},
+ * {@link #REVEAL}, and {@link #GENERATE} by nothing. A click replays as the whole path the game walked to that cell,
+ * found with the same DijkstraMap the game uses, so it costs 9 bytes however long the path is.
+ */
+public class Replay {
+    /** "SLDP" in ASCII. */
+    public static final int MAGIC = 0x50444C53;
+    public static final int VERSION = 1;
+    /** What each input in a replay can be. */
+    public static final int MOVE = 1, CLICK = 2, RECOLOR = 3, REVEAL = 4, GENERATE = 5;
+
+    private final SaveWriter out = new SaveWriter(1024);
+    private int inputs;
+
+    /**
+     * Starts recording from {@code data} as it is now.
+     * @param data the Data input is about to change; its stateA and stateB should already be the RNG's current state
+     * @param codec used to compress the snapshot, or null to use a new {@link LzCodec}, which any replay can be read
+     *              with; codecs can keep state while encoding, so this must not be one a {@link SaveService} is using
+     */
+    public Replay(MainApplication.Data data, SaveCodec codec)
+    {
+        if(codec == null)
+            codec = new LzCodec();
+        final byte[] snapshot = data.generatedDeco != null && data.generatedColors != null
+                ? BinarySave.writeRecipe(data, codec) : BinarySave.write(data, codec);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.length);
+        out.writeBytes(snapshot, 0, snapshot.length);
+    }
+
+    /** Records a move from the keyboard by xmod and ymod. */
+    public void move(int xmod, int ymod)
+    {
+        out.writeByte(MOVE);
+        out.writeByte(xmod);
+        out.writeByte(ymod);
+        inputs++;
+    }
+
+    /** Records a click on the cell at target, which the player then walks to. */
+    public void click(Coord target)
+    {
+        out.writeByte(CLICK);
+        out.writeInt(target.x);
+        out.writeInt(target.y);
+        inputs++;
+    }
+
+    /** Records {@link MainApplication.Data#recolor(GWTRNG)}. */
+    public void recolor()
+    {
+        out.writeByte(RECOLOR);
+        inputs++;
+    }
+
+    /** Records every cell being marked as seen. */
+    public void reveal()
+    {
+        out.writeByte(REVEAL);
+        inputs++;
+    }
+
+    /** Records {@link MainApplication.Data#generate(DungeonGenerator, GWTRNG)}. */
+    public void generate()
+    {
+        out.writeByte(GENERATE);
+        inputs++;
+    }
+
+    /** How many inputs have been recorded. */
+    public int inputs()
+    {
+        return inputs;
+    }
+
+    /**
+     * Gets everything recorded so far as a replay, which can be played with
+     * {@link #play(byte[], MainApplication.Data, SaveCodec, DungeonGenerator, GWTRNG)}.
+     */
+    public byte[] toByteArray()
+    {
+        return out.toByteArray();
+    }
+
+    /**
+     * Loads a replay's snapshot into {@code data} and takes every turn it recorded, as fast as possible and without
+     * drawing anything, leaving data and rng as the game had them when recording stopped.
+     * @param replay the bytes of a replay
+     * @param data the Data to play in
+     * @param codec the codec the snapshot was written with, or null if it was an {@link LzCodec}
+     * @param gen the DungeonGenerator the game uses, constructed with rng
+     * @param rng the RNG gen uses; its state is set from the snapshot
+     * @return how many turns were taken
+     * @throws IllegalStateException if the replay isn't valid
+     */
+    public static int play(byte[] replay, MainApplication.Data data, SaveCodec codec, DungeonGenerator gen,
+                           GWTRNG rng)
+    {
+        final SaveReader in = new SaveReader(replay);
+        if(replay.length < 12 || in.readInt() != MAGIC)
+            throw new IllegalStateException("Not a replay.");
+        final int version = in.readInt(), length = in.readInt();
+        if(version != VERSION)
+            throw new IllegalStateException("Replay has unknown version " + version + ".");
+        if(length < 0 || length > in.remaining())
+            throw new IllegalStateException("Replay ended early.");
+        final byte[] snapshot = new byte[length];
+        in.readBytes(snapshot, 0, length);
+        BinarySave.readInto(snapshot, codec, data, gen, rng);
+        rng.setState(data.stateA, data.stateB);
+        final Player player = new Player(data, gen, rng);
+        while (in.remaining() > 0) {
+            switch (in.readByte())
+            {
+                case MOVE: player.move((byte) in.readByte(), (byte) in.readByte());
+                    break;
+                case CLICK: player.click(in.readInt(), in.readInt());
+                    break;
+                case RECOLOR: player.recolor();
+                    break;
+                case REVEAL: player.reveal();
+                    break;
+                case GENERATE: player.generate();
+                    break;
+                default:
+                    throw new IllegalStateException("Replay has an unknown input.");
+            }
+        }
+        player.finish();
+        return player.turns;
+    }
+
+    /**
+     * Takes turns in a Data the way the game does for each input, but without drawing anything; this is what
+     * {@link #play(byte[], MainApplication.Data, SaveCodec, DungeonGenerator, GWTRNG)} uses, and it can also be given
+     * inputs directly, such as to play and record made-up input at the same time.
+     */
+    public static class Player {
+        public final MainApplication.Data data;
+        private final DungeonGenerator gen;
+        private final GWTRNG rng;
+        private final DijkstraMap paths;
+        private final ArrayList<Coord> path = new ArrayList<>(200);
+        /** How many turns have been taken. */
+        public int turns;
+
+        /**
+         * @param data the Data to play in, with rng already in the state data was saved with
+         * @param gen the DungeonGenerator the game uses, constructed with rng
+         * @param rng the RNG gen uses
+         */
+        public Player(MainApplication.Data data, DungeonGenerator gen, GWTRNG rng)
+        {
+            this.data = data;
+            this.gen = gen;
+            this.rng = rng;
+            // the same pathfinding the game does, set up the way it is after loading and after each walk
+            paths = new DijkstraMap(data.decoDungeon, DijkstraMap.Measurement.MANHATTAN);
+            paths.setGoal(data.player);
+            paths.partialScan(null, 13, data.blockage, false);
+        }
+
+        public void move(int xmod, int ymod)
+        {
+            turn(xmod, ymod);
+            rescan();
+        }
+
+        /**
+         * Walks the path the game finds to the cell at x,y, if it finds one.
+         */
+        public void click(int x, int y)
+        {
+            path.clear();
+            paths.findPathPreScanned(path, Coord.get(x, y));
+            // the path starts with the player's own cell, which the game leaves out
+            if(!path.isEmpty())
+                path.remove(0);
+            for (int i = 0; i < path.size(); i++) {
+                final Coord c = path.get(i);
+                turn(c.x - data.player.x, c.y - data.player.y);
+            }
+            if(!path.isEmpty())
+                rescan();
+        }
+
+        public void recolor()
+        {
+            data.recolor(rng);
+        }
+
+        public void reveal()
+        {
+            data.seen.fill(true);
+        }
+
+        public void generate()
+        {
+            data.generate(gen, rng);
+            paths.initialize(data.decoDungeon);
+            paths.reset();
+            paths.setGoal(data.player);
+            paths.partialScan(null, 13, data.blockage, false);
+        }
+
+        /**
+         * Stores the RNG's state in data's stateA and stateB, as saving would.
+         */
+        public void finish()
+        {
+            data.stateA = rng.getStateA();
+            data.stateB = rng.getStateB();
+        }
+
+        private void turn(int xmod, int ymod)
+        {
+            // the game colors the wall once the bump has been animated, which is always before the next turn
+            if(!data.step(xmod, ymod))
+                data.bump(data.player.x + xmod, data.player.y + ymod);
+            turns++;
+        }
+
+        private void rescan()
+        {
+            paths.clearGoals();
+            paths.resetMap();
+            paths.setGoal(data.player);
+            paths.partialScan(null, 13, data.blockage, false);
+        }
+    }
+}
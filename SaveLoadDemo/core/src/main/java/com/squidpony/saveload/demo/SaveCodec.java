@@ -0,0 +1,28 @@
+package com.squidpony.saveload.demo;
+
+/**
+ * Compresses the layers of a binary save, and decompresses them when loading. Core has {@link LzCodec}, which is plain
+ * Java and works everywhere, including GWT; java.util.zip isn't available there, so the desktop launcher passes in one
+ * that uses Deflater instead.
+ */
+public interface SaveCodec {
+    /**
+     * @return a small number identifying this codec in saved files, from 1 to 255; 0 means no codec
+     */
+    int id();
+
+    /**
+     * @param raw the bytes to compress, from {@code offset} for {@code length} bytes
+     * @return the compressed bytes, exactly as long as they need to be
+     */
+    byte[] encode(byte[] raw, int offset, int length);
+
+    /**
+     * Decompresses into an array the caller already has, so loading can reuse one buffer for every layer.
+     * @param stored the compressed bytes, from {@code offset} for {@code length} bytes
+     * @param into where to put the decompressed bytes, starting at index 0
+     * @param rawLength how long the bytes were before compression; into must have at least this many
+     * @throws IllegalStateException if the stored bytes don't decompress to exactly rawLength bytes
+     */
+    void decode(byte[] stored, int offset, int length, byte[] into, int rawLength);
+}
@@ -0,0 +1,136 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * The small, fixed-size summary {@link SaveSlots} keeps next to each save, so a list of saves can be shown without
+ * reading any of them: the dungeon's seed, the turn, where the player is, a tiny map of what has been seen, and when
+ * the save was started and last written. A header is always {@link #SIZE} bytes, however big the map is.
+ * <br>
+ * The thumbnail has {@link #THUMBNAIL_WIDTH} by {@link #THUMBNAIL_HEIGHT} cells, stored column by column like the
+ * maps in a {@link BinarySave}, each one {@link #UNSEEN}, {@link #FLOOR}, {@link #WALL}, or {@link #PLAYER}, from a
+ * few cells sampled in the part of the map it covers.
+ */
+public class SaveHeader {
+    /** "SLDH" in ASCII. */
+    public static final int MAGIC = 0x48444C53;
+    public static final int VERSION = 1;
+    public static final int THUMBNAIL_WIDTH = 48, THUMBNAIL_HEIGHT = 16;
+    /** What each cell of a thumbnail can be. */
+    public static final byte UNSEEN = 0, FLOOR = 1, WALL = 2, PLAYER = 3;
+    /** How many bytes every header takes. */
+    public static final int SIZE = 60 + THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT;
+
+    /** The RNG state the dungeon was generated from; the same two numbers always generate the same dungeon. */
+    public int genStateA, genStateB;
+    public int turn, playerX, playerY, width, height;
+    /** From {@link TimeUtils#millis()}: when this dungeon was first saved in its slot, and when it was last saved. */
+    public long createdMillis, savedMillis;
+    public final byte[] thumbnail = new byte[THUMBNAIL_WIDTH * THUMBNAIL_HEIGHT];
+
+    /**
+     * Fills this header from {@code data}, which is about to be saved, with savedMillis set to now.
+     * @param data the Data being saved
+     * @param createdMillis when its dungeon was first saved, or 0 to use now
+     */
+    public void describe(MainApplication.Data data, long createdMillis)
+    {
+        genStateA = data.genStateA;
+        genStateB = data.genStateB;
+        turn = data.turn;
+        playerX = data.player.x;
+        playerY = data.player.y;
+        width = data.decoDungeon.length;
+        height = data.decoDungeon[0].length;
+        savedMillis = TimeUtils.millis();
+        this.createdMillis = createdMillis == 0L ? savedMillis : createdMillis;
+        for (int tx = 0, i = 0; tx < THUMBNAIL_WIDTH; tx++) {
+            final int x0 = tx * width / THUMBNAIL_WIDTH, x1 = Math.max(x0 + 1, (tx + 1) * width / THUMBNAIL_WIDTH);
+            for (int ty = 0; ty < THUMBNAIL_HEIGHT; ty++, i++) {
+                final int y0 = ty * height / THUMBNAIL_HEIGHT,
+                        y1 = Math.max(y0 + 1, (ty + 1) * height / THUMBNAIL_HEIGHT);
+                thumbnail[i] = sample(data, x0, x1, y0, y1);
+            }
+        }
+    }
+
+    /**
+     * Looks at up to 4x4 cells spread over the given part of the map, so describing a huge map stays quick; any seen
+     * floor makes it a floor, and otherwise any seen wall makes it a wall.
+     */
+    private static byte sample(MainApplication.Data data, int x0, int x1, int y0, int y1)
+    {
+        if(data.player.x >= x0 && data.player.x < x1 && data.player.y >= y0 && data.player.y < y1)
+            return PLAYER;
+        byte found = UNSEEN;
+        final int stepX = Math.max(1, (x1 - x0) >> 2), stepY = Math.max(1, (y1 - y0) >> 2);
+        for (int x = x0; x < x1; x += stepX) {
+            for (int y = y0; y < y1; y += stepY) {
+                if(data.seen.contains(x, y))
+                {
+                    if(data.bareDungeon[x][y] != '#')
+                        return FLOOR;
+                    found = WALL;
+                }
+            }
+        }
+        return found;
+    }
+
+    public byte[] write()
+    {
+        SaveWriter out = new SaveWriter(SIZE);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(genStateA);
+        out.writeInt(genStateB);
+        out.writeInt(turn);
+        out.writeInt(playerX);
+        out.writeInt(playerY);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeLong(createdMillis);
+        out.writeLong(savedMillis);
+        out.writeInt(THUMBNAIL_WIDTH);
+        out.writeInt(THUMBNAIL_HEIGHT);
+        out.writeBytes(thumbnail, 0, thumbnail.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a header written by {@link #write()}.
+     * @return the header, or null if bytes is null or isn't a header this can read
+     */
+    public static SaveHeader read(byte[] bytes)
+    {
+        if(bytes == null || bytes.length != SIZE)
+            return null;
+        SaveReader in = new SaveReader(bytes);
+        if(in.readInt() != MAGIC || in.readInt() != VERSION)
+            return null;
+        SaveHeader h = new SaveHeader();
+        h.genStateA = in.readInt();
+        h.genStateB = in.readInt();
+        h.turn = in.readInt();
+        h.playerX = in.readInt();
+        h.playerY = in.readInt();
+        h.width = in.readInt();
+        h.height = in.readInt();
+        h.createdMillis = in.readLong();
+        h.savedMillis = in.readLong();
+        if(in.readInt() != THUMBNAIL_WIDTH || in.readInt() != THUMBNAIL_HEIGHT)
+            return null;
+        in.readBytes(h.thumbnail, 0, h.thumbnail.length);
+        return h;
+    }
+
+    /**
+     * One line for a list of saves, like "turn 120 at 14,33 of 450x125, seed 12345/67890".
+     */
+    @Override
+    public String toString()
+    {
+        return "turn " + turn + " at " + playerX + "," + playerY + " of " + width + "x" + height + ", seed "
+                + genStateA + "/" + genStateB;
+    }
+}
@@ -0,0 +1,233 @@
+package com.squidpony.saveload.demo;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * An append-only journal of what changed in a {@link MainApplication.Data} each turn, kept next to a full snapshot of
+ * it, so saving every turn only writes the few changed seen words and cells instead of the whole map. Every so often
+ * {@link #compact(MainApplication.Data, boolean, SaveService.Callback)} folds the journal into a new snapshot; loading
+ * reads the latest snapshot with {@link BinarySave} and then {@link #replay(byte[], MainApplication.Data)}s the journal
+ * written after it.
+ * <br>
+ * The journal starts with a header: the magic number, the genStateA and genStateB of the dungeon, and the turn of the
+ * snapshot it follows, so a journal is never replayed onto a snapshot it doesn't belong to. Each entry after that is
+ * its own length in bytes (counting the length), the turn, the player's x and y, cb, cr, stateA, stateB, the number of
+ * seen words that changed followed by each one's index and value, and the number of colors that changed followed by
+ * each one's index (x * height + y) and value. Every value written is the new value, not a difference, so an entry can
+ * safely repeat changes an earlier snapshot already has. prunedDungeon and everything else that depends on the
+ * player's position and seen are derived again with {@link MainApplication.Data#refreshView()}.
+ * <br>
+ * Entries are written through {@link SaveService#append(String, byte[], SaveService.Callback)}, so they are written in
+ * the background in order with snapshots. An entry that was only partly appended, such as by a crash, is ignored along
+ * with anything after it.
+ */
+public class SaveJournal {
+    /** "SLDJ" in ASCII. */
+    public static final int MAGIC = 0x4A444C53;
+
+    private final SaveService saves;
+    private final String snapshotName, journalName;
+    private final SaveWriter entry = new SaveWriter(256);
+    private long[] lastSeen;
+    private int[] changedColors = new int[16];
+    private int changedColorCount, entries;
+    /**
+     * How many turns {@link #record(MainApplication.Data, boolean, SaveService.Callback)} journals before it compacts.
+     */
+    public int compactEvery;
+
+    /**
+     * @param saves writes snapshots and journal entries
+     * @param snapshotName the name snapshots are saved under; the journal is saved under this plus ".journal"
+     * @param compactEvery how many turns to journal before folding them into a new snapshot
+     */
+    public SaveJournal(SaveService saves, String snapshotName, int compactEvery)
+    {
+        this.saves = saves;
+        this.snapshotName = snapshotName;
+        journalName = snapshotName + ".journal";
+        this.compactEvery = Math.max(1, compactEvery);
+    }
+
+    public String getJournalName() {
+        return journalName;
+    }
+
+    /**
+     * Starts journaling changes to {@code data} from how it is now, which should match what is saved, such as right
+     * after loading it.
+     * @param data the Data to journal
+     * @param entries how many entries the saved journal already has, as returned by
+     *                {@link #replay(byte[], MainApplication.Data)}
+     */
+    public void begin(MainApplication.Data data, int entries)
+    {
+        lastSeen = data.seen.data.clone();
+        changedColorCount = 0;
+        this.entries = Math.max(0, entries);
+    }
+
+    /**
+     * Makes the next {@link #record(MainApplication.Data, boolean, SaveService.Callback)} compact instead of adding an
+     * entry, for when the journal can't follow the saved snapshot anymore, such as after a new dungeon is generated or
+     * the save is deleted.
+     */
+    public void restart()
+    {
+        lastSeen = null;
+    }
+
+    /**
+     * Notes that {@code data.colors[x][y]} changed, so the next entry includes it. colors is changed in only a few
+     * places, so they call this rather than have every turn compare the whole map.
+     */
+    public void colorChanged(int x, int y)
+    {
+        if(changedColorCount == changedColors.length)
+        {
+            int[] next = new int[changedColorCount << 1];
+            System.arraycopy(changedColors, 0, next, 0, changedColorCount);
+            changedColors = next;
+        }
+        changedColors[changedColorCount++] = x << 16 | y;
+    }
+
+    /**
+     * Appends an entry for the turn {@code data} just took, or compacts instead if the journal has
+     * {@link #compactEvery} entries already or {@link #begin(MainApplication.Data, int)} hasn't been called for this
+     * map. Only the changed seen words and colors are found and copied here; writing happens in the background.
+     * @param data the Data that just took a turn; its turn, stateA, and stateB should already be current
+     * @param recipe if this compacts, true to write a recipe snapshot, false for a full one
+     * @param callback told when the entry or snapshot is written or has failed; may be null
+     * @return true if this compacted, or false if it only appended an entry
+     */
+    public boolean record(MainApplication.Data data, boolean recipe, SaveService.Callback callback)
+    {
+        final long[] words = data.seen.data;
+        if(lastSeen == null || lastSeen.length != words.length || entries >= compactEvery)
+        {
+            compact(data, recipe, callback);
+            return true;
+        }
+        final SaveWriter w = entry;
+        w.reset();
+        w.writeInt(0);
+        w.writeInt(data.turn);
+        w.writeInt(data.player.x);
+        w.writeInt(data.player.y);
+        w.writeFloat(data.cb);
+        w.writeFloat(data.cr);
+        w.writeInt(data.stateA);
+        w.writeInt(data.stateB);
+        int position = w.size(), count = 0;
+        w.writeInt(0);
+        for (int i = 0; i < words.length; i++) {
+            if(words[i] != lastSeen[i])
+            {
+                w.writeInt(i);
+                w.writeLong(words[i]);
+                lastSeen[i] = words[i];
+                count++;
+            }
+        }
+        w.setInt(position, count);
+        final int height = data.colors[0].length;
+        w.writeInt(changedColorCount);
+        for (int i = 0; i < changedColorCount; i++) {
+            final int x = changedColors[i] >>> 16, y = changedColors[i] & 0xFFFF;
+            w.writeInt(x * height + y);
+            w.writeFloat(data.colors[x][y]);
+        }
+        changedColorCount = 0;
+        w.setInt(0, w.size());
+        saves.append(journalName, w.toByteArray(), callback);
+        entries++;
+        return false;
+    }
+
+    /**
+     * Saves a new snapshot of {@code data} and, once it is written, starts the journal over after it. If the snapshot
+     * can't be written, the old journal is kept and entries keep being added to it, so nothing is lost.
+     * @param data the Data to save; its turn, stateA, and stateB should already be current
+     * @param recipe true to write a recipe snapshot, false for a full one
+     * @param callback told when the snapshot is written or has failed; may be null
+     */
+    public void compact(MainApplication.Data data, boolean recipe, SaveService.Callback callback)
+    {
+        final SaveWriter w = new SaveWriter(16);
+        w.writeInt(MAGIC);
+        w.writeInt(data.genStateA);
+        w.writeInt(data.genStateB);
+        w.writeInt(data.turn);
+        final byte[] header = w.toByteArray();
+        saves.save(snapshotName, data, recipe, new Runnable() {
+            @Override
+            public void run() {
+                saves.getStore().write(journalName, header);
+            }
+        }, callback);
+        // the entries written after this are whole values, so they work after either the old snapshot or this one.
+        if(lastSeen == null || lastSeen.length != data.seen.data.length)
+            lastSeen = data.seen.data.clone();
+        entries = 0;
+    }
+
+    /**
+     * Applies every entry in {@code journal} to {@code data}, which should have just been read from the snapshot the
+     * journal follows, then refreshes what depends on them with {@link MainApplication.Data#refreshView()}.
+     * @param journal the bytes of the journal, or null if there is none
+     * @param data a Data read from the snapshot the journal follows
+     * @return how many entries were applied, or -1 if the journal doesn't follow data's snapshot
+     * @throws IllegalStateException if an entry refers to cells outside the map
+     */
+    public static int replay(byte[] journal, MainApplication.Data data)
+    {
+        if(journal == null || journal.length < 16)
+            return -1;
+        final SaveReader in = new SaveReader(journal);
+        if(in.readInt() != MAGIC || in.readInt() != data.genStateA || in.readInt() != data.genStateB
+                || in.readInt() != data.turn)
+            return -1;
+        final long[] words = data.seen.data;
+        final int width = data.colors.length, height = data.colors[0].length, cells = width * height;
+        int applied = 0;
+        while (in.remaining() >= 4)
+        {
+            final int start = in.position(), length = in.readInt();
+            // a partly-appended entry at the end is left out
+            if(length < 4 || length - 4 > in.remaining())
+                break;
+            in.skip(length - 4);
+            final SaveReader e = new SaveReader(journal, start + 4, length - 4);
+            final int turn = e.readInt();
+            if(turn <= data.turn)
+                continue;
+            final int x = e.readInt(), y = e.readInt();
+            if(x < 0 || y < 0 || x >= width || y >= height)
+                throw new IllegalStateException("Journal has the player outside the map.");
+            data.turn = turn;
+            data.player = Coord.get(x, y);
+            data.cb = e.readFloat();
+            data.cr = e.readFloat();
+            data.stateA = e.readInt();
+            data.stateB = e.readInt();
+            for (int n = e.readInt(); n > 0; n--) {
+                final int i = e.readInt();
+                if(i < 0 || i >= words.length)
+                    throw new IllegalStateException("Journal has a changed region word outside the map.");
+                words[i] = e.readLong();
+            }
+            for (int n = e.readInt(); n > 0; n--) {
+                final int i = e.readInt();
+                final float f = e.readFloat();
+                if(i < 0 || i >= cells)
+                    throw new IllegalStateException("Journal has a changed cell outside the map.");
+                data.colors[i / height][i % height] = f;
+            }
+            applied++;
+        }
+        if(applied > 0)
+            data.refreshView();
+        return applied;
+    }
+}
@@ -0,0 +1,171 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.utils.NumberUtils;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Reads what a {@link SaveWriter} wrote from a byte array, little-endian. The methods that read whole maps fill arrays
+ * that already exist, column by column, so loading doesn't need to allocate anything map-sized when the sizes match.
+ * Reading past the end throws an IllegalStateException, which {@link MainApplication#load()} treats as a bad save.
+ */
+public class SaveReader {
+    private byte[] bytes;
+    private int position, limit;
+
+    public SaveReader(byte[] bytes)
+    {
+        this(bytes, 0, bytes.length);
+    }
+
+    public SaveReader(byte[] bytes, int offset, int length)
+    {
+        this.bytes = bytes;
+        position = offset;
+        limit = offset + length;
+    }
+
+    public int position()
+    {
+        return position;
+    }
+
+    public void position(int position)
+    {
+        this.position = position;
+    }
+
+    public int remaining()
+    {
+        return limit - position;
+    }
+
+    public byte[] buffer()
+    {
+        return bytes;
+    }
+
+    private void need(int count)
+    {
+        if(count < 0 || position + count > limit)
+            throw new IllegalStateException("Saved state ended early.");
+    }
+
+    public void skip(int count)
+    {
+        need(count);
+        position += count;
+    }
+
+    public int readByte()
+    {
+        need(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    public void readBytes(byte[] into, int offset, int length)
+    {
+        need(length);
+        System.arraycopy(bytes, position, into, offset, length);
+        position += length;
+    }
+
+    public int readShort()
+    {
+        need(2);
+        return (bytes[position++] & 0xFF) | (bytes[position++] & 0xFF) << 8;
+    }
+
+    public int readInt()
+    {
+        need(4);
+        return (bytes[position++] & 0xFF) | (bytes[position++] & 0xFF) << 8
+                | (bytes[position++] & 0xFF) << 16 | (bytes[position++] & 0xFF) << 24;
+    }
+
+    public long readLong()
+    {
+        return (readInt() & 0xFFFFFFFFL) | (long) readInt() << 32;
+    }
+
+    public float readFloat()
+    {
+        return NumberUtils.intBitsToFloat(readInt());
+    }
+
+    public double readDouble()
+    {
+        return NumberUtils.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Fills every char in {@code map}, which must already have the size that was written, column by column.
+     */
+    public void readChars(char[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        need(w * h << 1);
+        final byte[] bytes = this.bytes;
+        int p = position;
+        for (int x = 0; x < w; x++) {
+            final char[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                column[y] = (char) ((bytes[p++] & 0xFF) | (bytes[p++] & 0xFF) << 8);
+            }
+        }
+        position = p;
+    }
+
+    /**
+     * Fills every float in {@code map}, which must already have the size that was written, column by column.
+     */
+    public void readFloats(float[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        need(w * h << 2);
+        final byte[] bytes = this.bytes;
+        int p = position;
+        for (int x = 0; x < w; x++) {
+            final float[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                column[y] = NumberUtils.intBitsToFloat((bytes[p++] & 0xFF) | (bytes[p++] & 0xFF) << 8
+                        | (bytes[p++] & 0xFF) << 16 | (bytes[p++] & 0xFF) << 24);
+            }
+        }
+        position = p;
+    }
+
+    /**
+     * Fills every double in {@code map}, which must already have the size that was written, column by column.
+     */
+    public void readDoubles(double[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        need(w * h << 3);
+        for (int x = 0; x < w; x++) {
+            final double[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                column[y] = NumberUtils.longBitsToDouble(readLong());
+            }
+        }
+    }
+
+    /**
+     * Reads a GreasedRegion's size and words into {@code region} if it has the same size, or into a new GreasedRegion
+     * otherwise (including if region is null).
+     * @return region, or a new GreasedRegion if region couldn't be reused
+     */
+    public GreasedRegion readRegion(GreasedRegion region)
+    {
+        final int w = readInt(), h = readInt();
+        if(w <= 0 || h <= 0)
+            throw new IllegalStateException("Saved state has a bad region size.");
+        if(region == null || region.width != w || region.height != h)
+            region = new GreasedRegion(w, h);
+        final long[] data = region.data;
+        need(data.length << 3);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = readLong();
+        }
+        return region;
+    }
+}
@@ -0,0 +1,114 @@
+package com.squidpony.saveload.demo;
+
+/**
+ * How big each layer of a {@link BinarySave} was and how long it took to write or read, for picking which codec and
+ * filters to use. Pass one to {@link BinarySave#write(MainApplication.Data, SaveCodec, int, SaveReport)} or
+ * {@link BinarySave#readInto(byte[], SaveCodec, MainApplication.Data, squidpony.squidgrid.mapping.DungeonGenerator,
+ * squidpony.squidmath.GWTRNG, SaveReport)}; the same report can be given to both to see a save and a load side by side.
+ */
+public class SaveReport {
+    /** Indexed by layer id; rawBytes is how long a layer was before filters and compression. */
+    public final int[] rawBytes = new int[256], storedBytes = new int[256], flags = new int[256];
+    /** Indexed by layer id. */
+    public final long[] writeNanos = new long[256], readNanos = new long[256];
+    /** The layers seen, in the order they were first written or read. */
+    private final int[] order = new int[256];
+    private int count;
+
+    void wrote(int id, int raw, int stored, int layerFlags, long nanos)
+    {
+        add(id);
+        rawBytes[id] = raw;
+        storedBytes[id] = stored;
+        flags[id] = layerFlags;
+        writeNanos[id] += nanos;
+    }
+
+    void read(int id, int raw, int stored, int layerFlags, long nanos)
+    {
+        add(id);
+        rawBytes[id] = raw;
+        storedBytes[id] = stored;
+        flags[id] = layerFlags;
+        readNanos[id] += nanos;
+    }
+
+    private void add(int id)
+    {
+        for (int i = 0; i < count; i++) {
+            if(order[i] == id)
+                return;
+        }
+        order[count++] = id;
+    }
+
+    public long totalRawBytes()
+    {
+        long t = 0;
+        for (int i = 0; i < count; i++) {
+            t += rawBytes[order[i]];
+        }
+        return t;
+    }
+
+    public long totalStoredBytes()
+    {
+        long t = 0;
+        for (int i = 0; i < count; i++) {
+            t += storedBytes[order[i]];
+        }
+        return t;
+    }
+
+    /**
+     * A table with one row per layer: its name, raw and stored size, the filters and codec it used, and the
+     * milliseconds spent writing and reading it, followed by the totals.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(64 * (count + 2));
+        pad(sb, "layer", 14);
+        pad(sb, "raw", 10);
+        pad(sb, "stored", 10);
+        pad(sb, "filters", 15);
+        pad(sb, "write ms", 9);
+        sb.append("read ms\n");
+        long write = 0, read = 0;
+        for (int i = 0; i < count; i++) {
+            final int id = order[i];
+            row(sb, BinarySave.nameOf(id), rawBytes[id], storedBytes[id], BinarySave.describeFlags(flags[id]),
+                    writeNanos[id], readNanos[id]);
+            write += writeNanos[id];
+            read += readNanos[id];
+        }
+        row(sb, "total", totalRawBytes(), totalStoredBytes(), "", write, read);
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, long raw, long stored, String filters, long write, long read)
+    {
+        pad(sb, name, 14);
+        pad(sb, Long.toString(raw), 10);
+        pad(sb, Long.toString(stored), 10);
+        pad(sb, filters, 15);
+        pad(sb, millis(write), 9);
+        sb.append(millis(read)).append('\n');
+    }
+
+    private static void pad(StringBuilder sb, String s, int width)
+    {
+        sb.append(s);
+        for (int i = s.length(); i < width; i++) {
+            sb.append(' ');
+        }
+    }
+
+    private static String millis(long nanos)
+    {
+        // GWT has no String.format, so this rounds to hundredths by hand
+        final long hundredths = (nanos + 5000L) / 10000L;
+        final long fraction = hundredths % 100L;
+        return (hundredths / 100L) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
@@ -0,0 +1,221 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.Gdx;
+
+/**
+ * Saves a {@link MainApplication.Data} without making the game wait for serialization or disk I/O. The only work done
+ * on the calling thread is {@link MainApplication.Data#snapshot()}, which copies the few layers gameplay changes in
+ * place and shares the rest; encoding, compressing, and writing the snapshot happen in {@link Background}, and the
+ * {@link Callback} is then run back on the game thread with {@code Gdx.app.postRunnable()}.
+ * <br>
+ * Core code can't start threads, since GWT has none, so {@link #IMMEDIATE} does the work right away; the desktop
+ * launcher passes in a Background that uses a single worker thread, which also keeps saves in order.
+ */
+public class SaveService {
+    /**
+     * Runs save tasks somewhere, in the order they were given.
+     */
+    public interface Background {
+        void execute(Runnable task);
+
+        /**
+         * Waits until every task already given to {@link #execute(Runnable)} has run, so the calling thread can read
+         * what they wrote.
+         */
+        void finish();
+    }
+
+    /**
+     * Told how a save went, on the game thread.
+     */
+    public interface Callback {
+        void saved(String name, int bytes);
+
+        void failed(String name, Exception e);
+    }
+
+    /**
+     * Does each task right away on the calling thread.
+     */
+    public static final Background IMMEDIATE = new Background() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void finish() {
+        }
+    };
+
+    private final Background background;
+    private final SaveStore store;
+    private final SaveCodec codec;
+    /**
+     * Which of {@link BinarySave#FILTER_XOR} and {@link BinarySave#FILTER_RLE} saves may use. A full save with no codec
+     * given to a {@link DirectSaveStore} is written by the store as-is, without filters.
+     */
+    public int filters = BinarySave.DEFAULT_FILTERS;
+    /**
+     * If true, each save encoded here logs a {@link SaveReport} of its layers' sizes and times, on the game thread.
+     */
+    public boolean report;
+
+    /**
+     * @param background where to encode and write saves
+     * @param store where saves are written
+     * @param codec compresses saves, or null to not compress them; used from the background while the game thread
+     *              may be loading, so it shouldn't share state between encoding and decoding
+     */
+    public SaveService(Background background, SaveStore store, SaveCodec codec)
+    {
+        this.background = background;
+        this.store = store;
+        this.codec = codec;
+    }
+
+    public SaveStore getStore() {
+        return store;
+    }
+
+    /**
+     * Waits until every save, write, and append already given to this SaveService is done. Anything that reads or
+     * deletes from the {@link #getStore() store} directly on the game thread should call this first, or a task still
+     * waiting in the background could replace what it read afterwards, such as a save made just before a load.
+     */
+    public void finish()
+    {
+        background.finish();
+    }
+
+    /**
+     * Takes a snapshot of {@code live} now, then writes it under {@code name} in the background.
+     * @param name what to save it as in the {@link SaveStore}
+     * @param live the Data to save; its stateA and stateB should already be current, and for a recipe save it must
+     *             have generatedDeco and generatedColors
+     * @param recipe true to write {@link BinarySave#writeRecipe(MainApplication.Data, SaveCodec)}, false for a full save
+     * @param callback told when the save is done or has failed; may be null
+     */
+    public void save(String name, MainApplication.Data live, boolean recipe, Callback callback)
+    {
+        save(name, live, recipe, null, callback);
+    }
+
+    /**
+     * Takes a snapshot of {@code live} now, then writes it under {@code name} in the background, and if that worked,
+     * runs {@code afterWrite} there too before anything given to this SaveService later.
+     * @param name what to save it as in the {@link SaveStore}
+     * @param live the Data to save; its stateA and stateB should already be current, and for a recipe save it must
+     *             have generatedDeco and generatedColors
+     * @param recipe true to write {@link BinarySave#writeRecipe(MainApplication.Data, SaveCodec)}, false for a full save,
+     *               which a {@link DirectSaveStore} writes itself if there is no codec
+     * @param afterWrite run in the background once the save is written; may be null
+     * @param callback told when the save is done or has failed; may be null
+     */
+    public void save(final String name, MainApplication.Data live, final boolean recipe, final Runnable afterWrite,
+                     final Callback callback)
+    {
+        final MainApplication.Data snapshot = live.snapshot();
+        final int filters = this.filters;
+        final SaveReport report = this.report ? new SaveReport() : null;
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int length;
+                    if(!recipe && codec == null && store instanceof DirectSaveStore)
+                        length = (int) Math.min(Integer.MAX_VALUE, ((DirectSaveStore) store).writeData(name, snapshot));
+                    else {
+                        byte[] bytes = recipe ? BinarySave.writeRecipe(snapshot, codec, filters, report)
+                                : BinarySave.write(snapshot, codec, filters, report);
+                        store.write(name, bytes);
+                        length = bytes.length;
+                        if(report != null)
+                            log(name, report);
+                    }
+                    if(afterWrite != null)
+                        afterWrite.run();
+                    succeeded(name, length, callback);
+                } catch (Exception e) {
+                    failed(name, e, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores {@code bytes} under {@code name}, in the background and after any saves already given to this
+     * SaveService, for small things that are ready to write, such as a {@link SaveHeader}.
+     * @param bytes the bytes to write; this SaveService keeps them, so they must not be changed afterwards
+     * @param callback told when the write is done or has failed; may be null
+     */
+    public void write(final String name, final byte[] bytes, final Callback callback)
+    {
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.write(name, bytes);
+                    succeeded(name, bytes.length, callback);
+                } catch (Exception e) {
+                    failed(name, e, callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends {@code bytes} to what is stored under {@code name}, in the background and after any saves already given
+     * to this SaveService.
+     * @param bytes the bytes to append; this SaveService keeps them, so they must not be changed afterwards
+     * @param callback told when the append is done or has failed; may be null
+     */
+    public void append(final String name, final byte[] bytes, final Callback callback)
+    {
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.append(name, bytes);
+                    succeeded(name, bytes.length, callback);
+                } catch (Exception e) {
+                    failed(name, e, callback);
+                }
+            }
+        });
+    }
+
+    private static void log(final String name, final SaveReport report)
+    {
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                Gdx.app.log("SaveLoadDemo", "Wrote " + name + ":\n" + report);
+            }
+        });
+    }
+
+    private static void succeeded(final String name, final int bytes, final Callback callback)
+    {
+        if(callback == null)
+            return;
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                callback.saved(name, bytes);
+            }
+        });
+    }
+
+    private static void failed(final String name, final Exception e, final Callback callback)
+    {
+        if(callback == null)
+            return;
+        Gdx.app.postRunnable(new Runnable() {
+            @Override
+            public void run() {
+                callback.failed(name, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.squidpony.saveload.demo;
+
+import squidpony.squidgrid.mapping.DungeonGenerator;
+import squidpony.squidmath.GWTRNG;
+
+/**
+ * A numbered set of saves, each with its own journal of autosaved turns and a small {@link SaveHeader} kept under its
+ * own name next to it. {@link #list()} only reads the headers, once, and then keeps them up to date as slots are saved,
+ * so a menu of many slots opens without reading any save; a slot's save is only read when it is
+ * {@link #load(int, MainApplication.Data, SaveCodec, DungeonGenerator, GWTRNG, SaveReport)}ed.
+ * <br>
+ * Slot 0 is saved as "SavedBinary", the name the game used before it had slots, so older saves load into it; slot n is
+ * saved as "Slot" + n. A slot's journal adds ".journal" to that name, and its header ".header". A header is written
+ * after its save and journal entries, in the same {@link SaveService} background, so it never describes a save that
+ * hasn't been written yet. Autosaved turns only rewrite it when they compact or every {@link #headerEvery} turns, so
+ * it can be that many turns behind the journal if the game stops between them.
+ */
+public class SaveSlots {
+    private final SaveService saves;
+    private final SaveJournal[] journals;
+    private final SaveHeader[] headers;
+    private boolean listed;
+    /**
+     * How many turns {@link #keepTurn(int, MainApplication.Data, boolean, SaveService.Callback)} can autosave before
+     * it rewrites a slot's header, when it doesn't compact; the header is much bigger than most journal entries.
+     */
+    public int headerEvery = 25;
+
+    /**
+     * @param saves writes saves, journals, and headers
+     * @param count how many slots there are
+     * @param compactEvery how many turns each slot journals before folding them into a new save
+     */
+    public SaveSlots(SaveService saves, int count, int compactEvery)
+    {
+        this.saves = saves;
+        journals = new SaveJournal[count];
+        headers = new SaveHeader[count];
+        for (int i = 0; i < count; i++) {
+            journals[i] = new SaveJournal(saves, nameOf(i), compactEvery);
+        }
+    }
+
+    public int count() {
+        return journals.length;
+    }
+
+    /**
+     * Gets the name slot's save is kept under in the {@link SaveStore}.
+     */
+    public static String nameOf(int slot)
+    {
+        return slot == 0 ? "SavedBinary" : "Slot" + slot;
+    }
+
+    public SaveJournal journal(int slot) {
+        return journals[slot];
+    }
+
+    /**
+     * Gets the header of every slot, reading them from the store the first time only. The array is indexed by slot
+     * and has null for empty slots; it is shared and kept current by this, so it shouldn't be changed.
+     */
+    public SaveHeader[] list()
+    {
+        if(!listed)
+        {
+            saves.finish();
+            final SaveStore store = saves.getStore();
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = SaveHeader.read(store.read(nameOf(i) + ".header"));
+            }
+            listed = true;
+        }
+        return headers;
+    }
+
+    /**
+     * Saves {@code data} to slot and starts its journal over after it; see
+     * {@link SaveJournal#compact(MainApplication.Data, boolean, SaveService.Callback)}.
+     */
+    public void keep(int slot, MainApplication.Data data, boolean recipe, SaveService.Callback callback)
+    {
+        journals[slot].compact(data, recipe, callback);
+        writeHeader(slot, data, callback);
+    }
+
+    /**
+     * Autosaves the turn {@code data} just took to slot; see
+     * {@link SaveJournal#record(MainApplication.Data, boolean, SaveService.Callback)}. The header is only rewritten if
+     * this compacted or it is at least {@link #headerEvery} turns old.
+     */
+    public void keepTurn(int slot, MainApplication.Data data, boolean recipe, SaveService.Callback callback)
+    {
+        final SaveHeader old = list()[slot];
+        if(journals[slot].record(data, recipe, callback) || old == null || old.genStateA != data.genStateA
+                || old.genStateB != data.genStateB || data.turn - old.turn >= headerEvery || data.turn < old.turn)
+            writeHeader(slot, data, callback);
+    }
+
+    private void writeHeader(int slot, MainApplication.Data data, SaveService.Callback callback)
+    {
+        final SaveHeader old = list()[slot];
+        SaveHeader header = old != null ? old : new SaveHeader();
+        // a slot keeps when it was started for as long as it holds the same dungeon
+        header.describe(data, old != null && old.genStateA == data.genStateA && old.genStateB == data.genStateB
+                ? old.createdMillis : 0L);
+        headers[slot] = header;
+        saves.write(nameOf(slot) + ".header", header.write(), callback);
+    }
+
+    /**
+     * Reads slot's save into {@code data}, replays its journal, and starts journaling after it; if there is no journal
+     * for this save, the next turn compacts into a new snapshot and journal instead. Full saves are read
+     * straight from the store when it is a {@link DirectSaveStore}, and everything else with
+     * {@link BinarySave#readInto(byte[], SaveCodec, MainApplication.Data, DungeonGenerator, GWTRNG, SaveReport)}.
+     * Saves still being written in the background are finished first, so the save and journal read here always belong
+     * together.
+     * @return true if it was loaded, or false if the slot is empty
+     * @throws IllegalStateException if the save can't be read
+     */
+    public boolean load(int slot, MainApplication.Data data, SaveCodec codec, DungeonGenerator gen, GWTRNG rng,
+                        SaveReport report)
+    {
+        saves.finish();
+        final SaveStore store = saves.getStore();
+        final String name = nameOf(slot);
+        byte[] b;
+        if (store instanceof DirectSaveStore && ((DirectSaveStore) store).readData(name, data)) {
+            // a full save on desktop is read from its file straight into data's arrays
+            data.generatedDeco = null;
+            data.generatedColors = null;
+        }
+        else if ((b = store.read(name)) != null) {
+            // decodes straight into data's arrays rather than into a second Data that would then be copied
+            BinarySave.readInto(b, codec, data, gen, rng, report);
+        }
+        else
+            return false;
+        final int entries = SaveJournal.replay(store.read(journals[slot].getJournalName()), data);
+        // without a journal that follows this save, appended entries would never be replayed, so the next turn compacts
+        if (entries < 0)
+            journals[slot].restart();
+        else
+            journals[slot].begin(data, entries);
+        return true;
+    }
+
+    /**
+     * Removes slot's save, journal, and header.
+     */
+    public void delete(int slot)
+    {
+        // a save still waiting in the background would otherwise bring the slot back after it was deleted
+        saves.finish();
+        final SaveStore store = saves.getStore();
+        store.delete(nameOf(slot));
+        store.delete(journals[slot].getJournalName());
+        store.delete(nameOf(slot) + ".header");
+        headers[slot] = null;
+        journals[slot].restart();
+    }
+}
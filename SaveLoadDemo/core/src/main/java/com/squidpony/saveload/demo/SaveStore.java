@@ -0,0 +1,31 @@
+package com.squidpony.saveload.demo;
+
+/**
+ * Somewhere saves can be kept by name. {@link SaveService} may call {@link #write(String, byte[])} from a background
+ * thread, so implementations that can be used on one should replace a save all at once, never leaving a partly-written
+ * one behind.
+ */
+public interface SaveStore {
+    /**
+     * Stores {@code bytes} under {@code name}, replacing anything already there.
+     * @throws IllegalStateException if the save couldn't be written
+     */
+    void write(String name, byte[] bytes);
+
+    /**
+     * Adds {@code bytes} to the end of what is stored under {@code name}, or stores just them if there is nothing yet.
+     * An append cut off partway may leave only some of the bytes, so what is appended should carry its own length.
+     * @throws IllegalStateException if the bytes couldn't be written
+     */
+    void append(String name, byte[] bytes);
+
+    /**
+     * @return the bytes stored under {@code name}, or null if there are none
+     */
+    byte[] read(String name);
+
+    /**
+     * Removes anything stored under {@code name}.
+     */
+    void delete(String name);
+}
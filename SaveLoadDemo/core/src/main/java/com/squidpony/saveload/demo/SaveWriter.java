@@ -0,0 +1,196 @@
+package com.squidpony.saveload.demo;
+
+import com.badlogic.gdx.utils.NumberUtils;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Writes primitives and whole map-sized arrays into a growable byte array, little-endian. This is plain Java with no
+ * java.nio or java.io, so it works the same on GWT as on desktop and Android. Arrays are written column by column, the
+ * same way they are indexed ({@code map[x][y]}), and a {@link GreasedRegion} is written as its raw {@code long} words.
+ */
+public class SaveWriter {
+    private byte[] bytes;
+    private int size;
+
+    public SaveWriter()
+    {
+        this(1024);
+    }
+
+    public SaveWriter(int capacity)
+    {
+        bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * @return how many bytes have been written so far
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Discards everything written so far, keeping the same backing array.
+     */
+    public void reset()
+    {
+        size = 0;
+    }
+
+    /**
+     * @return the backing array, which may be longer than {@link #size()}; not a copy
+     */
+    public byte[] buffer()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return a copy of the bytes written so far, exactly {@link #size()} long
+     */
+    public byte[] toByteArray()
+    {
+        byte[] out = new byte[size];
+        System.arraycopy(bytes, 0, out, 0, size);
+        return out;
+    }
+
+    private void ensure(int more)
+    {
+        if(size + more > bytes.length)
+        {
+            byte[] next = new byte[Math.max(bytes.length << 1, size + more)];
+            System.arraycopy(bytes, 0, next, 0, size);
+            bytes = next;
+        }
+    }
+
+    public void writeByte(int b)
+    {
+        ensure(1);
+        bytes[size++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] b, int offset, int length)
+    {
+        ensure(length);
+        System.arraycopy(b, offset, bytes, size, length);
+        size += length;
+    }
+
+    public void writeShort(int s)
+    {
+        ensure(2);
+        bytes[size++] = (byte) s;
+        bytes[size++] = (byte) (s >>> 8);
+    }
+
+    public void writeInt(int i)
+    {
+        ensure(4);
+        bytes[size++] = (byte) i;
+        bytes[size++] = (byte) (i >>> 8);
+        bytes[size++] = (byte) (i >>> 16);
+        bytes[size++] = (byte) (i >>> 24);
+    }
+
+    /**
+     * Overwrites 4 bytes that were already written at {@code position}, such as a length that wasn't known yet.
+     */
+    public void setInt(int position, int i)
+    {
+        bytes[position] = (byte) i;
+        bytes[position + 1] = (byte) (i >>> 8);
+        bytes[position + 2] = (byte) (i >>> 16);
+        bytes[position + 3] = (byte) (i >>> 24);
+    }
+
+    public void writeLong(long l)
+    {
+        writeInt((int) l);
+        writeInt((int) (l >>> 32));
+    }
+
+    public void writeFloat(float f)
+    {
+        writeInt(NumberUtils.floatToRawIntBits(f));
+    }
+
+    public void writeDouble(double d)
+    {
+        writeLong(NumberUtils.doubleToLongBits(d));
+    }
+
+    /**
+     * Writes every char in {@code map}, 2 bytes each, column by column.
+     */
+    public void writeChars(char[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        ensure(w * h << 1);
+        final byte[] bytes = this.bytes;
+        int p = size;
+        char c;
+        for (int x = 0; x < w; x++) {
+            final char[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                c = column[y];
+                bytes[p++] = (byte) c;
+                bytes[p++] = (byte) (c >>> 8);
+            }
+        }
+        size = p;
+    }
+
+    /**
+     * Writes every float in {@code map} as its raw int bits, 4 bytes each, column by column.
+     */
+    public void writeFloats(float[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        ensure(w * h << 2);
+        final byte[] bytes = this.bytes;
+        int p = size, i;
+        for (int x = 0; x < w; x++) {
+            final float[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                i = NumberUtils.floatToRawIntBits(column[y]);
+                bytes[p++] = (byte) i;
+                bytes[p++] = (byte) (i >>> 8);
+                bytes[p++] = (byte) (i >>> 16);
+                bytes[p++] = (byte) (i >>> 24);
+            }
+        }
+        size = p;
+    }
+
+    /**
+     * Writes every double in {@code map} as its long bits, 8 bytes each, column by column.
+     */
+    public void writeDoubles(double[][] map)
+    {
+        final int w = map.length, h = map[0].length;
+        ensure(w * h << 3);
+        for (int x = 0; x < w; x++) {
+            final double[] column = map[x];
+            for (int y = 0; y < h; y++) {
+                writeLong(NumberUtils.doubleToLongBits(column[y]));
+            }
+        }
+    }
+
+    /**
+     * Writes the width, height, and raw {@code long} words of {@code region}.
+     */
+    public void writeRegion(GreasedRegion region)
+    {
+        final long[] data = region.data;
+        writeInt(region.width);
+        writeInt(region.height);
+        ensure(data.length << 3);
+        for (int i = 0; i < data.length; i++) {
+            writeLong(data[i]);
+        }
+    }
+}
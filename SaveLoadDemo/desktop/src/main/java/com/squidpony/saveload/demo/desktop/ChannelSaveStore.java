@@ -0,0 +1,315 @@
+package com.squidpony.saveload.demo.desktop;
+
+import com.squidpony.saveload.demo.BinarySave;
+import com.squidpony.saveload.demo.DirectSaveStore;
+import com.squidpony.saveload.demo.MainApplication;
+import com.squidpony.saveload.demo.SaveReader;
+import com.squidpony.saveload.demo.SaveWriter;
+import squidpony.squidmath.GreasedRegion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link FileSaveStore} that writes and reads full saves through a FileChannel, a column at a time. A full save is
+ * laid out by {@link BinarySave#writeFullHeader(int, int)}, so every layer is at a fixed offset in the file; writing
+ * puts the columns of each layer into a direct buffer through a typed view and hands it to the channel whenever it
+ * fills, and reading fills the buffer from each layer's offset and copies its columns straight into the arrays a Data
+ * already has. Loading a huge map then takes about as long as the disk takes to read it, with no parsing and no byte
+ * array the size of the whole save, or even of one layer.
+ * <br>
+ * Nothing is memory-mapped, because Windows can't rename or replace a file while a mapping of it is alive, and a
+ * mapping is only released when its buffer happens to be garbage-collected; the temporary file a save is written to
+ * is closed before it replaces the old save, the same as in FileSaveStore.
+ * <br>
+ * Recipe saves, journals, and anything else written as bytes are kept the same way FileSaveStore keeps them.
+ */
+public class ChannelSaveStore extends FileSaveStore implements DirectSaveStore {
+    /** Bytes before the layer table: magic, version, codec, width, height, and layer count. */
+    private static final int HEADER = 19;
+    /** Bytes in each entry of the layer table. */
+    private static final int ENTRY = 11;
+
+    public ChannelSaveStore(Path directory)
+    {
+        super(directory);
+    }
+
+    @Override
+    public long writeData(String name, MainApplication.Data data) {
+        final int width = data.decoDungeon.length, height = data.decoDungeon[0].length;
+        final byte[] header = BinarySave.writeFullHeader(width, height);
+        final SaveWriter small = new SaveWriter(32);
+        final ByteBuffer buffer = columnBuffer(height);
+        Path target = path(name), temp = directory.resolve(name + ".sav.tmp");
+        long position = header.length;
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                buffer.put(header);
+                for (int id : BinarySave.fullLayers()) {
+                    put(id, data, channel, buffer, small);
+                    position += BinarySave.layerLength(id, width, height);
+                }
+                flush(channel, buffer);
+                channel.force(false);
+            }
+            replace(temp, target);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't write save " + target, e);
+        }
+        return position;
+    }
+
+    @Override
+    public boolean readData(String name, MainApplication.Data data) {
+        Path file = path(name);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if(size < HEADER)
+                return false;
+            ByteBuffer head = read(channel, 0, HEADER);
+            if(head.getInt(0) != BinarySave.MAGIC)
+                return false;
+            final int version = head.getInt(4);
+            if(version < 1 || version > BinarySave.VERSION)
+                throw new IllegalStateException("Saved state has unknown version " + version + ".");
+            final int width = head.getInt(9), height = head.getInt(13), count = head.getShort(17) & 0xFFFF;
+            if(width <= 0 || height <= 0)
+                throw new IllegalStateException("Saved state has a bad map size.");
+            if(size < HEADER + (long) count * ENTRY)
+                throw new IllegalStateException("Saved state ended early.");
+            // finds where each layer is, making sure it's there, uncompressed, and the right size before changing data
+            ByteBuffer table = read(channel, HEADER, count * ENTRY);
+            final long[] offsets = new long[256];
+            long position = HEADER + (long) count * ENTRY;
+            for (int i = 0, entry = 0; i < count; i++, entry += ENTRY) {
+                final int id = table.get(entry) & 0xFF, type = table.get(entry + 1) & 0xFF,
+                        flags = table.get(entry + 2), raw = table.getInt(entry + 3), stored = table.getInt(entry + 7);
+                if(stored < 0)
+                    throw new IllegalStateException("Saved state has a bad layer length.");
+                if(BinarySave.typeOf(id) != 0) {
+                    if(type != BinarySave.typeOf(id))
+                        throw new IllegalStateException("Saved state has layer " + id + " with the wrong type.");
+                    if(flags == 0 && raw == stored && raw == BinarySave.layerLength(id, width, height))
+                        offsets[id] = position;
+                }
+                position += stored;
+            }
+            if(position > size)
+                throw new IllegalStateException("Saved state ended early.");
+            final int[] layers = BinarySave.fullLayers();
+            for (int id : layers) {
+                if(offsets[id] == 0)
+                    return false;
+            }
+            data.ensureLayers(width, height);
+            final ByteBuffer buffer = columnBuffer(height);
+            for (int id : layers) {
+                channel.position(offsets[id]);
+                // empty, so the first column of each layer is read from its own offset
+                buffer.clear().flip();
+                get(id, data, channel, buffer, offsets[id], width, height);
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read save " + file, e);
+        }
+    }
+
+    /**
+     * Gets a little-endian direct buffer big enough for a column of any layer of a map {@code height} cells tall, and
+     * for the save's header; the channel copies straight out of or into a direct buffer without another copy.
+     */
+    private static ByteBuffer columnBuffer(int height)
+    {
+        return ByteBuffer.allocateDirect(Math.max(1 << 16, height << 3)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes everything put in {@code buffer} to {@code channel} and clears it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Makes room for {@code needed} more bytes in {@code buffer}, writing what it has to {@code channel} if it is full.
+     */
+    private static void room(FileChannel channel, ByteBuffer buffer, int needed) throws IOException
+    {
+        if(buffer.remaining() < needed)
+            flush(channel, buffer);
+    }
+
+    /**
+     * Makes sure {@code buffer} has at least {@code needed} bytes left to get, reading more from {@code channel} after
+     * the ones it still has.
+     */
+    private static void need(FileChannel channel, ByteBuffer buffer, int needed) throws IOException
+    {
+        if(buffer.remaining() >= needed)
+            return;
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if(channel.read(buffer) < 0)
+                throw new IllegalStateException("Saved state ended early.");
+        }
+        buffer.flip();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+                throw new IllegalStateException("Saved state ended early.");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void put(int id, MainApplication.Data data, FileChannel channel, ByteBuffer buffer,
+                            SaveWriter small) throws IOException
+    {
+        switch (BinarySave.typeOf(id))
+        {
+            case BinarySave.TYPE_CHARS: {
+                for (char[] column : chars(id, data)) {
+                    room(channel, buffer, column.length << 1);
+                    buffer.asCharBuffer().put(column);
+                    buffer.position(buffer.position() + (column.length << 1));
+                }
+                break;
+            }
+            case BinarySave.TYPE_FLOATS: {
+                for (float[] column : floats(id, data)) {
+                    room(channel, buffer, column.length << 2);
+                    buffer.asFloatBuffer().put(column);
+                    buffer.position(buffer.position() + (column.length << 2));
+                }
+                break;
+            }
+            case BinarySave.TYPE_DOUBLES: {
+                for (double[] column : doubles(id, data)) {
+                    room(channel, buffer, column.length << 3);
+                    buffer.asDoubleBuffer().put(column);
+                    buffer.position(buffer.position() + (column.length << 3));
+                }
+                break;
+            }
+            case BinarySave.TYPE_REGION: {
+                GreasedRegion region = region(id, data);
+                room(channel, buffer, 8);
+                buffer.putInt(region.width).putInt(region.height);
+                for (int i = 0, n = region.data.length; i < n; ) {
+                    room(channel, buffer, 8);
+                    final int count = Math.min(n - i, buffer.remaining() >>> 3);
+                    buffer.asLongBuffer().put(region.data, i, count);
+                    buffer.position(buffer.position() + (count << 3));
+                    i += count;
+                }
+                break;
+            }
+            default:
+                small.reset();
+                BinarySave.writeLayer(id, data, small);
+                room(channel, buffer, small.size());
+                buffer.put(small.buffer(), 0, small.size());
+        }
+    }
+
+    private static void get(int id, MainApplication.Data data, FileChannel channel, ByteBuffer buffer, long offset,
+                            int width, int height) throws IOException
+    {
+        switch (BinarySave.typeOf(id))
+        {
+            case BinarySave.TYPE_CHARS: {
+                for (char[] column : chars(id, data)) {
+                    need(channel, buffer, column.length << 1);
+                    buffer.asCharBuffer().get(column);
+                    buffer.position(buffer.position() + (column.length << 1));
+                }
+                break;
+            }
+            case BinarySave.TYPE_FLOATS: {
+                for (float[] column : floats(id, data)) {
+                    need(channel, buffer, column.length << 2);
+                    buffer.asFloatBuffer().get(column);
+                    buffer.position(buffer.position() + (column.length << 2));
+                }
+                break;
+            }
+            case BinarySave.TYPE_DOUBLES: {
+                for (double[] column : doubles(id, data)) {
+                    need(channel, buffer, column.length << 3);
+                    buffer.asDoubleBuffer().get(column);
+                    buffer.position(buffer.position() + (column.length << 3));
+                }
+                break;
+            }
+            case BinarySave.TYPE_REGION: {
+                need(channel, buffer, 8);
+                if(buffer.getInt() != width || buffer.getInt() != height)
+                    throw new IllegalStateException("Saved state has a bad region size.");
+                final long[] words = region(id, data).data;
+                for (int i = 0, n = words.length; i < n; ) {
+                    need(channel, buffer, 8);
+                    final int count = Math.min(n - i, buffer.remaining() >>> 3);
+                    buffer.asLongBuffer().get(words, i, count);
+                    buffer.position(buffer.position() + (count << 3));
+                    i += count;
+                }
+                break;
+            }
+            default:
+                ByteBuffer bytes = read(channel, offset, BinarySave.layerLength(id, width, height));
+                BinarySave.readLayer(id, data, new SaveReader(bytes.array()), width, height);
+        }
+    }
+
+    private static char[][] chars(int id, MainApplication.Data data)
+    {
+        switch (id)
+        {
+            case BinarySave.DECO: return data.decoDungeon;
+            case BinarySave.BARE: return data.bareDungeon;
+            case BinarySave.LINE: return data.lineDungeon;
+            default: return data.prunedDungeon;
+        }
+    }
+
+    private static float[][] floats(int id, MainApplication.Data data)
+    {
+        return id == BinarySave.COLORS ? data.colors : data.bgColors;
+    }
+
+    private static double[][] doubles(int id, MainApplication.Data data)
+    {
+        return id == BinarySave.RESISTANCE ? data.resistance : data.visible;
+    }
+
+    private static GreasedRegion region(int id, MainApplication.Data data)
+    {
+        switch (id)
+        {
+            case BinarySave.BLOCKAGE: return data.blockage;
+            case BinarySave.SEEN: return data.seen;
+            case BinarySave.CURRENTLY_SEEN: return data.currentlySeen;
+            default: return data.floors;
+        }
+    }
+}
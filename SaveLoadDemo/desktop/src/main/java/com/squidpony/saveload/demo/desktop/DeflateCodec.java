@@ -0,0 +1,72 @@
+package com.squidpony.saveload.demo.desktop;
+
+import com.squidpony.saveload.demo.SaveCodec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses save layers with java.util.zip's Deflater, which GWT doesn't have, so this lives with the desktop launcher.
+ */
+public class DeflateCodec implements SaveCodec {
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[8192];
+
+    public DeflateCodec()
+    {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level a Deflater compression level, from 0 (store) to 9 (smallest), or -1 for the default
+     */
+    public DeflateCodec(int level)
+    {
+        deflater = new Deflater(level);
+    }
+
+    @Override
+    public int id() {
+        return 1;
+    }
+
+    @Override
+    public byte[] encode(byte[] raw, int offset, int length) {
+        deflater.reset();
+        deflater.setInput(raw, offset, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == buffer.length) {
+                byte[] next = new byte[buffer.length << 1];
+                System.arraycopy(buffer, 0, next, 0, size);
+                buffer = next;
+            }
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        byte[] out = new byte[size];
+        System.arraycopy(buffer, 0, out, 0, size);
+        return out;
+    }
+
+    @Override
+    public void decode(byte[] stored, int offset, int length, byte[] out, int rawLength) {
+        inflater.reset();
+        inflater.setInput(stored, offset, length);
+        try {
+            int size = 0;
+            while (size < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(out, size, rawLength - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                size += n;
+            }
+            if (size != rawLength)
+                throw new IllegalStateException("Saved state layer is truncated.");
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Saved state layer is corrupt.", e);
+        }
+    }
+}
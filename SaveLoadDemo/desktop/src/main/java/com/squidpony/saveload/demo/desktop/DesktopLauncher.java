@@ -3,7 +3,17 @@ package com.squidpony.saveload.demo.desktop;
 import com.badlogic.gdx.Files.FileType;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.squidpony.saveload.demo.BinarySave;
+import com.squidpony.saveload.demo.LzCodec;
 import com.squidpony.saveload.demo.MainApplication;
+import com.squidpony.saveload.demo.SaveCodec;
+import com.squidpony.saveload.demo.SaveService;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /** Launches the desktop (LWJGL) application. */
 public class DesktopLauncher {
@@ -12,7 +22,86 @@ public class DesktopLauncher {
     }
 
     private static LwjglApplication createApplication() {
-        return new LwjglApplication(new MainApplication(), getDefaultConfiguration());
+        MainApplication app = new MainApplication(getSaveCodec(System.getProperty("saveload.codec", "none")),
+                new ChannelSaveStore(Paths.get(System.getProperty("user.home"), ".prefs", "SaveLoadDemo-saves")),
+                getSaveBackground());
+        // full saves are written and read a column at a time through a FileChannel here when there is no codec, which
+        // is faster to load than rebuilding a recipe save once maps get big
+        app.saveRecipes = false;
+        app.getSaves().filters = getSaveFilters(System.getProperty("saveload.filters", "xor,rle"));
+        app.getSaves().report = Boolean.getBoolean("saveload.report");
+        return new LwjglApplication(app, getDefaultConfiguration());
+    }
+
+    /**
+     * Gets the codec named by the saveload.codec system property: "none", "lz", "deflate", or "deflate:" followed by
+     * a Deflater level from 0 to 9. Anything other than none writes full saves as bytes instead of a column at a time.
+     */
+    private static SaveCodec getSaveCodec(String name) {
+        if (name.equals("none"))
+            return null;
+        if (name.equals("lz"))
+            return new LzCodec();
+        if (name.equals("deflate"))
+            return new DeflateCodec();
+        if (name.startsWith("deflate:"))
+            return new DeflateCodec(Integer.parseInt(name.substring(8)));
+        throw new IllegalArgumentException("Unknown saveload.codec " + name);
+    }
+
+    /**
+     * Gets the filters named by the saveload.filters system property, a comma-separated list of "xor" and "rle", or
+     * "none".
+     */
+    private static int getSaveFilters(String names) {
+        int filters = 0;
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.equals("xor"))
+                filters |= BinarySave.FILTER_XOR;
+            else if (name.equals("rle"))
+                filters |= BinarySave.FILTER_RLE;
+            else if (!name.equals("none") && !name.isEmpty())
+                throw new IllegalArgumentException("Unknown saveload.filters " + name);
+        }
+        return filters;
+    }
+
+    /**
+     * One daemon thread, so saves finish in the order they were made without holding up exiting the game; a save
+     * cut off by exiting only leaves a temporary file behind, never a broken save.
+     */
+    private static SaveService.Background getSaveBackground() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SaveLoadDemo-save");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        return new SaveService.Background() {
+            @Override
+            public void execute(Runnable task) {
+                executor.execute(task);
+            }
+
+            @Override
+            public void finish() {
+                // the executor runs tasks in order, so once this empty one has run, everything before it has too
+                try {
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                        }
+                    }).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Couldn't finish saving", e.getCause());
+                }
+            }
+        };
     }
 
     private static LwjglApplicationConfiguration getDefaultConfiguration() {
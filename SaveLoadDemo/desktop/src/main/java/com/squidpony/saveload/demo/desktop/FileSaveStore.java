@@ -0,0 +1,98 @@
+package com.squidpony.saveload.demo.desktop;
+
+import com.squidpony.saveload.demo.SaveStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps each save as its own file in a directory. A save is first written to a temporary file next to its target and
+ * then renamed over it, so a crash or a write that fails partway leaves the previous save intact; appends go straight
+ * onto the end of the file. This is safe to use from {@link com.squidpony.saveload.demo.SaveService}'s background
+ * thread.
+ */
+public class FileSaveStore implements SaveStore {
+    protected final Path directory;
+
+    public FileSaveStore(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    @Override
+    public void write(String name, byte[] bytes) {
+        Path target = path(name);
+        Path temp = directory.resolve(name + ".sav.tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // the rename can reach the disk before the data does, unless the data is forced there first
+                channel.force(true);
+            }
+            replace(temp, target);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't write save " + target, e);
+        }
+    }
+
+    @Override
+    public void append(String name, byte[] bytes) {
+        Path target = path(name);
+        try {
+            Files.createDirectories(directory);
+            Files.write(target, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't append to save " + target, e);
+        }
+    }
+
+    @Override
+    public byte[] read(String name) {
+        try {
+            return Files.readAllBytes(path(name));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read save " + name, e);
+        }
+    }
+
+    @Override
+    public void delete(String name) {
+        try {
+            Files.deleteIfExists(path(name));
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't delete save " + name, e);
+        }
+    }
+
+    /**
+     * Gets the file the save called name is kept in.
+     */
+    protected Path path(String name) {
+        return directory.resolve(name + ".sav");
+    }
+
+    /**
+     * Renames temp over target, atomically if the file system can.
+     */
+    protected void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,39 +1,252 @@
 package com.github.tommyettinger;
 
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.math.MathUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
  * Created by Tommy Ettinger on 8/2/2019.
+ * <br>
+ * Equalizes the lightness of images, spreading the lumas an image uses over the whole range, while keeping the warmth
+ * and mildness of each pixel. The work is split into horizontal bands of rows, each of which builds its own histogram
+ * and then remaps its own pixels; this class runs the bands one after another, which works everywhere including GWT,
+ * and subclasses can override {@link #bandCount()} and {@link #runBands(int, BandTask)} to run them in parallel.
+ * <br>
+ * The remapping can also be left to a shader: {@link #analyze(Pixmap)} only builds the table of equalized lumas, which
+ * {@link #makeLookup()} stores in a Pixmap for {@link ShaderDemo#fragmentShaderEqualizedWarmMild} to sample.
  */
 public class ColorEqualizer {
+    /**
+     * Some work on one band of rows; {@link #runBands(int, BandTask)} calls {@link #run(int)} once for each band.
+     */
+    public interface BandTask {
+        void run(int band);
+    }
+
     private final float[] lumas = new float[2041];
+    private int[][] histograms = new int[1][2041];
+    private int[] transparent = new int[1];
+    private int[] colors;
     public ColorEqualizer()
     {
     }
+
+    /**
+     * How many bands of rows to split each image into; this runs them one at a time, so the default is 1.
+     * @return how many bands to use, at least 1
+     */
+    protected int bandCount()
+    {
+        return 1;
+    }
+
+    /**
+     * Calls {@code task.run(band)} for every band from 0 to {@code bands - 1}, returning once all have finished. This
+     * runs them in order on the calling thread; the bands don't touch the same pixels or histograms, so subclasses can
+     * run them all at once.
+     * @param bands how many bands there are
+     * @param task the work to do on each band
+     */
+    protected void runBands(int bands, BandTask task)
+    {
+        for (int b = 0; b < bands; b++) {
+            task.run(b);
+        }
+    }
+
+    /**
+     * Equalizes the lightness of {@code pm} in place, and returns it. RGBA8888 Pixmaps are read and written through
+     * their pixel buffer in bulk, except on GWT, where that buffer isn't kept in sync with the image; other formats,
+     * and GWT, go one pixel at a time.
+     * @param pm a Pixmap that will be modified
+     * @return {@code pm}, after modification
+     */
     public Pixmap process(Pixmap pm)
     {
         final int w = pm.getWidth();
         final int h = pm.getHeight();
-        float area = (w * h - 1f);
         if((w == 1 && h == 1) || w == 0 || h == 0)
             return pm;
+        final int[] colors = read(pm);
+        final IntBuffer ints = pixelInts(pm);
+        final int bands = Math.min(bandCount(), h);
+        count(colors, ints, w, h, bands);
+        final float[] lumas = this.lumas;
+        runBands(bands, new BandTask() {
+            @Override
+            public void run(int band) {
+                final int start = band * h / bands * w, end = (band + 1) * h / bands * w;
+                float luma, warm, mild;
+                int c;
+                for (int i = start; i < end; i++) {
+                    c = colors[i];
+                    luma = lumas[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)];
+                    warm = (c >>> 24) - (c >>> 8 & 0xFF);
+                    mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF)) * 0.5f;
+                    colors[i] =
+                            MathUtils.clamp((int) (luma + 0.625f * warm - mild), 0, 255)<<24|
+                            MathUtils.clamp((int) (luma - 0.375f * warm + mild), 0, 255)<<16|
+                            MathUtils.clamp((int) (luma - 0.375f * warm - mild), 0, 255)<<8|
+                            (c & 0xFF);
+                }
+                if(ints != null) {
+                    IntBuffer view = ints.duplicate();
+                    view.position(start);
+                    view.put(colors, start, end - start);
+                }
+            }
+        });
+        if(ints == null) {
+            Pixmap.Blending blending = pm.getBlending();
+            pm.setBlending(Pixmap.Blending.None);
+            for (int y = 0, i = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    pm.drawPixel(x, y, colors[i++]);
+                }
+            }
+            pm.setBlending(blending);
+        }
+        return pm;
+    }
+
+    /**
+     * Builds the table of equalized lumas for {@code pm} without changing it, so the remapping can be done in a shader
+     * with the table from {@link #makeLookup()}; this is much faster than {@link #process(Pixmap)} for large images,
+     * since only the histogram is computed here. As with process(), a Pixmap with one pixel or none isn't equalized; the
+     * table then leaves every luma as it is.
+     * @param pm a Pixmap to analyze; will not be modified
+     */
+    public void analyze(Pixmap pm)
+    {
+        final int w = pm.getWidth();
+        final int h = pm.getHeight();
+        if((w == 1 && h == 1) || w == 0 || h == 0) {
+            identity();
+            return;
+        }
+        count(read(pm), pixelInts(pm), w, h, Math.min(bandCount(), h));
+    }
+
+    /**
+     * Stores the table of equalized lumas from the last call to {@link #analyze(Pixmap)} or {@link #process(Pixmap)}
+     * in a new 2048x1 RGBA8888 Pixmap. The luma {@code 3*r + 4*g + b} of a color, with channels from 0 to 255, is the
+     * x position to look up; red holds the whole part of the equalized luma, from 0 to 255, and green its fraction in
+     * 1/256ths. A shader can read it with {@code texel.r + texel.g * (1.0 / 256.0)}, which goes from 0.0 to 1.0.
+     * @return a new Pixmap that should be disposed when no longer needed
+     */
+    public Pixmap makeLookup()
+    {
+        Pixmap lookup = new Pixmap(2048, 1, Pixmap.Format.RGBA8888);
+        lookup.setBlending(Pixmap.Blending.None);
+        int q;
+        for (int i = 0; i < 2041; i++) {
+            q = MathUtils.clamp((int) (lumas[i] * 256f + 0.5f), 0, 0xFFFF);
+            lookup.drawPixel(i, 0, q << 16 | 0xFF);
+        }
+        return lookup;
+    }
+
+    /**
+     * Gets the colors of {@code pm} as RGBA8888 ints, row by row from the top. RGBA8888 Pixmaps outside GWT are not read
+     * here; their bands are copied from {@link #pixelInts(Pixmap)} by {@link #count(int[], IntBuffer, int, int, int)}.
+     */
+    private int[] read(Pixmap pm)
+    {
+        final int w = pm.getWidth();
+        final int h = pm.getHeight();
+        final int n = w * h;
+        if(colors == null || colors.length < n)
+            colors = new int[n];
+        if(pixelInts(pm) == null) {
+            for (int y = 0, i = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    colors[i++] = pm.getPixel(x, y);
+                }
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Gets the pixels of {@code pm} as RGBA8888 ints if they can be used in bulk, or null if they must be read and
+     * written one pixel at a time.
+     */
+    private static IntBuffer pixelInts(Pixmap pm)
+    {
+        if(pm.getFormat() != Pixmap.Format.RGBA8888 || Gdx.app.getType() == Application.ApplicationType.WebGL)
+            return null;
+        ByteBuffer pixels = pm.getPixels().duplicate();
+        pixels.clear();
+        return pixels.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Fills {@link #lumas} so every luma maps to itself, for images too small to equalize.
+     */
+    private void identity()
+    {
+        for (int i = 0; i < 2041; i++) {
+            lumas[i] = i * 0.125f;
+        }
+    }
+
+    /**
+     * Builds a histogram of lumas for each band, copying each band from {@code ints} first if it isn't null, then
+     * merges the histograms and fills {@link #lumas} with the equalized luma for each luma.
+     */
+    private void count(final int[] colors, final IntBuffer ints, final int w, final int h, final int bands)
+    {
+        if(histograms.length < bands) {
+            histograms = new int[bands][2041];
+            transparent = new int[bands];
+        }
+        final int[][] histograms = this.histograms;
+        final int[] transparent = this.transparent;
+        runBands(bands, new BandTask() {
+            @Override
+            public void run(int band) {
+                final int start = band * h / bands * w, end = (band + 1) * h / bands * w;
+                if(ints != null) {
+                    IntBuffer view = ints.duplicate();
+                    view.position(start);
+                    view.get(colors, start, end - start);
+                }
+                final int[] histogram = histograms[band];
+                Arrays.fill(histogram, 0);
+                int c, clear = 0;
+                for (int i = start; i < end; i++) {
+                    c = colors[i];
+                    if((c & 0x80) != 0)
+                        histogram[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)]++;
+                    else
+                        clear++;
+                }
+                transparent[band] = clear;
+            }
+        });
+        float area = (w * h - 1f);
         Arrays.fill(lumas, 0);
-        int c;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                if((c & 0x80) != 0) 
-                    lumas[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)]++;
-                else
-                    area--;
+        for (int b = 0; b < bands; b++) {
+            final int[] histogram = histograms[b];
+            for (int i = 0; i < 2041; i++) {
+                lumas[i] += histogram[i];
             }
+            area -= transparent[b];
+        }
+        // with no more than one opaque pixel there is nothing to spread out, and invArea would be infinite
+        if(area <= 0f) {
+            identity();
+            return;
         }
         final float invArea = 1f / area;
 
-        c = 0;
+        int c = 0;
 //        int minLuma = 0, maxLuma = 2040;
 //        for (int i = 0; i < 2041; i++) {
 //            if(lumas[i] != 0)
@@ -50,21 +263,5 @@ public class ColorEqualizer {
             }
         }
 //        maxLuma = 2048 + maxLuma >>> 4;
-        float luma, warm, mild;
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                c = pm.getPixel(x, y);
-                luma = lumas[(c >>> 23 & 0x1FE) + (c >>> 24) + (c >>> 14 & 0x3FC) + (c >>> 8 & 0xFF)];
-                warm = (c >>> 24) - (c >>> 8 & 0xFF);
-                mild = ((c >>> 16 & 0xFF) - (c >>> 8 & 0xFF)) * 0.5f;
-                pm.drawPixel(x, y, 
-                        MathUtils.clamp((int) (luma + 0.625f * warm - mild), 0, 255)<<24|
-                        MathUtils.clamp((int) (luma - 0.375f * warm + mild), 0, 255)<<16|
-                        MathUtils.clamp((int) (luma - 0.375f * warm - mild), 0, 255)<<8|
-                        (c & 0xFF));
-
-            }
-        }
-        return pm;
     }
 }
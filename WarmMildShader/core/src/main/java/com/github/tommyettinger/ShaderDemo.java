@@ -20,20 +20,58 @@ import static com.badlogic.gdx.Gdx.input;
 public class ShaderDemo extends ApplicationAdapter {
 
     private SpriteBatch batch;
-    private Texture screenTexture;
+    private Texture screenTexture, lookupTexture;
+    private FileHandle loaded;
 
     private long startTime = 0L, lastProcessedTime = 0L;
-    private ShaderProgram shader, hueShader;
+    private ShaderProgram shader, equalizedShader, hueShader;
     private Vector3 add, mul;
     
     private ColorEqualizer eq;
-    
+    /**
+     * If true, {@link #load(FileHandle)} only builds the histogram of each image on the CPU, and the equalized lumas
+     * are looked up in {@link #fragmentShaderEqualizedWarmMild}; if false, each image is equalized on the CPU. Pressing
+     * E toggles this and reloads the current image.
+     */
+    public boolean equalizeOnGpu = true;
+
+    public ShaderDemo() {
+        this(new ColorEqualizer());
+    }
+
+    /**
+     * @param equalizer the ColorEqualizer to use for loaded images, such as one that runs on several threads
+     */
+    public ShaderDemo(ColorEqualizer equalizer) {
+        eq = equalizer;
+    }
+
     public void load(FileHandle file) {
         if(!file.exists())
             return;
-        screenTexture = new Texture(eq.process(new Pixmap(file)), Pixmap.Format.RGBA8888, false);
+        loaded = file;
+        Pixmap pm = new Pixmap(file);
+        if(screenTexture != null)
+            screenTexture.dispose();
+        if(lookupTexture != null) {
+            lookupTexture.dispose();
+            lookupTexture = null;
+        }
+        if(equalizeOnGpu) {
+            eq.analyze(pm);
+            Pixmap lookup = eq.makeLookup();
+            lookupTexture = new Texture(lookup, Pixmap.Format.RGBA8888, false);
+            lookupTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+            lookup.dispose();
+            screenTexture = new Texture(pm, Pixmap.Format.RGBA8888, false);
+        }
+        else
+            screenTexture = new Texture(eq.process(pm), Pixmap.Format.RGBA8888, false);
+        pm.dispose();
 //        screenTexture = new Texture(file, Pixmap.Format.RGBA8888, false);
         screenTexture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        if(batch != null && !batch.getShader().equals(hueShader))
+            batch.setShader(equalizeOnGpu ? equalizedShader : shader);
         Gdx.graphics.setWindowedMode(screenTexture.getWidth(), screenTexture.getHeight());
     }
 
@@ -41,15 +79,16 @@ public class ShaderDemo extends ApplicationAdapter {
     public void create() {
         lastProcessedTime = 0L;
         startTime = TimeUtils.millis();
-        eq = new ColorEqualizer();
         add = new Vector3(0f, 0f, 0f);
 //        add = new Vector3(0.1f, 0.95f, swayRandomized(12345, TimeUtils.timeSinceMillis(startTime) * 0x1p-9f) * 0.4f + 0.2f);
         mul = new Vector3(1f, 1f, 1f);
         shader = new ShaderProgram(vertexShader, fragmentShaderOnlyWarmMild);
         if (!shader.isCompiled()) throw new GdxRuntimeException("Couldn't compile shader: " + shader.getLog());
+        equalizedShader = new ShaderProgram(vertexShader, fragmentShaderEqualizedWarmMild);
+        if (!equalizedShader.isCompiled()) throw new GdxRuntimeException("Couldn't compile shader: " + equalizedShader.getLog());
         hueShader = new ShaderProgram(vertexShader, fragmentShaderHueLights);
         if (!hueShader.isCompiled()) throw new GdxRuntimeException("Couldn't compile shader: " + hueShader.getLog());
-        batch = new SpriteBatch(1000, shader);
+        batch = new SpriteBatch(1000, equalizeOnGpu ? equalizedShader : shader);
         batch.enableBlending();
         load(Gdx.files.internal("Mona_Lisa.jpg"));
     }
@@ -64,7 +103,13 @@ public class ShaderDemo extends ApplicationAdapter {
         //you can also use
 //        batch.setColor(1f, 1f, 1f, 1f);
         batch.getProjectionMatrix().setToOrtho2D(0, 0, screenTexture.getWidth(), screenTexture.getHeight());
+        if(batch.getShader().equals(equalizedShader)) {
+            lookupTexture.bind(1);
+            Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+        }
         batch.begin();
+        if(batch.getShader().equals(equalizedShader))
+            batch.getShader().setUniformi("u_lookup", 1);
 //        shader.setUniformf("u_mul", 0.9f, 0.7f, 0.75f);
 //        shader.setUniformf("u_add", 0.05f, 0.14f, 0.16f);
 //        shader.setUniformf("u_mul", 1f, 1f, 1f);
@@ -90,10 +135,17 @@ public class ShaderDemo extends ApplicationAdapter {
         lastProcessedTime = TimeUtils.millis();
         if(input.isKeyPressed(Keys.SPACE))
         {
-            if(batch.getShader().equals(shader))
-                batch.setShader(hueShader);
+            if(batch.getShader().equals(hueShader))
+                batch.setShader(equalizeOnGpu ? equalizedShader : shader);
             else
-                batch.setShader(shader);
+                batch.setShader(hueShader);
+            return;
+        }
+        if(input.isKeyPressed(Keys.E))
+        {
+            equalizeOnGpu = !equalizeOnGpu;
+            if(loaded != null)
+                load(loaded);
             return;
         }
         Vector3 changing;
@@ -171,7 +223,31 @@ public class ShaderDemo extends ApplicationAdapter {
                     "   gl_FragColor.rgb = v_color.rgb * clamp(vec3(dot(tgt.rgb, vec3(1.0, 0.625, -0.5)), dot(tgt.rgb, vec3(1.0, -0.375, 0.5)), dot(tgt.rgb, vec3(1.0, -0.375, -0.5))), 0.0, 1.0);\n" +
                     "   gl_FragColor.a = v_color.a * tgt.a;\n" +
                     "}";
-    
+
+    /**
+     * Like {@link #fragmentShaderOnlyWarmMild}, but also equalizes the lightness of the image, using the table of
+     * equalized lumas from {@link ColorEqualizer#makeLookup()} in the sampler {@code u_lookup}. The luma
+     * {@code 3*r + 4*g + b} of each texel, with channels from 0 to 255, is the x position to look up, and the
+     * equalized luma replaces the Y before {@code u_mul} and {@code u_add} are applied. This matches what
+     * {@link ColorEqualizer#process(Pixmap)} does, but only the histogram of the image needs to be computed on the CPU.
+     */
+    public static final String fragmentShaderEqualizedWarmMild =
+            "varying vec2 v_texCoords;\n" +
+                    "varying vec4 v_color;\n" +
+                    "uniform sampler2D u_texture;\n" +
+                    "uniform sampler2D u_lookup;\n" +
+                    "uniform vec3 u_add;\n" +
+                    "uniform vec3 u_mul;\n" +
+                    "void main()\n" +
+                    "{\n" +
+                    "   vec4 tgt = texture2D( u_texture, v_texCoords );\n" +
+                    "   float index = floor(dot(tgt.rgb, vec3(765.0, 1020.0, 255.0)) + 0.5);\n" +
+                    "   vec4 eq = texture2D( u_lookup, vec2((index + 0.5) * (1.0 / 2048.0), 0.5) );\n" +
+                    "   tgt.rgb = u_add + u_mul * vec3(eq.r + eq.g * (1.0 / 256.0), tgt.r - tgt.b, tgt.g - tgt.b);\n" +
+                    "   gl_FragColor.rgb = v_color.rgb * clamp(vec3(dot(tgt.rgb, vec3(1.0, 0.625, -0.5)), dot(tgt.rgb, vec3(1.0, -0.375, 0.5)), dot(tgt.rgb, vec3(1.0, -0.375, -0.5))), 0.0, 1.0);\n" +
+                    "   gl_FragColor.a = v_color.a * tgt.a;\n" +
+                    "}";
+
     public static final String fragmentShaderHueLights = 
             "varying vec2 v_texCoords;\n" + 
                     "varying vec4 v_color;\n" +
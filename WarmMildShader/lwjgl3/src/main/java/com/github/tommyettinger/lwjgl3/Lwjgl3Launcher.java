@@ -14,7 +14,7 @@ public class Lwjgl3Launcher {
 
     private static ShaderDemo demo;
     private static Lwjgl3Application createApplication() {
-        demo = new ShaderDemo();
+        demo = new ShaderDemo(new ParallelColorEqualizer());
         return new Lwjgl3Application(demo, getDefaultConfiguration());
     }
 
@@ -0,0 +1,106 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.github.tommyettinger.ColorEqualizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ColorEqualizer} that runs its bands of rows on several threads at once, one band per available processor.
+ * The calling thread takes bands too, alongside a pool of daemon threads that is started the first time bands run and
+ * reused after that. If a band throws, the threads stop taking new bands, and the first exception is rethrown on the
+ * calling thread once they have all stopped. This can't be used on GWT, which is why it lives in the desktop module.
+ */
+public class ParallelColorEqualizer extends ColorEqualizer {
+    private final int threadCount;
+    private ExecutorService pool;
+
+    public ParallelColorEqualizer()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelColorEqualizer(int threadCount)
+    {
+        this.threadCount = Math.max(1, Math.min(32, threadCount));
+    }
+
+    @Override
+    protected int bandCount()
+    {
+        return threadCount;
+    }
+
+    @Override
+    protected void runBands(final int bands, final BandTask task)
+    {
+        if (bands <= 1 || threadCount <= 1) {
+            super.runBands(bands, task);
+            return;
+        }
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threadCount - 1, new ThreadFactory() {
+                private int count = 0;
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ColorEqualizer-" + count++);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        final AtomicInteger nextBand = new AtomicInteger();
+        final Runnable runner = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int b = nextBand.getAndIncrement(); b < bands; b = nextBand.getAndIncrement()) {
+                        task.run(b);
+                    }
+                } catch (RuntimeException | Error e) {
+                    // no point finishing the other bands
+                    nextBand.set(bands);
+                    throw e;
+                }
+            }
+        };
+        final List<Future<?>> helpers = new ArrayList<>(threadCount - 1);
+        for (int t = Math.min(threadCount, bands) - 1; t > 0; t--) {
+            helpers.add(pool.submit(runner));
+        }
+        Throwable failure = null;
+        try {
+            runner.run();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (Future<?> helper : helpers) {
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                    break;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        // runner only throws unchecked exceptions, so these are the only kinds of failure
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+    }
+}